@@ -0,0 +1,76 @@
+package com.openinstall.loadtest;
+
+import com.openinstall.OpenInstallApplication;
+import com.openinstall.service.TrackingService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Redis 连接方式对比：pooled（Spring Boot 的一个共享连接）与 shared（少量共享长连接，带并发上限与写入合并）
+ *
+ * 每种连接方式在进程内启动一次应用（redis 存储引擎，不启动 Web 服务器），预热后用同样的请求序列
+ * 从 concurrency 个线程直接调用 TrackingService，输出各方式保存、获取的吞吐与 p50/p99/p999 延迟、
+ * 错误数，以及 shared 方式因等待超过 max-wait 被拒绝的操作数。需要可访问的 Redis（默认 localhost:6379）。
+ *
+ * 用法：java -cp target/benchmarks.jar com.openinstall.loadtest.ConnectionModeBenchmark [--name=value ...]
+ */
+public final class ConnectionModeBenchmark {
+
+    private ConnectionModeBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        ConnectionModeOptions options = ConnectionModeOptions.parse(args);
+
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        PrintStream table = new PrintStream(report, true, StandardCharsets.UTF_8);
+        table.printf("%-8s %-6s %8s %8s %10s %9s %9s %9s %9s%n",
+                "方式", "请求", "请求数", "错误数", "吞吐(req/s)", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)");
+
+        for (String mode : options.modes) {
+            try (ConfigurableApplicationContext application =
+                         SpringApplication.run(OpenInstallApplication.class, options.applicationArgs(mode))) {
+                System.out.println("进程内应用已启动: " + String.join(" ", options.applicationArgs(mode)));
+                if (options.flushDb) {
+                    application.getBean(StringRedisTemplate.class).execute((RedisCallback<Object>) connection -> {
+                        connection.serverCommands().flushDb();
+                        return null;
+                    });
+                }
+                TrackingService trackingService = application.getBean(TrackingService.class);
+
+                if (options.warmupOperations > 0) {
+                    new ConnectionModeRun(options, trackingService, options.warmupOperations, ~options.seed, "warmup").run();
+                    System.out.println("预热完成: " + options.warmupOperations + " 个请求");
+                }
+                ConnectionModeRun run = new ConnectionModeRun(options, trackingService, options.operations,
+                        options.seed, mode);
+                run.run();
+                System.out.printf("%s: %d 个请求，并发 %d，耗时 %.1f s%n",
+                        mode, options.operations, options.concurrency, run.seconds());
+
+                run.printRows(table, mode);
+                Counter rejected = application.getBean(MeterRegistry.class).find("tracking.redis.rejected").counter();
+                if (rejected != null && rejected.count() > 0) {
+                    table.printf("%-8s 等待超过 max-wait 被拒绝的 Redis 操作: %.0f%n", mode, rejected.count());
+                }
+                if (options.histogramDir != null) {
+                    run.writeDistributions(options.histogramDir.resolve(mode));
+                }
+            }
+        }
+
+        System.out.print(report.toString(StandardCharsets.UTF_8));
+        if (options.histogramDir != null) {
+            System.out.println("延迟分布已写入 " + options.histogramDir.toAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.openinstall.loadtest;
+
+import com.openinstall.service.BenchmarkFixtures;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Redis 连接方式对比参数（--name=value）
+ *
+ * 不属于对比参数的 --name=value 原样传给进程内启动的应用，例如 --spring.data.redis.port=6380。
+ */
+final class ConnectionModeOptions {
+
+    /**
+     * 依次测试的连接方式（tracking.redis.connection-mode）
+     */
+    List<String> modes = List.of("pooled", "shared");
+
+    /**
+     * 并发请求数（压测线程数）
+     */
+    int concurrency = 1024;
+
+    /**
+     * 每种连接方式统计的请求数 / 预热请求数
+     */
+    int operations = 200000;
+    int warmupOperations = 20000;
+
+    /**
+     * 保存请求占比，其余为获取
+     */
+    double saveRatio = 0.5;
+
+    /**
+     * 获取请求使用已知设备的比例（可能精确命中），其余为新设备（精确未命中，走模糊匹配）
+     */
+    double knownDeviceRate = 0.5;
+
+    /**
+     * 已知设备数量 / 不同 User-Agent 的数量 / 设备分布
+     */
+    int devices = 20000;
+    int uaVariants = 500;
+    String deviceMix = "mobile";
+
+    long seed = BenchmarkFixtures.SEED;
+
+    /**
+     * 每种连接方式开始前清空 Redis 当前数据库，使各轮的索引大小一致（只用于专用的压测 Redis）
+     */
+    boolean flushDb = false;
+
+    /**
+     * 延迟分布输出目录（每种连接方式一个子目录），为空时不输出
+     */
+    Path histogramDir;
+
+    /**
+     * 进程内应用的启动参数，调用方传入的同名参数覆盖默认值
+     */
+    final Map<String, String> applicationProperties = new LinkedHashMap<>();
+
+    private ConnectionModeOptions() {
+        applicationProperties.put("spring.main.web-application-type", "none");
+        applicationProperties.put("tracking.storage.engine", "redis");
+        applicationProperties.put("tracking.journal.enabled", "false");
+        applicationProperties.put("logging.level.root", "WARN");
+        applicationProperties.put("logging.level.com.openinstall", "WARN");
+    }
+
+    static ConnectionModeOptions parse(String[] args) {
+        ConnectionModeOptions options = new ConnectionModeOptions();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("参数格式应为 --name=value: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "modes" -> options.modes = Arrays.stream(value.split(",")).map(String::trim).toList();
+                case "concurrency" -> options.concurrency = Integer.parseInt(value);
+                case "operations" -> options.operations = Integer.parseInt(value);
+                case "warmup-operations" -> options.warmupOperations = Integer.parseInt(value);
+                case "save-ratio" -> options.saveRatio = Double.parseDouble(value);
+                case "known-device-rate" -> options.knownDeviceRate = Double.parseDouble(value);
+                case "devices" -> options.devices = Integer.parseInt(value);
+                case "ua-variants" -> options.uaVariants = Integer.parseInt(value);
+                case "device-mix" -> options.deviceMix = value;
+                case "seed" -> options.seed = Long.parseLong(value);
+                case "flush-db" -> options.flushDb = Boolean.parseBoolean(value);
+                case "histogram-dir" -> options.histogramDir = Path.of(value);
+                case "tracking.redis.connection-mode" ->
+                        throw new IllegalArgumentException("连接方式由 --modes 指定");
+                default -> options.applicationProperties.put(name, value);
+            }
+        }
+        if (options.operations <= 0 || options.warmupOperations < 0 || options.concurrency <= 0
+                || options.devices <= 0 || options.uaVariants <= 0) {
+            throw new IllegalArgumentException("operations、concurrency、devices、ua-variants 必须为正数，warmup-operations 不能为负数");
+        }
+        if (options.saveRatio < 0 || options.saveRatio > 1 || options.knownDeviceRate < 0 || options.knownDeviceRate > 1) {
+            throw new IllegalArgumentException("save-ratio、known-device-rate 应在 0 到 1 之间");
+        }
+        for (String mode : options.modes) {
+            if (!mode.equals("pooled") && !mode.equals("shared")) {
+                throw new IllegalArgumentException("未知的连接方式: " + mode);
+            }
+        }
+        return options;
+    }
+
+    String[] applicationArgs(String mode) {
+        return Stream.concat(
+                        applicationProperties.entrySet().stream()
+                                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue()),
+                        Stream.of("--tracking.redis.connection-mode=" + mode))
+                .toArray(String[]::new);
+    }
+}
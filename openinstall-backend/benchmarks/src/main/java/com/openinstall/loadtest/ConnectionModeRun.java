@@ -0,0 +1,132 @@
+package com.openinstall.loadtest;
+
+import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.model.TrackingData;
+import com.openinstall.service.BenchmarkFixtures;
+import com.openinstall.service.TrackingService;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一轮连接方式压测：concurrency 个线程直接调用 TrackingService，保存与获取随机交错
+ *
+ * 获取请求中，已知设备可能精确命中（精确认领），新设备精确未命中后走模糊匹配（候选查找与候选读取一次发出多条命令），
+ * 两条路径分别覆盖单条命令与一批命令。每个请求的类型与设备由 (seed, 请求序号) 决定，与线程调度无关。
+ */
+final class ConnectionModeRun {
+
+    private final ConnectionModeOptions options;
+    private final TrackingService trackingService;
+    private final int operations;
+    private final long seed;
+    private final String runId;
+    private final List<String> userAgents;
+    private final List<DeviceFingerprint> devices;
+
+    private final AtomicInteger nextOperation = new AtomicInteger();
+
+    final EndpointStats save = new EndpointStats("save");
+    final EndpointStats get = new EndpointStats("get");
+
+    private long elapsedNanos;
+
+    ConnectionModeRun(ConnectionModeOptions options, TrackingService trackingService, int operations, long seed,
+                      String runId) {
+        this.options = options;
+        this.trackingService = trackingService;
+        this.operations = operations;
+        this.seed = seed;
+        this.runId = runId;
+        Random random = new Random(seed);
+        this.userAgents = BenchmarkFixtures.userAgents(options.deviceMix, options.uaVariants, random);
+        this.devices = new ArrayList<>(options.devices);
+        for (int i = 0; i < options.devices; i++) {
+            devices.add(BenchmarkFixtures.fingerprint(userAgents.get(random.nextInt(userAgents.size())), random));
+        }
+    }
+
+    void run() throws InterruptedException {
+        List<Thread> workers = new ArrayList<>(options.concurrency);
+        long start = System.nanoTime();
+        for (int i = 0; i < options.concurrency; i++) {
+            Thread worker = new Thread(this::work, "mode-" + runId + "-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    private void work() {
+        int operation;
+        while ((operation = nextOperation.getAndIncrement()) < operations) {
+            Random random = new Random(seed * 1_000_003L + operation);
+            DeviceFingerprint device = devices.get(random.nextInt(devices.size()));
+            if (random.nextDouble() < options.saveRatio) {
+                save(device, operation);
+            } else if (random.nextDouble() < options.knownDeviceRate) {
+                get(device);
+            } else {
+                get(BenchmarkFixtures.fingerprint(userAgents.get(random.nextInt(userAgents.size())), random));
+            }
+        }
+    }
+
+    private void save(DeviceFingerprint fingerprint, int operation) {
+        TrackingData data = new TrackingData();
+        data.setFingerprint(fingerprint);
+        data.setParams(Map.of("channel", "connection-mode", "op", runId + "-" + operation));
+        data.setTimestamp(System.currentTimeMillis());
+        long start = System.nanoTime();
+        try {
+            // 与 /save 一样走异步保存
+            String fingerprintId = trackingService.saveTrackingDataAsync(data).join();
+            save.record(start, System.nanoTime());
+            if (fingerprintId == null) {
+                save.error();
+            }
+        } catch (RuntimeException e) {
+            save.record(start, System.nanoTime());
+            save.error();
+        }
+    }
+
+    private void get(DeviceFingerprint fingerprint) {
+        long start = System.nanoTime();
+        try {
+            trackingService.matchTrackingData(fingerprint, null);
+        } catch (RuntimeException e) {
+            get.error();
+        }
+        get.record(start, System.nanoTime());
+    }
+
+    double seconds() {
+        return elapsedNanos / 1e9;
+    }
+
+    void printRows(PrintStream out, String mode) {
+        for (EndpointStats stats : List.of(save, get)) {
+            out.printf("%-8s %-6s %8d %8d %10.0f %9.2f %9.2f %9.2f %9.2f%n",
+                    mode, stats.path, stats.count(), stats.errors(), stats.count() / seconds(),
+                    stats.percentileMillis(50), stats.percentileMillis(99), stats.percentileMillis(99.9),
+                    stats.maxMillis());
+        }
+    }
+
+    void writeDistributions(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        save.writeDistribution(directory.resolve("save.hgrm"));
+        get.writeDistribution(directory.resolve("get.hgrm"));
+    }
+}
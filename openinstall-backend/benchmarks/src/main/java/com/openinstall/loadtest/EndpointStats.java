@@ -0,0 +1,70 @@
+package com.openinstall.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个接口的延迟分布（微秒，3 位有效数字，最大 60 秒）与错误数
+ *
+ * LoadTest 是闭环的：每个压测线程收到响应后才发下一个请求，服务变慢时发送速率随之下降，
+ * 延迟不包含请求在压测端排队等待的时间；TrafficReplay 按录制间隔回放时从计划发送时间开始计，包含排队时间。
+ */
+final class EndpointStats {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.SECONDS.toMicros(60);
+
+    final String path;
+    private final Histogram histogram = new ConcurrentHistogram(1, MAX_LATENCY_MICROS, 3);
+    private final LongAdder errors = new LongAdder();
+
+    EndpointStats(String path) {
+        this.path = path;
+    }
+
+    /**
+     * 记录一次收到响应的请求（包括业务失败的响应）
+     */
+    void record(long startNanos, long endNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(endNanos - startNanos);
+        histogram.recordValue(Math.max(1, Math.min(micros, MAX_LATENCY_MICROS)));
+    }
+
+    /**
+     * 记录一次失败（非 2xx、success=false 或请求异常）
+     */
+    void error() {
+        errors.increment();
+    }
+
+    long count() {
+        return histogram.getTotalCount();
+    }
+
+    long errors() {
+        return errors.sum();
+    }
+
+    double percentileMillis(double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    double maxMillis() {
+        return histogram.getMaxValue() / 1000.0;
+    }
+
+    /**
+     * 以毫秒为单位输出完整的百分位分布，可用 HdrHistogram 的绘图工具对比多次结果
+     */
+    void writeDistribution(Path file) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+}
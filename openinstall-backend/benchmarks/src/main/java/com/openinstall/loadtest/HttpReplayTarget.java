@@ -0,0 +1,90 @@
+package com.openinstall.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openinstall.dto.GetTrackingRequest;
+import com.openinstall.dto.SaveTrackingRequest;
+import com.openinstall.model.DeviceFingerprint;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 通过 /api/tracking/save、/api/tracking/get 回放，客户端IP通过 X-Forwarded-For 传递
+ */
+final class HttpReplayTarget implements ReplayTarget {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final URI saveUri;
+    private final URI getUri;
+
+    HttpReplayTarget(String target) {
+        this.saveUri = URI.create(target + "/api/tracking/save");
+        this.getUri = URI.create(target + "/api/tracking/get");
+    }
+
+    @Override
+    public boolean save(String fingerprintId, DeviceFingerprint fingerprint, Map<String, String> params,
+                        Long timestamp, String clientIp) {
+        SaveTrackingRequest request = new SaveTrackingRequest();
+        request.setFingerprintId(fingerprintId);
+        request.setFingerprint(fingerprint);
+        request.setParams(params);
+        request.setTimestamp(timestamp);
+        return post(saveUri, request, clientIp) != null;
+    }
+
+    @Override
+    public Map<String, String> get(String fingerprintId, DeviceFingerprint fingerprint, String clientIp) {
+        GetTrackingRequest request = new GetTrackingRequest();
+        request.setFingerprintId(fingerprintId);
+        request.setFingerprint(fingerprint);
+        JsonNode data = post(getUri, request, clientIp);
+        if (data == null) {
+            return null;
+        }
+        Map<String, String> params = new HashMap<>();
+        if (data.path("matched").asBoolean(false)) {
+            data.path("params").fields().forEachRemaining(field -> params.put(field.getKey(), field.getValue().asText()));
+        }
+        return params;
+    }
+
+    /**
+     * @return 响应中的 data，非 2xx、success=false 或请求异常时返回 null
+     */
+    private JsonNode post(URI uri, Object body, String clientIp) {
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+            if (clientIp != null) {
+                request.header("X-Forwarded-For", clientIp);
+            }
+            HttpResponse<byte[]> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() / 100 != 2) {
+                return null;
+            }
+            JsonNode json = objectMapper.readTree(response.body());
+            return json.path("success").asBoolean(false) ? json.path("data") : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
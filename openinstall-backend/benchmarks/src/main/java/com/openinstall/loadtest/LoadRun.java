@@ -0,0 +1,253 @@
+package com.openinstall.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openinstall.dto.GetTrackingRequest;
+import com.openinstall.dto.SaveTrackingRequest;
+import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.service.BenchmarkFixtures;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一轮点击→安装压测
+ *
+ * 每个会话先以 Web 端身份保存追踪数据（点击），经过点击到安装的延迟后以 App 端身份获取（安装）。
+ * 压测线程优先执行到期的安装，没有到期安装时开始新的点击，因此保存与获取按真实顺序交错，延迟期间不占用线程。
+ * 每个会话的设备、延迟、是否为自然安装都由 (seed, 会话序号) 决定，与线程调度无关，同样的参数每次产生同样的请求序列。
+ */
+final class LoadRun {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final LoadTestOptions options;
+    private final int sessions;
+    private final long seed;
+    private final String runId;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final URI saveUri;
+    private final URI getUri;
+    private final List<String> userAgents;
+
+    private final AtomicInteger nextSession = new AtomicInteger();
+    private final AtomicInteger remainingInstalls;
+    private final DelayQueue<PendingInstall> installs = new DelayQueue<>();
+
+    final EndpointStats save = new EndpointStats("/api/tracking/save");
+    final EndpointStats get = new EndpointStats("/api/tracking/get");
+
+    /**
+     * 安装结果：点击设备的安装匹配到自己的点击 / 匹配到别的点击 / 未匹配；自然安装匹配到了点击 / 未匹配
+     */
+    private final LongAdder matchedOwnClick = new LongAdder();
+    private final LongAdder matchedOtherClick = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+    private final LongAdder organicMatched = new LongAdder();
+    private final LongAdder organicUnmatched = new LongAdder();
+
+    private long elapsedNanos;
+
+    LoadRun(LoadTestOptions options, String target, int sessions, long seed, String runId) {
+        this.options = options;
+        this.sessions = sessions;
+        this.seed = seed;
+        this.runId = runId;
+        this.saveUri = URI.create(target + save.path);
+        this.getUri = URI.create(target + get.path);
+        this.userAgents = BenchmarkFixtures.userAgents(options.deviceMix, options.uaVariants, new Random(seed));
+        this.remainingInstalls = new AtomicInteger(sessions);
+    }
+
+    void run() throws InterruptedException {
+        List<Thread> workers = new ArrayList<>(options.concurrency);
+        long start = System.nanoTime();
+        for (int i = 0; i < options.concurrency; i++) {
+            Thread worker = new Thread(this::work, "load-" + runId + "-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    private void work() {
+        try {
+            while (remainingInstalls.get() > 0) {
+                PendingInstall install = installs.poll();
+                if (install == null) {
+                    int session = nextSession.getAndUpdate(next -> Math.min(next + 1, sessions));
+                    if (session < sessions) {
+                        click(session);
+                        continue;
+                    }
+                    install = installs.poll(10, TimeUnit.MILLISECONDS);
+                    if (install == null) {
+                        continue;
+                    }
+                }
+                install(install);
+                remainingInstalls.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void click(int session) {
+        Random random = new Random(seed * 1_000_003L + session);
+        DeviceFingerprint fingerprint = BenchmarkFixtures.fingerprint(randomUserAgent(random), random);
+        String clickId = runId + "-" + session;
+
+        Map<String, String> params = new HashMap<>();
+        params.put("channel", "loadtest");
+        params.put("clickId", clickId);
+        SaveTrackingRequest request = new SaveTrackingRequest();
+        request.setFingerprintId("load-" + clickId);
+        request.setFingerprint(fingerprint);
+        request.setParams(params);
+
+        if (post(save, saveUri, request) == null) {
+            // 点击未保存，会话作废
+            remainingInstalls.decrementAndGet();
+            return;
+        }
+
+        long delayNanos = options.installDelayMin.toNanos()
+                + (long) (random.nextDouble() * (options.installDelayMax.toNanos() - options.installDelayMin.toNanos()));
+        boolean organic = random.nextDouble() >= options.matchRate;
+        DeviceFingerprint installFingerprint = organic
+                ? BenchmarkFixtures.fingerprint(randomUserAgent(random), random)
+                : fingerprint;
+        installs.add(new PendingInstall(System.nanoTime() + delayNanos, installFingerprint, organic ? null : clickId));
+    }
+
+    private void install(PendingInstall install) {
+        GetTrackingRequest request = new GetTrackingRequest();
+        request.setFingerprintId("load-install");
+        request.setFingerprint(install.fingerprint);
+
+        JsonNode data = post(get, getUri, request);
+        if (data == null) {
+            return;
+        }
+        boolean matched = data.path("matched").asBoolean(false);
+        if (install.clickId == null) {
+            (matched ? organicMatched : organicUnmatched).increment();
+        } else if (!matched) {
+            unmatched.increment();
+        } else if (install.clickId.equals(data.path("params").path("clickId").asText(null))) {
+            matchedOwnClick.increment();
+        } else {
+            matchedOtherClick.increment();
+        }
+    }
+
+    /**
+     * 发送请求并记录延迟，成功时返回响应中的 data，失败时记为错误并返回 null
+     */
+    private JsonNode post(EndpointStats stats, URI uri, Object body) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+            long start = System.nanoTime();
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            stats.record(start, System.nanoTime());
+
+            if (response.statusCode() / 100 != 2) {
+                stats.error();
+                return null;
+            }
+            JsonNode json = objectMapper.readTree(response.body());
+            if (!json.path("success").asBoolean(false)) {
+                stats.error();
+                return null;
+            }
+            return json.path("data");
+        } catch (IOException e) {
+            stats.error();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stats.error();
+            return null;
+        }
+    }
+
+    private String randomUserAgent(Random random) {
+        return userAgents.get(random.nextInt(userAgents.size()));
+    }
+
+    void printReport(PrintStream out) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("会话 %d，并发 %d，耗时 %.1f s%n", sessions, options.concurrency, seconds);
+        out.printf("%-20s %8s %8s %10s %9s %9s %9s %9s%n",
+                "接口", "请求数", "错误数", "吞吐(req/s)", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)");
+        for (EndpointStats stats : List.of(save, get)) {
+            out.printf("%-20s %8d %8d %10.0f %9.2f %9.2f %9.2f %9.2f%n",
+                    stats.path, stats.count(), stats.errors(), stats.count() / seconds,
+                    stats.percentileMillis(50), stats.percentileMillis(99), stats.percentileMillis(99.9),
+                    stats.maxMillis());
+        }
+
+        long clicked = matchedOwnClick.sum() + matchedOtherClick.sum() + unmatched.sum();
+        long organic = organicMatched.sum() + organicUnmatched.sum();
+        out.printf("点击设备安装 %d：匹配到自己的点击 %d (%.2f%%)，匹配到其他点击 %d，未匹配 %d%n",
+                clicked, matchedOwnClick.sum(), percent(matchedOwnClick.sum(), clicked),
+                matchedOtherClick.sum(), unmatched.sum());
+        out.printf("自然安装 %d：误匹配 %d (%.2f%%)%n",
+                organic, organicMatched.sum(), percent(organicMatched.sum(), organic));
+    }
+
+    void writeDistributions() throws IOException {
+        Files.createDirectories(options.histogramDir);
+        save.writeDistribution(options.histogramDir.resolve("save.hgrm"));
+        get.writeDistribution(options.histogramDir.resolve("get.hgrm"));
+    }
+
+    private static double percent(long part, long total) {
+        return total == 0 ? 0 : part * 100.0 / total;
+    }
+
+    /**
+     * 等待到期的安装；clickId 为 null 表示自然安装
+     */
+    private record PendingInstall(long dueNanos, DeviceFingerprint fingerprint, String clickId) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((PendingInstall) other).dueNanos);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.openinstall.loadtest;
+
+import com.openinstall.OpenInstallApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 端到端压测：按真实的点击→安装顺序压测 /api/tracking/save 与 /api/tracking/get
+ *
+ * 默认在进程内启动应用（memory 存储引擎、随机端口），不依赖任何外部服务；
+ * 指定 --target 时压测已运行的服务。先执行预热会话，再统计正式会话，
+ * 输出每个接口的吞吐与 p50/p99/p999 延迟，以及匹配结果。
+ *
+ * 用法：java -cp target/benchmarks.jar com.openinstall.loadtest.LoadTest [--name=value ...]
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+
+        ConfigurableApplicationContext application = null;
+        String target = options.target;
+        if (target == null) {
+            application = SpringApplication.run(OpenInstallApplication.class, options.applicationArgs());
+            int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+            target = "http://localhost:" + port;
+            System.out.println("进程内应用已启动: " + target + " (" + String.join(" ", options.applicationArgs()) + ")");
+        }
+
+        try {
+            if (options.warmupSessions > 0) {
+                new LoadRun(options, target, options.warmupSessions, ~options.seed, "warmup").run();
+                System.out.println("预热完成: " + options.warmupSessions + " 个会话");
+            }
+            LoadRun run = new LoadRun(options, target, options.sessions, options.seed, "run");
+            run.run();
+            run.printReport(System.out);
+            if (options.histogramDir != null) {
+                run.writeDistributions();
+                System.out.println("延迟分布已写入 " + options.histogramDir.toAbsolutePath());
+            }
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+        }
+    }
+}
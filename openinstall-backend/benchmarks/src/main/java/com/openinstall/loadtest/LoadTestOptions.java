@@ -0,0 +1,120 @@
+package com.openinstall.loadtest;
+
+import com.openinstall.service.BenchmarkFixtures;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 压测参数（--name=value）
+ *
+ * 不属于压测参数的 --name=value 原样传给进程内启动的应用，例如 --tracking.storage.engine=redis。
+ */
+final class LoadTestOptions {
+
+    /**
+     * 被测服务地址，为空时在进程内启动应用
+     */
+    String target;
+
+    /**
+     * 统计的点击→安装会话数，每个会话一次保存、一次获取
+     */
+    int sessions = 20000;
+
+    /**
+     * 预热会话数（不计入统计，使用不同的种子）
+     */
+    int warmupSessions = 2000;
+
+    /**
+     * 并发请求数（压测线程数）
+     */
+    int concurrency = 32;
+
+    /**
+     * 点击到安装的延迟，在 [min, max] 内均匀分布
+     */
+    Duration installDelayMin = Duration.ZERO;
+    Duration installDelayMax = Duration.ofSeconds(2);
+
+    /**
+     * 安装来自点击过的同一设备的比例，其余为没有点击记录的自然安装
+     */
+    double matchRate = 0.8;
+
+    /**
+     * 设备分布：desktop、mobile 或 mixed
+     */
+    String deviceMix = "mobile";
+
+    /**
+     * 不同 User-Agent 的数量（越少，指纹越容易相同、模糊匹配候选越多）
+     */
+    int uaVariants = 500;
+
+    long seed = BenchmarkFixtures.SEED;
+
+    /**
+     * 延迟分布输出目录（HdrHistogram .hgrm 格式），为空时不输出
+     */
+    Path histogramDir;
+
+    /**
+     * 进程内应用的启动参数，调用方传入的同名参数覆盖默认值
+     */
+    final Map<String, String> applicationProperties = new LinkedHashMap<>();
+
+    private LoadTestOptions() {
+        applicationProperties.put("server.port", "0");
+        applicationProperties.put("tracking.storage.engine", "memory");
+        applicationProperties.put("management.health.redis.enabled", "false");
+        applicationProperties.put("logging.level.root", "WARN");
+        applicationProperties.put("logging.level.com.openinstall", "WARN");
+    }
+
+    static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("参数格式应为 --name=value: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "target" -> options.target = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                case "sessions" -> options.sessions = Integer.parseInt(value);
+                case "warmup-sessions" -> options.warmupSessions = Integer.parseInt(value);
+                case "concurrency" -> options.concurrency = Integer.parseInt(value);
+                case "install-delay-min" -> options.installDelayMin = DurationStyle.detectAndParse(value);
+                case "install-delay-max" -> options.installDelayMax = DurationStyle.detectAndParse(value);
+                case "match-rate" -> options.matchRate = Double.parseDouble(value);
+                case "device-mix" -> options.deviceMix = value;
+                case "ua-variants" -> options.uaVariants = Integer.parseInt(value);
+                case "seed" -> options.seed = Long.parseLong(value);
+                case "histogram-dir" -> options.histogramDir = Path.of(value);
+                default -> options.applicationProperties.put(name, value);
+            }
+        }
+        if (options.sessions <= 0 || options.warmupSessions < 0 || options.concurrency <= 0 || options.uaVariants <= 0) {
+            throw new IllegalArgumentException("sessions、concurrency、ua-variants 必须为正数，warmup-sessions 不能为负数");
+        }
+        if (options.installDelayMax.compareTo(options.installDelayMin) < 0) {
+            throw new IllegalArgumentException("install-delay-max 不能小于 install-delay-min");
+        }
+        if (options.matchRate < 0 || options.matchRate > 1) {
+            throw new IllegalArgumentException("match-rate 应在 0 到 1 之间");
+        }
+        return options;
+    }
+
+    String[] applicationArgs() {
+        return applicationProperties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+    }
+}
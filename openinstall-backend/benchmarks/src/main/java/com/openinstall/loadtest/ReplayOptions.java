@@ -0,0 +1,115 @@
+package com.openinstall.loadtest;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 回放参数（--name=value）
+ *
+ * 不属于回放参数的 --name=value 原样传给进程内启动的应用，例如 --tracking.storage.engine=redis。
+ */
+final class ReplayOptions {
+
+    /**
+     * 录制文件或录制目录（目录下的 capture-*.jsonl 按文件名顺序回放）
+     */
+    Path capture;
+
+    /**
+     * 被测服务地址，为空时在进程内启动应用
+     */
+    String target;
+
+    /**
+     * 进程内回放的调用层：service 直接调用 TrackingService，http 启动 Web 服务后通过接口调用
+     */
+    String layer = "service";
+
+    /**
+     * 回放速度：1 为按录制时的到达间隔发送，N 为 N 倍速，0 为不等待、尽快发送
+     */
+    double speed = 1;
+
+    /**
+     * 并发请求数；为 1 时请求严格按录制顺序执行，同一份录制每次得到相同的匹配结果
+     */
+    int concurrency = 1;
+
+    /**
+     * 最多回放的请求数，0 表示全部
+     */
+    long limit;
+
+    /**
+     * 匹配结果输出文件，可作为之后回放的 --baseline
+     */
+    Path outcomes;
+
+    /**
+     * 基线匹配结果文件，指定时输出与基线不同的匹配结果
+     */
+    Path baseline;
+
+    /**
+     * 延迟分布输出目录（HdrHistogram .hgrm 格式），为空时不输出
+     */
+    Path histogramDir;
+
+    /**
+     * 进程内应用的启动参数，调用方传入的同名参数覆盖默认值
+     */
+    final Map<String, String> applicationProperties = new LinkedHashMap<>();
+
+    private ReplayOptions() {
+        applicationProperties.put("server.port", "0");
+        applicationProperties.put("tracking.storage.engine", "memory");
+        applicationProperties.put("tracking.capture.enabled", "false");
+        applicationProperties.put("management.health.redis.enabled", "false");
+        applicationProperties.put("logging.level.root", "WARN");
+        applicationProperties.put("logging.level.com.openinstall", "WARN");
+    }
+
+    static ReplayOptions parse(String[] args) {
+        ReplayOptions options = new ReplayOptions();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("参数格式应为 --name=value: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "capture" -> options.capture = Path.of(value);
+                case "target" -> options.target = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                case "layer" -> options.layer = value;
+                case "speed" -> options.speed = Double.parseDouble(value);
+                case "concurrency" -> options.concurrency = Integer.parseInt(value);
+                case "limit" -> options.limit = Long.parseLong(value);
+                case "outcomes" -> options.outcomes = Path.of(value);
+                case "baseline" -> options.baseline = Path.of(value);
+                case "histogram-dir" -> options.histogramDir = Path.of(value);
+                default -> options.applicationProperties.put(name, value);
+            }
+        }
+        if (options.capture == null) {
+            throw new IllegalArgumentException("缺少 --capture（录制文件或目录）");
+        }
+        if (!"service".equals(options.layer) && !"http".equals(options.layer)) {
+            throw new IllegalArgumentException("layer 应为 service 或 http: " + options.layer);
+        }
+        if (options.speed < 0 || options.concurrency <= 0 || options.limit < 0) {
+            throw new IllegalArgumentException("concurrency 必须为正数，speed、limit 不能为负数");
+        }
+        if ("service".equals(options.layer) && options.target == null) {
+            options.applicationProperties.putIfAbsent("spring.main.web-application-type", "none");
+        }
+        return options;
+    }
+
+    String[] applicationArgs() {
+        return applicationProperties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+    }
+}
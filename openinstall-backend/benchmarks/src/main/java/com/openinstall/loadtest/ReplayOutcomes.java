@@ -0,0 +1,129 @@
+package com.openinstall.loadtest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 回放中每个获取请求的匹配结果，按请求在录制中的序号记录
+ *
+ * 结果为被匹配的保存请求的序号，或 none（未匹配）、other（匹配到不是本次回放保存的数据）、error（请求失败）。
+ * 文件格式为每行"获取序号<TAB>结果"，同一份录制的两次回放可以逐条对比。
+ */
+final class ReplayOutcomes {
+
+    static final String NONE = "none";
+    static final String OTHER = "other";
+    static final String ERROR = "error";
+
+    private static final int MAX_LISTED_DIFFS = 20;
+
+    private final Map<Long, String> outcomes;
+
+    ReplayOutcomes() {
+        this(new ConcurrentHashMap<>());
+    }
+
+    private ReplayOutcomes(Map<Long, String> outcomes) {
+        this.outcomes = outcomes;
+    }
+
+    void record(long getSeq, String outcome) {
+        outcomes.put(getSeq, outcome);
+    }
+
+    long count(String outcome) {
+        return outcomes.values().stream().filter(outcome::equals).count();
+    }
+
+    /**
+     * 匹配到本次回放保存的数据的获取请求数
+     */
+    long replayedMatches() {
+        return outcomes.values().stream().filter(ReplayOutcomes::isSaveSeq).count();
+    }
+
+    long size() {
+        return outcomes.size();
+    }
+
+    void write(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (Map.Entry<Long, String> entry : new TreeMap<>(outcomes).entrySet()) {
+                writer.write(entry.getKey() + "\t" + entry.getValue());
+                writer.newLine();
+            }
+        }
+    }
+
+    static ReplayOutcomes read(Path file) throws IOException {
+        Map<Long, String> outcomes = new TreeMap<>();
+        List<String> lines = Files.readAllLines(file);
+        for (String line : lines) {
+            int tab = line.indexOf('\t');
+            if (tab > 0) {
+                outcomes.put(Long.parseLong(line.substring(0, tab)), line.substring(tab + 1));
+            }
+        }
+        return new ReplayOutcomes(outcomes);
+    }
+
+    /**
+     * 输出与基线不同的匹配结果：新增匹配、丢失匹配、匹配到不同的点击，以及只在一次回放中出现或失败的请求
+     */
+    void printDiff(ReplayOutcomes baseline, PrintStream out) {
+        long same = 0;
+        long gained = 0;
+        long lost = 0;
+        long changed = 0;
+        long failed = 0;
+        long missing = 0;
+        Map<Long, String> listed = new TreeMap<>();
+
+        Set<Long> seqs = new HashSet<>(outcomes.keySet());
+        seqs.addAll(baseline.outcomes.keySet());
+        for (Long seq : seqs) {
+            String before = baseline.outcomes.get(seq);
+            String after = outcomes.get(seq);
+            if (before != null && before.equals(after)) {
+                same++;
+                continue;
+            }
+            if (before == null || after == null) {
+                missing++;
+            } else if (ERROR.equals(before) || ERROR.equals(after)) {
+                failed++;
+            } else if (NONE.equals(before)) {
+                gained++;
+            } else if (NONE.equals(after)) {
+                lost++;
+            } else {
+                changed++;
+            }
+            listed.put(seq, (before != null ? before : "-") + " -> " + (after != null ? after : "-"));
+        }
+
+        out.printf("与基线对比 %d 个获取请求：一致 %d，新增匹配 %d，丢失匹配 %d，匹配到不同点击 %d，请求失败 %d，只在一次回放中出现 %d%n",
+                seqs.size(), same, gained, lost, changed, failed, missing);
+        listed.entrySet().stream().limit(MAX_LISTED_DIFFS)
+                .forEach(entry -> out.printf("  #%d  %s%n", entry.getKey(), entry.getValue()));
+        if (listed.size() > MAX_LISTED_DIFFS) {
+            out.printf("  ……另有 %d 处不同%n", listed.size() - MAX_LISTED_DIFFS);
+        }
+    }
+
+    private static boolean isSaveSeq(String outcome) {
+        return !outcome.isEmpty() && Character.isDigit(outcome.charAt(0));
+    }
+}
@@ -0,0 +1,230 @@
+package com.openinstall.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openinstall.journal.CaptureRecord;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * 一次录制回放
+ *
+ * 发送线程按顺序读取录制文件，按 (到达时间 - 第一条的到达时间) / speed 计划每个请求的发送时间，到时交给回放线程执行；
+ * speed=0 时不等待，同时执行的请求数不超过 concurrency。保存请求的参数中加入 _replay=保存序号，
+ * 获取请求匹配成功时据此得知匹配到了哪一次保存，两次回放的结果可以逐条对比。
+ * 获取请求等录制顺序在它之前的保存请求全部完成后再执行：否则并发回放时获取可能先于它要匹配的点击执行，
+ * 匹配结果取决于线程调度，两次回放的差异就不全是服务端造成的（点击与安装的指纹ID可能不同，无法只按设备排序）。
+ * 按录制间隔回放是开环的：延迟从计划发送时间开始计，服务变慢时请求在回放端排队，排队时间（包括等待之前的保存）计入延迟。
+ */
+final class ReplayRun {
+
+    static final String REPLAY_PARAM = "_replay";
+
+    private final ReplayOptions options;
+    private final ReplayTarget target;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 已派发但未完成的保存请求序号（由自身加锁保护）
+     */
+    private final TreeSet<Long> pendingSaves = new TreeSet<>();
+
+    final EndpointStats save = new EndpointStats("save");
+    final EndpointStats get = new EndpointStats("get");
+    final ReplayOutcomes outcomes = new ReplayOutcomes();
+
+    private long requests;
+    private long capturedMicros;
+    private long elapsedNanos;
+
+    ReplayRun(ReplayOptions options, ReplayTarget target) {
+        this.options = options;
+        this.target = target;
+    }
+
+    void run() throws IOException, InterruptedException {
+        List<Path> files = captureFiles(options.capture);
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("没有找到录制文件: " + options.capture.toAbsolutePath());
+        }
+
+        AtomicInteger threads = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> new Thread(runnable, "replay-" + threads.getAndIncrement());
+        ExecutorService workers = Executors.newFixedThreadPool(options.concurrency, threadFactory);
+        boolean timed = options.speed > 0;
+        // 按录制间隔回放时不限制排队的请求数（开环），否则最多 concurrency 个请求同时执行
+        Semaphore inFlight = new Semaphore(timed ? Integer.MAX_VALUE : options.concurrency);
+
+        long start = System.nanoTime();
+        long first = -1;
+        long last = -1;
+        long seq = 0;
+        try {
+            read:
+            for (Path file : files) {
+                try (BufferedReader reader = Files.newBufferedReader(file)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        // 仍在录制的文件末尾是映射文件未写入的零字节
+                        if (line.isEmpty() || line.charAt(0) == 0) {
+                            continue;
+                        }
+                        if (options.limit > 0 && seq >= options.limit) {
+                            break read;
+                        }
+                        CaptureRecord record = objectMapper.readValue(line, CaptureRecord.class);
+                        if (first < 0) {
+                            first = record.ts();
+                        }
+                        last = Math.max(last, record.ts());
+
+                        long scheduled = timed
+                                ? start + (long) (TimeUnit.MICROSECONDS.toNanos(record.ts() - first) / options.speed)
+                                : 0;
+                        waitUntil(scheduled);
+                        inFlight.acquire();
+                        long current = seq++;
+                        if (CaptureRecord.SAVE.equals(record.op())) {
+                            synchronized (pendingSaves) {
+                                pendingSaves.add(current);
+                            }
+                        }
+                        // 线程池按提交顺序取任务，之前的保存总是先于之后的获取开始执行，获取的等待不会互相阻塞
+                        workers.execute(() -> {
+                            try {
+                                execute(current, record, scheduled);
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    }
+                }
+            }
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        elapsedNanos = System.nanoTime() - start;
+        requests = seq;
+        capturedMicros = Math.max(0, last - first);
+    }
+
+    /**
+     * @param scheduledNanos 计划发送时间；不按录制间隔回放时为 0，延迟从实际开始执行（获取请求为等待之前的保存之后）计
+     */
+    private void execute(long seq, CaptureRecord record, long scheduledNanos) {
+        if (CaptureRecord.SAVE.equals(record.op())) {
+            long startNanos = scheduledNanos != 0 ? scheduledNanos : System.nanoTime();
+            Map<String, String> params = record.params() != null
+                    ? new LinkedHashMap<>(record.params())
+                    : new LinkedHashMap<>();
+            params.put(REPLAY_PARAM, Long.toString(seq));
+            Long timestamp = record.clickOffset() != null ? System.currentTimeMillis() + record.clickOffset() : null;
+
+            try {
+                boolean saved = target.save(record.fingerprintId(), record.fingerprint(), params, timestamp, record.ip());
+                save.record(startNanos, System.nanoTime());
+                if (!saved) {
+                    save.error();
+                }
+            } finally {
+                synchronized (pendingSaves) {
+                    pendingSaves.remove(seq);
+                    pendingSaves.notifyAll();
+                }
+            }
+            return;
+        }
+
+        try {
+            awaitEarlierSaves(seq);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long startNanos = scheduledNanos != 0 ? scheduledNanos : System.nanoTime();
+        Map<String, String> matched = target.get(record.fingerprintId(), record.fingerprint(), record.ip());
+        get.record(startNanos, System.nanoTime());
+        if (matched == null) {
+            get.error();
+            outcomes.record(seq, ReplayOutcomes.ERROR);
+        } else if (matched.isEmpty()) {
+            outcomes.record(seq, ReplayOutcomes.NONE);
+        } else {
+            String saveSeq = matched.get(REPLAY_PARAM);
+            outcomes.record(seq, saveSeq != null ? saveSeq : ReplayOutcomes.OTHER);
+        }
+    }
+
+    private void awaitEarlierSaves(long seq) throws InterruptedException {
+        synchronized (pendingSaves) {
+            while (!pendingSaves.isEmpty() && pendingSaves.first() < seq) {
+                pendingSaves.wait();
+            }
+        }
+    }
+
+    private static void waitUntil(long nanos) {
+        long remaining;
+        while ((remaining = nanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * 单个文件直接回放；目录下的 capture-*.jsonl 按文件名（即创建时间）顺序回放
+     */
+    private static List<Path> captureFiles(Path capture) throws IOException {
+        if (!Files.isDirectory(capture)) {
+            return List.of(capture);
+        }
+        try (Stream<Path> files = Files.list(capture)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith("capture-") && name.endsWith(".jsonl");
+            }).sorted().toList();
+        }
+    }
+
+    void printReport(PrintStream out) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("回放 %d 个请求，录制跨度 %.1f s，速度 %s，并发 %d，耗时 %.1f s，吞吐 %.0f req/s%n",
+                requests, capturedMicros / 1e6, options.speed > 0 ? options.speed + "x" : "不限",
+                options.concurrency, seconds, requests / seconds);
+        out.printf("%-8s %8s %8s %10s %9s %9s %9s %9s%n",
+                "请求", "请求数", "错误数", "吞吐(req/s)", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)");
+        for (EndpointStats stats : List.of(save, get)) {
+            out.printf("%-8s %8d %8d %10.0f %9.2f %9.2f %9.2f %9.2f%n",
+                    stats.path, stats.count(), stats.errors(), stats.count() / seconds,
+                    stats.percentileMillis(50), stats.percentileMillis(99), stats.percentileMillis(99.9),
+                    stats.maxMillis());
+        }
+
+        long gets = outcomes.size();
+        long matched = outcomes.replayedMatches();
+        out.printf("获取请求 %d：匹配到回放中的点击 %d (%.2f%%)，匹配到回放前已有的数据 %d，未匹配 %d，失败 %d%n",
+                gets, matched, gets == 0 ? 0 : matched * 100.0 / gets, outcomes.count(ReplayOutcomes.OTHER),
+                outcomes.count(ReplayOutcomes.NONE), outcomes.count(ReplayOutcomes.ERROR));
+    }
+
+    void writeDistributions() throws IOException {
+        Files.createDirectories(options.histogramDir);
+        save.writeDistribution(options.histogramDir.resolve("save.hgrm"));
+        get.writeDistribution(options.histogramDir.resolve("get.hgrm"));
+    }
+}
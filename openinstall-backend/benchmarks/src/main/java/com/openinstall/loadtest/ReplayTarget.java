@@ -0,0 +1,25 @@
+package com.openinstall.loadtest;
+
+import com.openinstall.model.DeviceFingerprint;
+
+import java.util.Map;
+
+/**
+ * 回放请求的执行方式：通过 HTTP 接口（HttpReplayTarget）或直接调用 TrackingService（ServiceReplayTarget）
+ */
+interface ReplayTarget {
+
+    /**
+     * 保存（点击）
+     * @param timestamp 点击时间，为 null 时由服务端取当前时间
+     * @return 是否保存成功
+     */
+    boolean save(String fingerprintId, DeviceFingerprint fingerprint, Map<String, String> params,
+                 Long timestamp, String clientIp);
+
+    /**
+     * 获取（安装）
+     * @return 匹配到的点击参数，未匹配时为空 Map；请求失败时为 null
+     */
+    Map<String, String> get(String fingerprintId, DeviceFingerprint fingerprint, String clientIp);
+}
@@ -0,0 +1,45 @@
+package com.openinstall.loadtest;
+
+import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.model.TrackingData;
+import com.openinstall.service.TrackingService;
+
+import java.util.Map;
+
+/**
+ * 直接调用 TrackingService 回放（不经过 HTTP、参数校验与控制器），只衡量服务层与存储层
+ */
+final class ServiceReplayTarget implements ReplayTarget {
+
+    private final TrackingService trackingService;
+
+    ServiceReplayTarget(TrackingService trackingService) {
+        this.trackingService = trackingService;
+    }
+
+    @Override
+    public boolean save(String fingerprintId, DeviceFingerprint fingerprint, Map<String, String> params,
+                        Long timestamp, String clientIp) {
+        TrackingData data = new TrackingData();
+        data.setFingerprint(fingerprint);
+        data.setParams(params);
+        data.setTimestamp(timestamp != null ? timestamp : System.currentTimeMillis());
+        data.setClientIp(clientIp);
+        try {
+            // 与 /save 一样走异步保存，开启微批写入时同样排队写入
+            return trackingService.saveTrackingDataAsync(data).join() != null;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Map<String, String> get(String fingerprintId, DeviceFingerprint fingerprint, String clientIp) {
+        try {
+            TrackingData data = trackingService.matchTrackingData(fingerprint, clientIp);
+            return data != null ? data.getParams() : Map.of();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.openinstall.loadtest;
+
+import com.openinstall.OpenInstallApplication;
+import com.openinstall.service.TrackingService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 回放 tracking.capture 录制的 /save、/get 请求
+ *
+ * 按录制时的到达间隔（或 N 倍速、或尽快）重新发送请求，输出吞吐、p50/p99/p999 延迟与匹配结果；
+ * 指定 --baseline 时逐条对比匹配结果，用于确认改动是否改变了归因。
+ * 默认在进程内启动应用（memory 存储引擎）并直接调用 TrackingService，--layer=http 时经过 HTTP 接口，
+ * 指定 --target 时回放到已运行的服务。
+ *
+ * 用法：java -cp target/benchmarks.jar com.openinstall.loadtest.TrafficReplay --capture=目录或文件 [--name=value ...]
+ */
+public final class TrafficReplay {
+
+    private TrafficReplay() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        ReplayOptions options = ReplayOptions.parse(args);
+
+        ConfigurableApplicationContext application = null;
+        ReplayTarget target;
+        if (options.target != null) {
+            target = new HttpReplayTarget(options.target);
+        } else {
+            application = SpringApplication.run(OpenInstallApplication.class, options.applicationArgs());
+            if ("http".equals(options.layer)) {
+                int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+                target = new HttpReplayTarget("http://localhost:" + port);
+            } else {
+                target = new ServiceReplayTarget(application.getBean(TrackingService.class));
+            }
+            System.out.println("进程内应用已启动: layer=" + options.layer
+                    + " (" + String.join(" ", options.applicationArgs()) + ")");
+        }
+
+        try {
+            ReplayRun run = new ReplayRun(options, target);
+            run.run();
+            run.printReport(System.out);
+            if (options.outcomes != null) {
+                run.outcomes.write(options.outcomes);
+                System.out.println("匹配结果已写入 " + options.outcomes.toAbsolutePath());
+            }
+            if (options.baseline != null) {
+                run.outcomes.printDiff(ReplayOutcomes.read(options.baseline), System.out);
+            }
+            if (options.histogramDir != null) {
+                run.writeDistributions();
+                System.out.println("延迟分布已写入 " + options.histogramDir.toAbsolutePath());
+            }
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+        }
+    }
+}
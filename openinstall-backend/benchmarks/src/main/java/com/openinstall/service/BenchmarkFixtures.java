@@ -0,0 +1,112 @@
+package com.openinstall.service;
+
+import com.openinstall.config.TrackingProperties;
+import com.openinstall.journal.MatchJournal;
+import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.store.InMemoryTrackingStore;
+import com.openinstall.store.TrackingLookupFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 基准测试与压测工具共用的服务装配与测试数据
+ *
+ * 数据全部由固定种子生成，同一组参数每次运行得到完全相同的输入。
+ */
+public final class BenchmarkFixtures {
+
+    public static final long SEED = 20240601L;
+
+    private static final String[] DESKTOP_TEMPLATES = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/%d.0.%d.%d Safari/537.36",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/%d.0.%d.%d Safari/537.36",
+            "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/%d.0.%d.%d Safari/537.36",
+            "Mozilla/5.0 (Windows NT 6.1; Win64; x64; rv:%d.0) Gecko/20100101 Firefox/%d.%d.%d",
+    };
+
+    private static final String[] MOBILE_TEMPLATES = {
+            "Mozilla/5.0 (Linux; Android %d; SM-G99%d) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/%d.0.%d.0 Mobile Safari/537.36",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS %d_%d like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/%d.0 Mobile/15E%d Safari/604.1",
+            "Mozilla/5.0 (iPad; CPU OS %d_%d like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/%d.0 Mobile/15E%d Safari/604.1",
+            "Android/%d (SM-G99%d; build %d.%d)",
+            "iOS/%d (iPhone%d,%d; build %d)",
+    };
+
+    private static final String[] DESKTOP_PLATFORMS = {"Win32", "MacIntel", "Linux x86_64"};
+    private static final String[] MOBILE_PLATFORMS = {"android", "ios", "Linux armv8l", "iPhone"};
+
+    /**
+     * 时区覆盖 IANA 名称、缩写加偏移量、只有偏移量三种上报格式
+     */
+    private static final String[] TIMEZONES = {"Asia/Shanghai", "America/New_York", "CST", "PST", "UTC", null};
+    private static final int[] TIMEZONE_OFFSETS = {480, -300, 480, -480, 0, 540};
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * 装配被测服务：内存存储引擎，不写事件日志，不启用负查找过滤器（只用于 redis 引擎），其余配置为默认值，除非调用方修改 properties
+     */
+    static AnnotationConfigApplicationContext context(TrackingProperties properties) {
+        properties.getJournal().setEnabled(false);
+        properties.getLookupFilter().setEnabled(false);
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark",
+                Map.of("tracking.storage.engine", "memory")));
+        context.registerBean(TrackingProperties.class, () -> properties);
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.register(UserAgentNormalizer.class, FingerprintService.class, InMemoryTrackingStore.class,
+                TrackingWriteBehind.class, MatchJournal.class, TrackingLookupFilter.class, TrackingService.class);
+        context.refresh();
+        return context;
+    }
+
+    /**
+     * 按 UA 组成生成 count 个原始 User-Agent（浏览器版本号不同，标准化结果相同的 UA 会重复出现）
+     * @param mix desktop、mobile 或 mixed（各占一半）
+     */
+    public static List<String> userAgents(String mix, int count, Random random) {
+        List<String> userAgents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean mobile = switch (mix) {
+                case "desktop" -> false;
+                case "mobile" -> true;
+                case "mixed" -> random.nextBoolean();
+                default -> throw new IllegalArgumentException("未知的 UA 组成: " + mix);
+            };
+            String[] templates = mobile ? MOBILE_TEMPLATES : DESKTOP_TEMPLATES;
+            String template = templates[random.nextInt(templates.length)];
+            userAgents.add(String.format(template, 9 + random.nextInt(100), random.nextInt(10),
+                    random.nextInt(7000), random.nextInt(200)));
+        }
+        return userAgents;
+    }
+
+    /**
+     * 随机设备指纹：UA 取自 userAgents，platform 与 UA 类型一致，时区覆盖三种上报格式，一半带 Canvas 指纹
+     */
+    public static DeviceFingerprint fingerprint(String userAgent, Random random) {
+        boolean mobile = userAgent.contains("Android") || userAgent.contains("iP") || userAgent.startsWith("iOS/");
+        String[] platforms = mobile ? MOBILE_PLATFORMS : DESKTOP_PLATFORMS;
+        int timezone = random.nextInt(TIMEZONES.length);
+
+        DeviceFingerprint fingerprint = new DeviceFingerprint();
+        fingerprint.setUserAgent(userAgent);
+        fingerprint.setPlatform(platforms[random.nextInt(platforms.length)]);
+        fingerprint.setScreenWidth(mobile ? 360 + random.nextInt(80) : 1280 + random.nextInt(640));
+        fingerprint.setScreenHeight(mobile ? 740 + random.nextInt(200) : 720 + random.nextInt(480));
+        fingerprint.setTimezone(TIMEZONES[timezone]);
+        fingerprint.setTimezoneOffset(TIMEZONE_OFFSETS[timezone]);
+        if (random.nextBoolean()) {
+            fingerprint.setCanvasFingerprint(Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()));
+        }
+        return fingerprint;
+    }
+}
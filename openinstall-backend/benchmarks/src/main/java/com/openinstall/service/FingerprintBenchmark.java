@@ -0,0 +1,137 @@
+package com.openinstall.service;
+
+import com.openinstall.config.TrackingProperties;
+import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.model.FingerprintFeatures;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 指纹计算热路径：指纹ID生成、User-Agent 与时区标准化、特征向量相似度
+ * generateFingerprintIdBaseline 按优化前的方式生成 MD5 ID（每次获取 MessageDigest、拼接字符串后编码、逐字节转十六进制），
+ * 标准化与 generateFingerprintId 相同，两者之差即ID计算本身的开销差
+ *
+ * 参数：
+ * uaMix        UA 组成（desktop / mobile / mixed）
+ * uaCacheSize  UA 标准化缓存条目数，0 表示每次都完整解析
+ * idHash       指纹ID哈希算法（只影响 generateFingerprintId）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class FingerprintBenchmark {
+
+    /**
+     * 输入条数（2 的幂，按下标循环取用）
+     */
+    private static final int SIZE = 4096;
+
+    @Param({"desktop", "mobile", "mixed"})
+    public String uaMix;
+
+    @Param({"0", "10000"})
+    public int uaCacheSize;
+
+    private AnnotationConfigApplicationContext context;
+    private FingerprintService fingerprintService;
+    private UserAgentNormalizer userAgentNormalizer;
+    private double threshold;
+
+    private DeviceFingerprint[] fingerprints;
+    private FingerprintFeatures[] features;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TrackingProperties properties = new TrackingProperties();
+        properties.getFingerprint().setUserAgentCacheSize(uaCacheSize);
+        context = BenchmarkFixtures.context(properties);
+        fingerprintService = context.getBean(FingerprintService.class);
+        userAgentNormalizer = context.getBean(UserAgentNormalizer.class);
+        threshold = properties.getSimilarityThreshold();
+
+        // UA 种类少于输入条数，开启缓存时以命中为主，与线上同一批机型反复出现的情况一致
+        Random random = new Random(BenchmarkFixtures.SEED);
+        List<String> userAgents = BenchmarkFixtures.userAgents(uaMix, SIZE / 4, random);
+        fingerprints = new DeviceFingerprint[SIZE];
+        features = new FingerprintFeatures[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            fingerprints[i] = BenchmarkFixtures.fingerprint(userAgents.get(random.nextInt(userAgents.size())), random);
+            features[i] = fingerprintService.extractFeatures(fingerprints[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private int nextIndex() {
+        return next++ & (SIZE - 1);
+    }
+
+    @State(Scope.Benchmark)
+    public static class IdHashState {
+
+        @Param({"MD5", "MURMUR3"})
+        public TrackingProperties.IdHash idHash;
+    }
+
+    @Benchmark
+    public String generateFingerprintId(IdHashState state) {
+        return fingerprintService.generateFingerprintId(fingerprints[nextIndex()], state.idHash);
+    }
+
+    @Benchmark
+    public String generateFingerprintIdBaseline() throws NoSuchAlgorithmException {
+        DeviceFingerprint fingerprint = fingerprints[nextIndex()];
+        StringBuilder sb = new StringBuilder();
+        sb.append(userAgentNormalizer.normalize(fingerprint.getUserAgent())).append("|");
+        sb.append(fingerprintService.normalizePlatform(fingerprint.getPlatform())).append("|");
+        sb.append(fingerprint.getScreenWidth() != null ? fingerprint.getScreenWidth().toString() : "").append("|");
+        sb.append(fingerprint.getScreenHeight() != null ? fingerprint.getScreenHeight().toString() : "").append("|");
+        sb.append(fingerprintService.normalizeTimezone(fingerprint.getTimezone(), fingerprint.getTimezoneOffset())).append("|");
+
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        byte[] hash = md.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+        StringBuilder hexString = new StringBuilder();
+        for (byte b : hash) {
+            String hex = Integer.toHexString(0xff & b);
+            if (hex.length() == 1) {
+                hexString.append('0');
+            }
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+
+    @Benchmark
+    public String normalizeUserAgent() {
+        return userAgentNormalizer.normalize(fingerprints[nextIndex()].getUserAgent());
+    }
+
+    @Benchmark
+    public String normalizeTimezone() {
+        DeviceFingerprint fingerprint = fingerprints[nextIndex()];
+        return fingerprintService.normalizeTimezone(fingerprint.getTimezone(), fingerprint.getTimezoneOffset());
+    }
+
+    /**
+     * 随机配对的特征向量，使用配置的阈值（低于阈值时提前返回的路径占多数，与模糊匹配一致）
+     */
+    @Benchmark
+    public double calculateSimilarity() {
+        int i = nextIndex();
+        return fingerprintService.calculateSimilarity(features[i], features[(i * 31 + 7) & (SIZE - 1)], threshold);
+    }
+}
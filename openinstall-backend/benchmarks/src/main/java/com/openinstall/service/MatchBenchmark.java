@@ -0,0 +1,127 @@
+package com.openinstall.service;
+
+import com.openinstall.config.TrackingProperties;
+import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.model.TrackingData;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TrackingService.matchTrackingData 端到端（内存存储引擎）
+ *
+ * 认领会改变数据状态，因此每轮迭代重建存储并写入数据，然后恰好执行 QUERIES 次匹配（单次计时模式），
+ * 报告的是一轮 QUERIES 次匹配的总耗时。
+ *
+ * 参数：
+ * uaMix       UA 组成（desktop / mobile / mixed）
+ * candidates  未命中查询所在候选索引中的候选数（实际扫描数受 tracking.fuzzy.max-candidates 限制）
+ * hitRatio    精确命中的查询比例；其余查询精确认领失败后进入模糊匹配，扫描全部候选但没有候选达到阈值
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, batchSize = MatchBenchmark.QUERIES)
+@Measurement(iterations = 10, batchSize = MatchBenchmark.QUERIES)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class MatchBenchmark {
+
+    /**
+     * 每轮迭代的匹配次数
+     */
+    static final int QUERIES = 2048;
+
+    /**
+     * 未命中查询分布在多少个候选索引上
+     */
+    private static final int GROUPS = 32;
+
+    private static final int MISS_HEIGHT = 2000;
+    private static final int HIT_HEIGHT = 2001;
+
+    @Param({"desktop", "mobile", "mixed"})
+    public String uaMix;
+
+    @Param({"10", "100", "1000"})
+    public int candidates;
+
+    @Param({"0.0", "0.5", "1.0"})
+    public double hitRatio;
+
+    private AnnotationConfigApplicationContext context;
+    private TrackingService trackingService;
+    private DeviceFingerprint[] queries;
+    private int next;
+
+    /**
+     * 每轮迭代使用相同的种子，各轮输入完全相同
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        TrackingProperties properties = new TrackingProperties();
+        properties.getFuzzy().setMaxIndexSize(Math.max(candidates, properties.getFuzzy().getMaxIndexSize()));
+        context = BenchmarkFixtures.context(properties);
+        trackingService = context.getBean(TrackingService.class);
+
+        Random random = new Random(BenchmarkFixtures.SEED);
+        List<String> groupUserAgents = BenchmarkFixtures.userAgents(uaMix, GROUPS, random);
+        List<Boolean> hits = new ArrayList<>(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            hits.add(i < Math.round(QUERIES * hitRatio));
+        }
+        Collections.shuffle(hits, random);
+
+        // 每组的未命中查询与 candidates 条干扰数据共享 屏幕+UA 索引；干扰数据的 platform 与时区不同，
+        // 相似度 3/5 低于阈值，只被扫描、不会被认领。命中数据的屏幕高度不同，不与干扰数据共享索引
+        for (int group = 0; group < GROUPS; group++) {
+            for (int k = 0; k < candidates; k++) {
+                save(groupFingerprint(groupUserAgents.get(group), group, "decoy-" + k, "Decoy/" + k, MISS_HEIGHT));
+            }
+        }
+
+        queries = new DeviceFingerprint[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            int group = i % GROUPS;
+            int height = hits.get(i) ? HIT_HEIGHT : MISS_HEIGHT;
+            queries[i] = groupFingerprint(groupUserAgents.get(group), group, "Win32", "Query/" + i, height);
+            if (hits.get(i)) {
+                save(groupFingerprint(groupUserAgents.get(group), group, "Win32", "Query/" + i, height));
+            }
+        }
+        next = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public TrackingData matchTrackingData() {
+        return trackingService.matchTrackingData(queries[next++], null);
+    }
+
+    private void save(DeviceFingerprint fingerprint) {
+        TrackingData data = new TrackingData();
+        data.setFingerprint(fingerprint);
+        data.setParams(new HashMap<>(Collections.singletonMap("channel", "benchmark")));
+        trackingService.saveTrackingData(data);
+    }
+
+    private static DeviceFingerprint groupFingerprint(String userAgent, int group, String platform,
+                                                      String timezone, int screenHeight) {
+        DeviceFingerprint fingerprint = new DeviceFingerprint();
+        fingerprint.setUserAgent(userAgent);
+        fingerprint.setPlatform(platform);
+        fingerprint.setScreenWidth(1000 + group);
+        fingerprint.setScreenHeight(screenHeight);
+        fingerprint.setTimezone(timezone);
+        return fingerprint;
+    }
+}
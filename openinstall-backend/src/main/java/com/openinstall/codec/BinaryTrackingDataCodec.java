@@ -0,0 +1,532 @@
+package com.openinstall.codec;
+
+import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.model.FingerprintFeatures;
+import com.openinstall.model.TrackingData;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TrackingData 紧凑二进制编码
+ *
+ * 格式（版本 2）：
+ * <pre>
+ * [魔数 0xB7][版本][标志位][正文]
+ * 标志位 bit0 = 1 时正文为 [原始长度 varint][LZ4 块]
+ * 标志位 bit1-2 为正文类型：0 = TrackingData，1 = DeviceFingerprint，2 = 通用值（如参数 Map）
+ * TrackingData / DeviceFingerprint 正文 = [字段存在位图 varint][按固定顺序写出的非空字段]
+ * </pre>
+ * 字段顺序由版本号固定，不写字段名和类型信息；新增字段时追加到末尾并提升版本号。
+ * 版本 2 在 TrackingData 末尾追加了特征向量，版本 1 的数据仍可读取。
+ */
+public final class BinaryTrackingDataCodec {
+
+    /**
+     * 魔数，与 JSON 的首字节（'{'、'"'、'['）不会冲突
+     */
+    public static final byte MAGIC = (byte) 0xB7;
+
+    public static final byte VERSION = 2;
+
+    private static final byte MIN_VERSION = 1;
+
+    private static final int FLAG_LZ4 = 1;
+    private static final int KIND_SHIFT = 1;
+    private static final int KIND_MASK = 0b110;
+    private static final int KIND_TRACKING_DATA = 0;
+    private static final int KIND_FINGERPRINT = 1;
+    private static final int KIND_VALUE = 2;
+    private static final int HEADER_LENGTH = 3;
+
+    // 通用值类型标记（用于 webglFingerprint 等无固定结构的字段）
+    private static final int TAG_NULL = 0;
+    private static final int TAG_STRING = 1;
+    private static final int TAG_LONG = 2;
+    private static final int TAG_DOUBLE = 3;
+    private static final int TAG_TRUE = 4;
+    private static final int TAG_FALSE = 5;
+    private static final int TAG_LIST = 6;
+    private static final int TAG_MAP = 7;
+
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+    private final int compressionThreshold;
+    private final LZ4Compressor compressor = LZ4.fastCompressor();
+    private final LZ4FastDecompressor decompressor = LZ4.fastDecompressor();
+
+    /**
+     * @param compressionThreshold 正文达到该字节数时使用 LZ4 压缩，小于等于 0 表示不压缩
+     */
+    public BinaryTrackingDataCodec(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public static boolean isBinary(byte[] bytes) {
+        return bytes != null && bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC;
+    }
+
+    public byte[] encode(TrackingData data) {
+        Writer body = new Writer(256);
+        writeTrackingData(body, data);
+        return frame(body, KIND_TRACKING_DATA);
+    }
+
+    /**
+     * 单独编码设备指纹（Hash 存储模式下的指纹字段）
+     */
+    public byte[] encode(DeviceFingerprint fingerprint) {
+        Writer body = new Writer(192);
+        writeFingerprint(body, fingerprint);
+        return frame(body, KIND_FINGERPRINT);
+    }
+
+    /**
+     * 编码通用值（字符串、数字、布尔、List、Map 及其嵌套）
+     */
+    public byte[] encodeValue(Object value) {
+        Writer body = new Writer(64);
+        writeValue(body, value);
+        return frame(body, KIND_VALUE);
+    }
+
+    /**
+     * 解码任意类型的二进制正文，返回 TrackingData、DeviceFingerprint 或通用值
+     */
+    public Object decode(byte[] bytes) {
+        if (!isBinary(bytes)) {
+            throw new IllegalArgumentException("不是二进制编码的追踪数据");
+        }
+        int version = bytes[1];
+        if (version < MIN_VERSION || version > VERSION) {
+            throw new IllegalArgumentException("不支持的追踪数据编码版本: " + version);
+        }
+
+        Reader reader;
+        if ((bytes[2] & FLAG_LZ4) != 0) {
+            Reader header = new Reader(bytes, HEADER_LENGTH);
+            int length = (int) header.readVarLong();
+            byte[] body = new byte[length];
+            decompressor.decompress(bytes, header.pos, body, 0, length);
+            reader = new Reader(body, 0);
+        } else {
+            reader = new Reader(bytes, HEADER_LENGTH);
+        }
+
+        int kind = (bytes[2] & KIND_MASK) >> KIND_SHIFT;
+        switch (kind) {
+            case KIND_TRACKING_DATA:
+                return readTrackingData(reader);
+            case KIND_FINGERPRINT:
+                return readFingerprint(reader);
+            case KIND_VALUE:
+                return readValue(reader);
+            default:
+                throw new IllegalArgumentException("未知的正文类型: " + kind);
+        }
+    }
+
+    /**
+     * 单独编码特征向量（Hash 存储模式下的特征字段），不带头部，不压缩
+     */
+    public static byte[] encodeFeatures(FingerprintFeatures features) {
+        Writer w = new Writer(32);
+        writeFeatures(w, features);
+        return w.toByteArray();
+    }
+
+    public static FingerprintFeatures decodeFeatures(byte[] bytes) {
+        return readFeatures(new Reader(bytes, 0));
+    }
+
+    private byte[] frame(Writer body, int kind) {
+        int flags = kind << KIND_SHIFT;
+        Writer out;
+        if (compressionThreshold > 0 && body.size >= compressionThreshold) {
+            int maxLength = compressor.maxCompressedLength(body.size);
+            out = new Writer(HEADER_LENGTH + 5 + maxLength);
+            out.writeByte(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(flags | FLAG_LZ4);
+            out.writeVarLong(body.size);
+            out.ensure(maxLength);
+            out.size += compressor.compress(body.buf, 0, body.size, out.buf, out.size, maxLength);
+        } else {
+            out = new Writer(HEADER_LENGTH + body.size);
+            out.writeByte(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(flags);
+            out.writeBytes(body.buf, 0, body.size);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeTrackingData(Writer w, TrackingData data) {
+        Object[] fields = {
+                data.getFingerprintId(), data.getFingerprint(), data.getParams(), data.getTimestamp(),
+                data.getClientIp(), data.getExpiresAt(), data.getMatched(), data.getMatchCount(),
+                data.getFeatures()
+        };
+        w.writeVarLong(presence(fields));
+        if (data.getFingerprintId() != null) w.writeString(data.getFingerprintId());
+        if (data.getFingerprint() != null) writeFingerprint(w, data.getFingerprint());
+        if (data.getParams() != null) writeStringMap(w, data.getParams());
+        if (data.getTimestamp() != null) w.writeVarLong(data.getTimestamp());
+        if (data.getClientIp() != null) w.writeString(data.getClientIp());
+        if (data.getExpiresAt() != null) w.writeVarLong(data.getExpiresAt());
+        if (data.getMatched() != null) w.writeByte(data.getMatched() ? 1 : 0);
+        if (data.getMatchCount() != null) w.writeZigZag(data.getMatchCount());
+        if (data.getFeatures() != null) writeFeatures(w, data.getFeatures());
+    }
+
+    private static TrackingData readTrackingData(Reader r) {
+        long present = r.readVarLong();
+        TrackingData data = new TrackingData();
+        data.setFingerprintId(has(present, 0) ? r.readString() : null);
+        data.setFingerprint(has(present, 1) ? readFingerprint(r) : null);
+        data.setParams(has(present, 2) ? readStringMap(r) : null);
+        data.setTimestamp(has(present, 3) ? r.readVarLong() : null);
+        data.setClientIp(has(present, 4) ? r.readString() : null);
+        data.setExpiresAt(has(present, 5) ? r.readVarLong() : null);
+        data.setMatched(has(present, 6) ? r.readByte() != 0 : null);
+        data.setMatchCount(has(present, 7) ? (int) r.readZigZag() : null);
+        data.setFeatures(has(present, 8) ? readFeatures(r) : null);
+        return data;
+    }
+
+    private static void writeFingerprint(Writer w, DeviceFingerprint fp) {
+        Object[] fields = {
+                fp.getUserAgent(), fp.getLanguage(), fp.getPlatform(), fp.getScreenWidth(), fp.getScreenHeight(),
+                fp.getScreenColorDepth(), fp.getPixelRatio(), fp.getTimezone(), fp.getTimezoneOffset(),
+                fp.getCanvasFingerprint(), fp.getWebglFingerprint(), fp.getCookieEnabled(), fp.getDoNotTrack(),
+                fp.getOsVersion(), fp.getDeviceModel(), fp.getDeviceBrand(), fp.getDeviceName(),
+                fp.getScreenScale(), fp.getScreenDensity()
+        };
+        w.writeVarLong(presence(fields));
+        if (fp.getUserAgent() != null) w.writeString(fp.getUserAgent());
+        if (fp.getLanguage() != null) w.writeString(fp.getLanguage());
+        if (fp.getPlatform() != null) w.writeString(fp.getPlatform());
+        if (fp.getScreenWidth() != null) w.writeZigZag(fp.getScreenWidth());
+        if (fp.getScreenHeight() != null) w.writeZigZag(fp.getScreenHeight());
+        if (fp.getScreenColorDepth() != null) w.writeZigZag(fp.getScreenColorDepth());
+        if (fp.getPixelRatio() != null) w.writeDouble(fp.getPixelRatio());
+        if (fp.getTimezone() != null) w.writeString(fp.getTimezone());
+        if (fp.getTimezoneOffset() != null) w.writeZigZag(fp.getTimezoneOffset());
+        if (fp.getCanvasFingerprint() != null) w.writeString(fp.getCanvasFingerprint());
+        if (fp.getWebglFingerprint() != null) writeValue(w, fp.getWebglFingerprint());
+        if (fp.getCookieEnabled() != null) w.writeByte(fp.getCookieEnabled() ? 1 : 0);
+        if (fp.getDoNotTrack() != null) w.writeString(fp.getDoNotTrack());
+        if (fp.getOsVersion() != null) w.writeString(fp.getOsVersion());
+        if (fp.getDeviceModel() != null) w.writeString(fp.getDeviceModel());
+        if (fp.getDeviceBrand() != null) w.writeString(fp.getDeviceBrand());
+        if (fp.getDeviceName() != null) w.writeString(fp.getDeviceName());
+        if (fp.getScreenScale() != null) w.writeDouble(fp.getScreenScale());
+        if (fp.getScreenDensity() != null) w.writeDouble(fp.getScreenDensity());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static DeviceFingerprint readFingerprint(Reader r) {
+        long present = r.readVarLong();
+        DeviceFingerprint fp = new DeviceFingerprint();
+        fp.setUserAgent(has(present, 0) ? r.readString() : null);
+        fp.setLanguage(has(present, 1) ? r.readString() : null);
+        fp.setPlatform(has(present, 2) ? r.readString() : null);
+        fp.setScreenWidth(has(present, 3) ? (int) r.readZigZag() : null);
+        fp.setScreenHeight(has(present, 4) ? (int) r.readZigZag() : null);
+        fp.setScreenColorDepth(has(present, 5) ? (int) r.readZigZag() : null);
+        fp.setPixelRatio(has(present, 6) ? r.readDouble() : null);
+        fp.setTimezone(has(present, 7) ? r.readString() : null);
+        fp.setTimezoneOffset(has(present, 8) ? (int) r.readZigZag() : null);
+        fp.setCanvasFingerprint(has(present, 9) ? r.readString() : null);
+        fp.setWebglFingerprint(has(present, 10) ? (Map<String, Object>) readValue(r) : null);
+        fp.setCookieEnabled(has(present, 11) ? r.readByte() != 0 : null);
+        fp.setDoNotTrack(has(present, 12) ? r.readString() : null);
+        fp.setOsVersion(has(present, 13) ? r.readString() : null);
+        fp.setDeviceModel(has(present, 14) ? r.readString() : null);
+        fp.setDeviceBrand(has(present, 15) ? r.readString() : null);
+        fp.setDeviceName(has(present, 16) ? r.readString() : null);
+        fp.setScreenScale(has(present, 17) ? r.readDouble() : null);
+        fp.setScreenDensity(has(present, 18) ? r.readDouble() : null);
+        return fp;
+    }
+
+    /**
+     * 特征向量：哈希值按 4 字节定长写出（varint 对随机分布的哈希没有收益），屏幕尺寸与 Canvas 按 zigzag varint
+     */
+    private static void writeFeatures(Writer w, FingerprintFeatures features) {
+        w.writeInt(features.getUserAgent());
+        w.writeInt(features.getPlatform());
+        w.writeZigZag(features.getScreenWidth());
+        w.writeZigZag(features.getScreenHeight());
+        w.writeInt(features.getTimezone());
+        w.writeZigZag(features.getCanvas());
+    }
+
+    private static FingerprintFeatures readFeatures(Reader r) {
+        FingerprintFeatures features = new FingerprintFeatures();
+        features.setUserAgent(r.readInt());
+        features.setPlatform(r.readInt());
+        features.setScreenWidth((int) r.readZigZag());
+        features.setScreenHeight((int) r.readZigZag());
+        features.setTimezone(r.readInt());
+        features.setCanvas(r.readZigZag());
+        return features;
+    }
+
+    private static void writeStringMap(Writer w, Map<String, String> map) {
+        w.writeVarLong(map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            w.writeString(entry.getKey());
+            w.writeNullableString(entry.getValue());
+        }
+    }
+
+    private static Map<String, String> readStringMap(Reader r) {
+        int size = (int) r.readVarLong();
+        Map<String, String> map = new LinkedHashMap<>(Math.max(4, size * 4 / 3 + 1));
+        for (int i = 0; i < size; i++) {
+            map.put(r.readString(), r.readNullableString());
+        }
+        return map;
+    }
+
+    private static void writeValue(Writer w, Object value) {
+        if (value == null) {
+            w.writeByte(TAG_NULL);
+        } else if (value instanceof String s) {
+            w.writeByte(TAG_STRING);
+            w.writeString(s);
+        } else if (value instanceof Boolean b) {
+            w.writeByte(b ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            w.writeByte(TAG_LONG);
+            w.writeZigZag(((Number) value).longValue());
+        } else if (value instanceof Number n) {
+            w.writeByte(TAG_DOUBLE);
+            w.writeDouble(n.doubleValue());
+        } else if (value instanceof Map<?, ?> map) {
+            w.writeByte(TAG_MAP);
+            w.writeVarLong(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                w.writeString(String.valueOf(entry.getKey()));
+                writeValue(w, entry.getValue());
+            }
+        } else if (value instanceof List<?> list) {
+            w.writeByte(TAG_LIST);
+            w.writeVarLong(list.size());
+            for (Object item : list) {
+                writeValue(w, item);
+            }
+        } else {
+            w.writeByte(TAG_STRING);
+            w.writeString(value.toString());
+        }
+    }
+
+    private static Object readValue(Reader r) {
+        int tag = r.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return r.readString();
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_LONG: {
+                // 与 Jackson 反序列化结果保持一致：int 范围内返回 Integer
+                long v = r.readZigZag();
+                return v == (int) v ? (Object) (int) v : (Object) v;
+            }
+            case TAG_DOUBLE:
+                return r.readDouble();
+            case TAG_MAP: {
+                int size = (int) r.readVarLong();
+                Map<String, Object> map = new LinkedHashMap<>(Math.max(4, size * 4 / 3 + 1));
+                for (int i = 0; i < size; i++) {
+                    map.put(r.readString(), readValue(r));
+                }
+                return map;
+            }
+            case TAG_LIST: {
+                int size = (int) r.readVarLong();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(r));
+                }
+                return list;
+            }
+            default:
+                throw new IllegalArgumentException("未知的值类型标记: " + tag);
+        }
+    }
+
+    private static long presence(Object[] fields) {
+        long bits = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] != null) {
+                bits |= 1L << i;
+            }
+        }
+        return bits;
+    }
+
+    private static boolean has(long present, int index) {
+        return (present & (1L << index)) != 0;
+    }
+
+    /**
+     * 可扩容的字节写入器
+     */
+    private static final class Writer {
+        private byte[] buf;
+        private int size;
+
+        Writer(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void ensure(int extra) {
+            if (size + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+            }
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[size++] = (byte) b;
+        }
+
+        void writeBytes(byte[] src, int offset, int length) {
+            ensure(length);
+            System.arraycopy(src, offset, buf, size, length);
+            size += length;
+        }
+
+        void writeVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+        }
+
+        void writeZigZag(long v) {
+            writeVarLong((v << 1) ^ (v >> 63));
+        }
+
+        void writeInt(int v) {
+            ensure(4);
+            for (int i = 0; i < 4; i++) {
+                buf[size++] = (byte) (v >>> (i * 8));
+            }
+        }
+
+        void writeDouble(double d) {
+            long bits = Double.doubleToRawLongBits(d);
+            ensure(8);
+            for (int i = 0; i < 8; i++) {
+                buf[size++] = (byte) (bits >>> (i * 8));
+            }
+        }
+
+        void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        /**
+         * 可为空的字符串：长度 + 1 写入，0 表示 null
+         */
+        void writeNullableString(String s) {
+            if (s == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        byte[] toByteArray() {
+            return size == buf.length ? buf : Arrays.copyOf(buf, size);
+        }
+    }
+
+    /**
+     * 字节读取器
+     */
+    private static final class Reader {
+        private final byte[] buf;
+        private int pos;
+
+        Reader(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        int readByte() {
+            return buf[pos++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buf[pos++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("varint 格式错误");
+        }
+
+        long readZigZag() {
+            long v = readVarLong();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        int readInt() {
+            int v = 0;
+            for (int i = 0; i < 4; i++) {
+                v |= (buf[pos++] & 0xFF) << (i * 8);
+            }
+            return v;
+        }
+
+        double readDouble() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits |= (long) (buf[pos++] & 0xFF) << (i * 8);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+
+        String readNullableString() {
+            int length = (int) readVarLong();
+            if (length == 0) {
+                return null;
+            }
+            String s = new String(buf, pos, length - 1, StandardCharsets.UTF_8);
+            pos += length - 1;
+            return s;
+        }
+    }
+}
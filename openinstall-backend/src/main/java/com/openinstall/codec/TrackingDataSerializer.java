@@ -0,0 +1,64 @@
+package com.openinstall.codec;
+
+import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.model.TrackingData;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Map;
+
+/**
+ * Redis value 序列化器
+ *
+ * 写入：二进制模式下 TrackingData、DeviceFingerprint 及 Map（Hash 存储模式下的参数字段）
+ * 使用 {@link BinaryTrackingDataCodec}，其他值及 JSON 模式使用 JSON。
+ * 读取：按首字节自动识别二进制与 JSON，两种格式的数据可以在迁移期间共存。
+ */
+public class TrackingDataSerializer implements RedisSerializer<Object> {
+
+    /**
+     * 编码格式
+     */
+    public enum Format {
+        JSON,
+        BINARY
+    }
+
+    private final Format format;
+    private final BinaryTrackingDataCodec binaryCodec;
+    private final GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer();
+
+    public TrackingDataSerializer(Format format, int compressionThreshold) {
+        this.format = format;
+        this.binaryCodec = new BinaryTrackingDataCodec(compressionThreshold);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (format == Format.BINARY) {
+            if (value instanceof TrackingData data) {
+                return binaryCodec.encode(data);
+            }
+            if (value instanceof DeviceFingerprint fingerprint) {
+                return binaryCodec.encode(fingerprint);
+            }
+            if (value instanceof Map) {
+                return binaryCodec.encodeValue(value);
+            }
+        }
+        return jsonSerializer.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (BinaryTrackingDataCodec.isBinary(bytes)) {
+            try {
+                return binaryCodec.decode(bytes);
+            } catch (RuntimeException e) {
+                throw new SerializationException("二进制追踪数据解码失败", e);
+            }
+        }
+        return jsonSerializer.deserialize(bytes);
+    }
+}
@@ -0,0 +1,59 @@
+package com.openinstall.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openinstall.dto.ApiResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * 批量接口请求体大小限制（tracking.batch.max-body-size，WebFlux）
+ * 声明了 Content-Length 的请求直接按长度拒绝；分块传输的请求在解码超出 ReactiveWebConfig 设置的内存上限时中止，
+ * 两种情况都与 BatchRequestSizeFilter 一样返回 413
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveBatchRequestSizeFilter implements WebFilter {
+
+    @Autowired
+    private TrackingProperties trackingProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    @NonNull
+    public Mono<Void> filter(@NonNull ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+        if (!exchange.getRequest().getPath().value().endsWith("/batch")) {
+            return chain.filter(exchange);
+        }
+        long maxBytes = trackingProperties.getBatch().getMaxBodySize().toBytes();
+        if (exchange.getRequest().getHeaders().getContentLength() > maxBytes) {
+            return tooLarge(exchange.getResponse(), maxBytes);
+        }
+        return chain.filter(exchange)
+                .onErrorResume(DataBufferLimitException.class, e -> tooLarge(exchange.getResponse(), maxBytes));
+    }
+
+    private Mono<Void> tooLarge(ServerHttpResponse response, long maxBytes) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(ApiResponse.error("请求体超过 " + maxBytes + " 字节"));
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+        response.setStatusCode(HttpStatus.PAYLOAD_TOO_LARGE);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+}
@@ -0,0 +1,69 @@
+package com.openinstall.config;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.reactive.config.BlockingExecutionConfigurer;
+import org.springframework.web.reactive.config.CorsRegistry;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Web 配置（WebFlux，reactive profile）
+ *
+ * Tomcat 同时在类路径上时 Spring Boot 默认用 Tomcat 运行 WebFlux，这里显式使用 Netty。
+ * 跨域规则与 WebConfig 相同。返回 Mono 的接口在 Netty 事件循环上执行；其余接口（批量接口）阻塞访问存储，
+ * 在 tracking.batch.blocking-threads 个线程中执行，不占用事件循环。
+ * 解码器内存上限设为 tracking.batch.max-body-size，超出时由 ReactiveBatchRequestSizeFilter 返回 413。
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWebConfig implements WebFluxConfigurer {
+
+    @Autowired
+    private TrackingProperties trackingProperties;
+
+    private ThreadPoolTaskExecutor blockingExecutor;
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Override
+    public void addCorsMappings(@NonNull CorsRegistry registry) {
+        registry.addMapping("/api/**")
+                .allowedOrigins("*")
+                .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
+                .allowedHeaders("*")
+                .maxAge(3600);
+    }
+
+    @Override
+    public void configureBlockingExecution(@NonNull BlockingExecutionConfigurer configurer) {
+        int threads = trackingProperties.getBatch().getBlockingThreads();
+        blockingExecutor = new ThreadPoolTaskExecutor();
+        blockingExecutor.setCorePoolSize(threads);
+        blockingExecutor.setMaxPoolSize(threads);
+        blockingExecutor.setThreadNamePrefix("tracking-blocking-");
+        blockingExecutor.initialize();
+        configurer.setExecutor(blockingExecutor);
+    }
+
+    @Override
+    public void configureHttpMessageCodecs(@NonNull ServerCodecConfigurer configurer) {
+        configurer.defaultCodecs().maxInMemorySize((int) trackingProperties.getBatch().getMaxBodySize().toBytes());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (blockingExecutor != null) {
+            blockingExecutor.shutdown();
+        }
+    }
+}
@@ -1,11 +1,36 @@
 package com.openinstall.config;
 
+import com.openinstall.codec.TrackingDataSerializer;
+import com.openinstall.store.TrackingLookupFilter;
+import com.openinstall.store.TrackingNearCache;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.resource.NettyCustomizer;
+import io.netty.channel.Channel;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.data.redis.ClientResourcesBuilderCustomizer;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 /**
  * Redis 配置
@@ -14,20 +39,178 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 public class RedisConfig {
     
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory,
+                                                       ObjectProvider<SharedRedisConnections> sharedConnections,
+                                                       TrackingProperties trackingProperties) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
-        template.setConnectionFactory(connectionFactory);
+        // tracking.redis.connection-mode=shared 时所有命令在共享长连接上复用
+        SharedRedisConnections shared = sharedConnections.getIfAvailable();
+        template.setConnectionFactory(shared != null ? shared.connectionFactory() : connectionFactory);
         
         // 使用 String 序列化器作为 key 的序列化器
         template.setKeySerializer(new StringRedisSerializer());
         template.setHashKeySerializer(new StringRedisSerializer());
         
-        // 使用 JSON 序列化器作为 value 的序列化器
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
-        template.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
+        // value 序列化器：按 tracking.codec.format 选择 JSON 或紧凑二进制格式写入，读取时两种格式均可识别
+        TrackingProperties.Codec codec = trackingProperties.getCodec();
+        TrackingDataSerializer valueSerializer =
+                new TrackingDataSerializer(codec.getFormat(), codec.getCompressionThreshold());
+        template.setValueSerializer(valueSerializer);
+        template.setHashValueSerializer(valueSerializer);
         
         template.afterPropertiesSet();
         return template;
     }
-}
+    
+    /**
+     * 非阻塞访问使用的模板（tracking.api.mode=reactive）：值按原始字节读写，
+     * 由存储引擎使用 redisTemplate 的 value 序列化器编解码，两种访问方式的数据格式一致
+     */
+    @Bean
+    public ReactiveRedisTemplate<String, byte[]> reactiveRedisTemplate(ReactiveRedisConnectionFactory connectionFactory) {
+        RedisSerializationContext<String, byte[]> context = RedisSerializationContext
+                .<String, byte[]>newSerializationContext(new StringRedisSerializer())
+                .value(RedisSerializer.byteArray())
+                .hashKey(new StringRedisSerializer())
+                .hashValue(RedisSerializer.byteArray())
+                .build();
+        return new ReactiveRedisTemplate<>(connectionFactory, context);
+    }
+    
+    /**
+     * 共享连接模式的写入合并：同一连接上的多次写入在事件循环本轮任务结束时一次刷新，
+     * 并发请求的命令合并为一次系统调用发出（连续 flush-consolidation 次写入后强制刷新，避免刷新被无限推迟）
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "tracking.redis", name = "connection-mode", havingValue = "shared")
+    public ClientResourcesBuilderCustomizer flushConsolidationCustomizer(TrackingProperties trackingProperties) {
+        int flushAfterWrites = trackingProperties.getRedis().getFlushConsolidation();
+        return builder -> {
+            if (flushAfterWrites > 0) {
+                builder.nettyCustomizer(new NettyCustomizer() {
+                    @Override
+                    public void afterChannelInitialized(Channel channel) {
+                        channel.pipeline().addFirst(new FlushConsolidationHandler(flushAfterWrites, true));
+                    }
+                });
+            }
+        };
+    }
+    
+    /**
+     * 共享连接模式的命令队列上限：Redis 变慢或断线重连时，单个连接上堆积的命令超过上限后新命令立即失败
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "tracking.redis", name = "connection-mode", havingValue = "shared")
+    public LettuceClientConfigurationBuilderCustomizer requestQueueSizeCustomizer(TrackingProperties trackingProperties) {
+        int requestQueueSize = trackingProperties.getRedis().getRequestQueueSize();
+        return builder -> {
+            // 在 Spring Boot 生成的客户端选项（连接超时、命令超时、集群拓扑刷新等）基础上修改
+            ClientOptions options = builder.build().getClientOptions().orElseGet(ClientOptions::create);
+            builder.clientOptions(options.mutate().requestQueueSize(requestQueueSize).build());
+        };
+    }
 
+    /**
+     * 非阻塞模式下 Redis 响应在 Lettuce 计算线程池上发出：后续的反序列化、打分和响应写出不占用连接的 I/O 线程，
+     * 否则同一连接上所有请求的处理都排在一个 I/O 线程上，高并发时响应读取被推迟到命令超时
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "tracking.api", name = "mode", havingValue = "reactive")
+    public LettuceClientConfigurationBuilderCustomizer publishOnSchedulerCustomizer() {
+        return builder -> {
+            ClientOptions options = builder.build().getClientOptions().orElseGet(ClientOptions::create);
+            builder.clientOptions(options.mutate().publishOnScheduler(true).build());
+        };
+    }
+
+    /**
+     * 近端缓存失效消息订阅（仅在启用近端缓存时注册）
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "tracking.near-cache", name = "enabled", havingValue = "true")
+    public RedisMessageListenerContainer nearCacheListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                    TrackingNearCache nearCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(nearCache, new ChannelTopic(TrackingNearCache.INVALIDATION_CHANNEL));
+        return container;
+    }
+    
+    /**
+     * 负查找过滤器广播订阅（仅在启用负查找过滤器时注册）
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "tracking.lookup-filter", name = "enabled", havingValue = "true")
+    public RedisMessageListenerContainer lookupFilterListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       TrackingLookupFilter lookupFilter) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        // 在接收线程上按顺序处理，过滤器据此检查广播序号是否连续
+        container.setTaskExecutor(new SyncTaskExecutor());
+        container.addMessageListener(lookupFilter, new ChannelTopic(TrackingLookupFilter.CHANNEL));
+        return container;
+    }
+    
+    /**
+     * 保存追踪数据脚本：数据写入、索引添加、索引过期在一次往返内原子完成
+     */
+    @Bean
+    public RedisScript<Long> saveTrackingScript() {
+        return loadScript("scripts/save_tracking.lua", Long.class);
+    }
+    
+    /**
+     * 认领追踪数据脚本：检查、递增匹配次数并返回数据在一次往返内原子完成
+     */
+    @Bean
+    @SuppressWarnings("rawtypes")
+    public RedisScript<List> claimTrackingScript() {
+        return loadScript("scripts/claim_tracking.lua", List.class);
+    }
+    
+    /**
+     * Hash 存储模式的保存脚本
+     */
+    @Bean
+    public RedisScript<Long> saveTrackingHashScript() {
+        return loadScript("scripts/save_tracking_hash.lua", Long.class);
+    }
+    
+    /**
+     * Hash 存储模式的认领脚本：只修改认领字段，只返回响应需要的字段
+     */
+    @Bean
+    @SuppressWarnings("rawtypes")
+    public RedisScript<List> claimTrackingHashScript() {
+        return loadScript("scripts/claim_tracking_hash.lua", List.class);
+    }
+    
+    /**
+     * 集群键空间的索引更新脚本：索引与数据不在同一槽位，每个索引在其所在节点上单独更新
+     */
+    @Bean
+    public RedisScript<Long> updateIndexScript() {
+        return loadScript("scripts/update_index.lua", Long.class);
+    }
+    
+    /**
+     * 读取脚本并去掉整行注释，使发送给 Redis 的脚本只含 ASCII 字符。
+     * 脚本注释含中文，而 EVAL 回退路径会按平台默认字符集转换脚本，非 UTF-8 环境下
+     * Redis 缓存的脚本与 SHA1 不一致，EVALSHA 永远无法命中，每次调用都要多一次往返并重新编译脚本
+     */
+    private static <T> RedisScript<T> loadScript(String path, Class<T> resultType) {
+        try {
+            String source = StreamUtils.copyToString(new ClassPathResource(path).getInputStream(), StandardCharsets.UTF_8);
+            StringBuilder script = new StringBuilder(source.length());
+            for (String line : source.split("\n")) {
+                if (!line.trim().startsWith("--")) {
+                    script.append(line).append('\n');
+                }
+            }
+            return RedisScript.of(script.toString(), resultType);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取脚本失败: " + path, e);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.openinstall.config;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.ClusterCommandExecutor;
+import org.springframework.data.redis.connection.ClusterNodeResourceProvider;
+import org.springframework.data.redis.connection.ClusterTopology;
+import org.springframework.data.redis.connection.ClusterTopologyProvider;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceClusterConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionProvider;
+import org.springframework.data.redis.connection.lettuce.LettuceConverters;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 共享连接模式（tracking.redis.connection-mode=shared）
+ *
+ * 启动时建立 shared-connections 个长连接，redisTemplate 的所有命令在这几个连接上复用，管道等原本使用专用连接的操作也不再建立或借用专用连接。
+ * 并发请求的命令由 Lettuce 依次写入同一个连接，不等待前一个命令的响应；各线程的写入在事件循环中合并为一次刷新（见 RedisConfig），
+ * 并发越高，一次系统调用发出的命令越多。
+ *
+ * 同时进行的 Redis 操作（一次 execute）不超过 max-in-flight，超出时最多等待 max-wait，超时抛出 RedisConnectionFailureException；
+ * 单个命令的超时沿用 spring.data.redis.timeout。不支持事务（MULTI/WATCH）与阻塞命令，这些命令会占住共享连接
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "tracking.redis", name = "connection-mode", havingValue = "shared")
+public class SharedRedisConnections {
+
+    @Autowired
+    private LettuceConnectionFactory lettuceConnectionFactory;
+
+    @Autowired
+    private TrackingProperties trackingProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final List<StatefulConnection<byte[], byte[]>> connections = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    private Semaphore permits;
+    private long maxWaitNanos;
+    private Counter rejected;
+
+    private ClusterTopologyProvider topologyProvider;
+    private ClusterCommandExecutor clusterCommandExecutor;
+
+    private final LettuceConnectionProvider sharingProvider = new SharingProvider();
+    private final RedisConnectionFactory connectionFactory = new SharedConnectionFactory();
+
+    @PostConstruct
+    public void init() {
+        TrackingProperties.Redis config = trackingProperties.getRedis();
+        if (config.getSharedConnections() < 1 || config.getMaxInFlight() < 1) {
+            throw new IllegalArgumentException("tracking.redis.shared-connections 与 max-in-flight 必须大于 0");
+        }
+
+        if (lettuceConnectionFactory.getRequiredNativeClient() instanceof RedisClusterClient client) {
+            for (int i = 0; i < config.getSharedConnections(); i++) {
+                connections.add(client.connect(ByteArrayCodec.INSTANCE));
+            }
+            topologyProvider = () -> new ClusterTopology(
+                    new LinkedHashSet<>(LettuceConverters.partitionsToClusterNodes(client.getPartitions())));
+            clusterCommandExecutor = new ClusterCommandExecutor(topologyProvider, new NodeResourceProvider(),
+                    this::translate);
+        } else {
+            RedisClient client = (RedisClient) lettuceConnectionFactory.getRequiredNativeClient();
+            for (int i = 0; i < config.getSharedConnections(); i++) {
+                connections.add(client.connect(ByteArrayCodec.INSTANCE));
+            }
+        }
+
+        permits = new Semaphore(config.getMaxInFlight());
+        maxWaitNanos = config.getMaxWait().toNanos();
+        rejected = Counter.builder("tracking.redis.rejected")
+                .description("等待超过 max-wait 被拒绝的 Redis 操作数")
+                .register(meterRegistry);
+        Gauge.builder("tracking.redis.in-flight", permits, p -> config.getMaxInFlight() - p.availablePermits())
+                .description("正在进行的 Redis 操作数")
+                .register(meterRegistry);
+        log.info("Redis 共享连接模式: connections={}, maxInFlight={}, maxWait={}, cluster={}",
+                connections.size(), config.getMaxInFlight(), config.getMaxWait(), clusterCommandExecutor != null);
+    }
+
+    /**
+     * LettuceConnectionFactory 停止时关闭客户端会同时关闭这些连接，这里只关闭仍打开的连接
+     */
+    @PreDestroy
+    public void shutdown() throws Exception {
+        if (clusterCommandExecutor != null) {
+            clusterCommandExecutor.destroy();
+        }
+        for (StatefulConnection<byte[], byte[]> connection : connections) {
+            if (connection.isOpen()) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * redisTemplate 使用的连接工厂（不注册为 Bean，其他组件仍使用 Spring Boot 配置的 LettuceConnectionFactory）
+     */
+    public RedisConnectionFactory connectionFactory() {
+        return connectionFactory;
+    }
+
+    /**
+     * 按轮询选择共享连接
+     */
+    private StatefulConnection<byte[], byte[]> nextConnection() {
+        return connections.get(Math.floorMod(next.getAndIncrement(), connections.size()));
+    }
+
+    private DataAccessException translate(Exception e) {
+        DataAccessException translated = e instanceof RuntimeException runtime
+                ? lettuceConnectionFactory.translateExceptionIfPossible(runtime) : null;
+        return translated != null ? translated : new RedisSystemException(e.getMessage(), e);
+    }
+
+    private void acquire() {
+        try {
+            if (!permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                throw new RedisConnectionFailureException("等待 Redis 操作许可超时: maxInFlight="
+                        + trackingProperties.getRedis().getMaxInFlight()
+                        + ", maxWait=" + trackingProperties.getRedis().getMaxWait());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedisConnectionFailureException("等待 Redis 操作许可时被中断", e);
+        }
+    }
+
+    private final class SharedConnectionFactory implements RedisConnectionFactory {
+
+        @Override
+        public RedisConnection getConnection() {
+            return clusterCommandExecutor != null ? getClusterConnection() : open(SharedConnection::new);
+        }
+
+        @Override
+        public RedisClusterConnection getClusterConnection() {
+            if (clusterCommandExecutor == null) {
+                throw new InvalidDataAccessApiUsageException("未连接 Redis Cluster");
+            }
+            return open(SharedClusterConnection::new);
+        }
+
+        @Override
+        public RedisSentinelConnection getSentinelConnection() {
+            return lettuceConnectionFactory.getSentinelConnection();
+        }
+
+        @Override
+        public boolean getConvertPipelineAndTxResults() {
+            return lettuceConnectionFactory.getConvertPipelineAndTxResults();
+        }
+
+        @Override
+        public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+            return lettuceConnectionFactory.translateExceptionIfPossible(ex);
+        }
+
+        private <C extends RedisConnection> C open(Function<PermitRelease, C> constructor) {
+            acquire();
+            try {
+                return constructor.apply(new PermitRelease());
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 连接关闭时归还许可，重复关闭只归还一次
+     */
+    private final class PermitRelease {
+
+        private boolean released;
+
+        void release() {
+            if (!released) {
+                released = true;
+                permits.release();
+            }
+        }
+    }
+
+    private final class SharedConnection extends LettuceConnection {
+
+        private final PermitRelease permit;
+
+        @SuppressWarnings("unchecked")
+        SharedConnection(PermitRelease permit) {
+            super((StatefulRedisConnection<byte[], byte[]>) nextConnection(), sharingProvider,
+                    lettuceConnectionFactory.getTimeout(), lettuceConnectionFactory.getDatabase());
+            this.permit = permit;
+        }
+
+        @Override
+        public void close() {
+            try {
+                super.close();
+            } finally {
+                permit.release();
+            }
+        }
+    }
+
+    private final class SharedClusterConnection extends LettuceClusterConnection {
+
+        private final PermitRelease permit;
+
+        @SuppressWarnings("unchecked")
+        SharedClusterConnection(PermitRelease permit) {
+            super((StatefulRedisClusterConnection<byte[], byte[]>) nextConnection(), sharingProvider,
+                    topologyProvider, clusterCommandExecutor, Duration.ofMillis(lettuceConnectionFactory.getTimeout()));
+            this.permit = permit;
+        }
+
+        @Override
+        public void close() {
+            try {
+                super.close();
+            } finally {
+                permit.release();
+            }
+        }
+    }
+
+    /**
+     * 管道等原本借用专用连接的操作同样使用共享连接，归还时不关闭
+     */
+    private final class SharingProvider implements LettuceConnectionProvider {
+
+        @Override
+        public <T extends StatefulConnection<?, ?>> CompletionStage<T> getConnectionAsync(Class<T> connectionType) {
+            StatefulConnection<byte[], byte[]> connection = nextConnection();
+            if (!connectionType.isInstance(connection)) {
+                return CompletableFuture.failedFuture(new UnsupportedOperationException(
+                        "共享连接模式不支持连接类型: " + connectionType.getName()));
+            }
+            return CompletableFuture.completedFuture(connectionType.cast(connection));
+        }
+
+        @Override
+        public void release(StatefulConnection<?, ?> connection) {
+        }
+    }
+
+    /**
+     * 集群多节点命令（跨槽位 MGET、KEYS 等）按节点执行时使用共享集群连接下的节点连接
+     */
+    private final class NodeResourceProvider implements ClusterNodeResourceProvider {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <S> S getResourceForSpecificNode(RedisClusterNode node) {
+            StatefulRedisClusterConnection<byte[], byte[]> connection =
+                    (StatefulRedisClusterConnection<byte[], byte[]>) nextConnection();
+            RedisClusterCommands<byte[], byte[]> commands = node.getId() != null
+                    ? connection.getConnection(node.getId()).sync()
+                    : connection.getConnection(node.getHost(), node.getPort()).sync();
+            return (S) commands;
+        }
+
+        @Override
+        public void returnResourceForSpecificNode(RedisClusterNode node, Object resource) {
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package com.openinstall.config;
+
+import com.openinstall.codec.TrackingDataSerializer;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * 追踪数据配置（application.yml 中的 tracking.*）
+ */
+@Data
+@ConfigurationProperties(prefix = "tracking")
+public class TrackingProperties {
+    
+    /**
+     * 数据过期时间（小时）
+     */
+    private long expireHours = 24;
+    
+    /**
+     * 模糊匹配相似度阈值
+     */
+    private double similarityThreshold = 0.8;
+    
+    /**
+     * 模糊匹配配置
+     */
+    private Fuzzy fuzzy = new Fuzzy();
+    
+    /**
+     * 近端缓存配置
+     */
+    private NearCache nearCache = new NearCache();
+    
+    /**
+     * 存储编码配置
+     */
+    private Codec codec = new Codec();
+    
+    /**
+     * 存储布局配置
+     */
+    private Storage storage = new Storage();
+    
+    /**
+     * 设备指纹配置
+     */
+    private Fingerprint fingerprint = new Fingerprint();
+    
+    /**
+     * 保存请求微批写入配置
+     */
+    private WriteBehind writeBehind = new WriteBehind();
+    
+    /**
+     * 批量接口配置
+     */
+    private Batch batch = new Batch();
+    
+    /**
+     * 单条接口实现配置
+     */
+    private Api api = new Api();
+    
+    /**
+     * 保存与匹配事件日志配置
+     */
+    private Journal journal = new Journal();
+    
+    /**
+     * 请求流量录制配置
+     */
+    private Capture capture = new Capture();
+    
+    /**
+     * Redis 连接配置
+     */
+    private Redis redis = new Redis();
+    
+    /**
+     * 负查找过滤器配置
+     */
+    private LookupFilter lookupFilter = new LookupFilter();
+    
+    @Data
+    public static class Fuzzy {
+        
+        /**
+         * 单次模糊匹配最多扫描的候选数量
+         */
+        private int maxCandidates = 200;
+        
+        /**
+         * 单个索引最多保留的成员数量，超出时淘汰最早过期的成员
+         */
+        private int maxIndexSize = 1000;
+        
+        /**
+         * 相似度各字段权重
+         */
+        private Weights weights = new Weights();
+        
+        /**
+         * 是否按客户端IP子网（IPv4 /24、IPv6 /64）建立候选索引
+         */
+        private boolean ipSubnetIndex = true;
+        
+        /**
+         * 与请求方同一子网的候选在排序时的加分（不影响是否达到相似度阈值）
+         */
+        private double ipSubnetBoost = 0.1;
+        
+        /**
+         * 是否同时查找旧版本写入的索引（Redis 集合 tracking:index:<platform>:<WxH>:<时区>，按原始字段值）。
+         * 新版本不再写入该索引，只在从旧版本升级后 expire-hours 内开启，之后每次查找都必然落空
+         */
+        private boolean legacyIndexLookup = false;
+    }
+    
+    /**
+     * 相似度 = 相同字段的权重之和 / 参与比较字段的权重之和（Canvas 指纹两边都有时才参与比较）
+     */
+    @Data
+    public static class Weights {
+        
+        private double userAgent = 1.0;
+        
+        private double platform = 1.0;
+        
+        private double screenWidth = 1.0;
+        
+        private double screenHeight = 1.0;
+        
+        private double timezone = 1.0;
+        
+        /**
+         * Canvas 指纹（比较前 20 个字符）
+         */
+        private double canvas = 1.0;
+    }
+    
+    @Data
+    public static class NearCache {
+        
+        /**
+         * 是否启用进程内近端缓存
+         */
+        private boolean enabled = false;
+        
+        /**
+         * 最大缓存条目数
+         */
+        private long maxSize = 10000;
+        
+        /**
+         * 单条缓存最长保留时间（同时不超过数据本身的剩余有效期）
+         */
+        private Duration ttl = Duration.ofSeconds(60);
+    }
+    
+    @Data
+    public static class Codec {
+        
+        /**
+         * 写入格式：json（兼容旧版本）或 binary（紧凑二进制）；读取时两种格式均可识别
+         */
+        private TrackingDataSerializer.Format format = TrackingDataSerializer.Format.JSON;
+        
+        /**
+         * 二进制正文达到该字节数时使用 LZ4 压缩，小于等于 0 表示不压缩
+         */
+        private int compressionThreshold = 512;
+    }
+    
+    @Data
+    public static class Storage {
+        
+        /**
+         * 存储引擎：redis（默认）或 memory（进程内，单节点部署和本地测试使用，数据不跨节点共享、重启后丢失）
+         */
+        private Engine engine = Engine.REDIS;
+        
+        /**
+         * memory 引擎过期时间轮的刻度，过期数据最迟在到期后一个刻度内回收
+         */
+        private Duration wheelTick = Duration.ofSeconds(1);
+        
+        /**
+         * 存储布局：blob（整条数据一个 value，认领状态在单独的认领键）或 hash（各部分分字段保存）
+         */
+        private Layout layout = Layout.BLOB;
+        
+        /**
+         * 键空间：flat（单个 Redis 或主从）或 cluster（Redis Cluster：同一条数据的各个键带相同的哈希标签，位于同一槽位）
+         */
+        private Keyspace keyspace = Keyspace.FLAT;
+    }
+    
+    @Data
+    public static class Fingerprint {
+        
+        /**
+         * 指纹ID哈希算法：md5（兼容已有数据）或 murmur3（非加密 128 位哈希，ID 带 "m3-" 前缀）
+         */
+        private IdHash idHash = IdHash.MD5;
+        
+        /**
+         * 使用 murmur3 时，精确匹配未命中后再按 md5 指纹ID认领（算法切换期间开启）
+         */
+        private boolean legacyIdFallback = false;
+        
+        /**
+         * User-Agent 标准化结果缓存的最大条目数，0 表示不缓存
+         */
+        private int userAgentCacheSize = 10000;
+        
+        /**
+         * 从 Web 端 User-Agent 提取 Android/iOS 主版本号（输出 "Android/13"、"iOS/17"，与移动端格式一致）。
+         * 开启后移动设备的指纹ID会变化
+         */
+        private boolean extractMobileVersion = false;
+    }
+    
+    @Data
+    public static class WriteBehind {
+        
+        /**
+         * 是否启用微批写入：保存请求排队后整批写入，写入成功后再返回响应
+         */
+        private boolean enabled = false;
+        
+        /**
+         * 每批最多写入的请求数
+         */
+        private int batchSize = 256;
+        
+        /**
+         * 一批从第一条请求入队起最长等待时间
+         */
+        private Duration maxDelay = Duration.ofMillis(2);
+        
+        /**
+         * 队列容量
+         */
+        private int queueCapacity = 10000;
+        
+        /**
+         * 队列已满时请求线程最长等待时间，超时后拒绝保存
+         */
+        private Duration enqueueTimeout = Duration.ofMillis(100);
+    }
+    
+    @Data
+    public static class Batch {
+        
+        /**
+         * 单次批量请求最多条目数
+         */
+        private int maxItems = 500;
+        
+        /**
+         * 批量请求体最大字节数
+         */
+        private DataSize maxBodySize = DataSize.ofMegabytes(2);
+        
+        /**
+         * 以 WebFlux 运行时执行批量接口（阻塞访问存储）的线程数，批量请求不占用 Netty 事件循环
+         */
+        private int blockingThreads = 16;
+    }
+    
+    @Data
+    public static class Api {
+        
+        /**
+         * /save、/get 的实现：blocking（请求线程等待存储访问）或 reactive（非阻塞存储访问，需以 reactive profile 运行在 WebFlux 上）
+         */
+        private ApiMode mode = ApiMode.BLOCKING;
+    }
+    
+    @Data
+    public static class Journal {
+        
+        /**
+         * 是否将保存与匹配事件异步写入事件日志文件（事件包含客户端IP与点击参数）
+         */
+        private boolean enabled = false;
+        
+        /**
+         * 事件日志目录
+         */
+        private String directory = "journal";
+        
+        /**
+         * 单个日志文件大小，写满后切换到新文件
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        
+        /**
+         * 最多保留的日志文件数，超出时删除最早的文件；0 表示全部保留（由外部归档清理）
+         */
+        private int maxSegments = 16;
+        
+        /**
+         * 等待写入的事件队列容量，已满时丢弃事件（不阻塞请求）
+         */
+        private int queueCapacity = 65536;
+        
+        /**
+         * 应用日志中输出事件汇总的间隔
+         */
+        private Duration summaryInterval = Duration.ofMinutes(1);
+    }
+    
+    @Data
+    public static class Capture {
+        
+        /**
+         * 是否录制 /save、/get 请求（脱敏后连同到达时间写入文件，供 TrafficReplay 回放）
+         */
+        private boolean enabled = false;
+        
+        /**
+         * 录制文件目录
+         */
+        private String directory = "capture";
+        
+        /**
+         * 单个录制文件大小，写满后切换到新文件
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        
+        /**
+         * 最多保留的录制文件数，超出时删除最早的文件；0 表示全部保留
+         */
+        private int maxSegments = 0;
+        
+        /**
+         * 等待写入的请求队列容量，已满时丢弃（不阻塞请求，回放时缺少这部分请求）
+         */
+        private int queueCapacity = 65536;
+        
+        /**
+         * 脱敏用的 HMAC 密钥；为空时每次启动随机生成，不同进程录制的文件之间无法关联同一设备
+         */
+        private String anonymizationKey = "";
+    }
+    
+    @Data
+    public static class Redis {
+        
+        /**
+         * 连接方式：pooled（存储引擎的命令都在 Spring Boot 创建的一个共享连接上复用）或 shared（所有命令在少量长连接上复用，带并发上限与写入合并）
+         */
+        private ConnectionMode connectionMode = ConnectionMode.POOLED;
+        
+        /**
+         * shared 模式的长连接数
+         */
+        private int sharedConnections = 2;
+        
+        /**
+         * shared 模式同时进行的 Redis 操作数上限（一次命令或一批同时发出的命令计一个）
+         */
+        private int maxInFlight = 1024;
+        
+        /**
+         * shared 模式达到 max-in-flight 时最长等待时间，超时后操作失败
+         */
+        private Duration maxWait = Duration.ofMillis(500);
+        
+        /**
+         * shared 模式单个连接等待发送与等待响应的命令数上限，超出时命令立即失败（包括断线重连期间缓存的命令）
+         */
+        private int requestQueueSize = 10000;
+        
+        /**
+         * shared 模式下连续多少次写入后强制刷新；其余写入合并到事件循环本轮任务结束时一次刷新。0 表示不合并
+         */
+        private int flushConsolidation = 256;
+    }
+    
+    @Data
+    public static class LookupFilter {
+        
+        /**
+         * 是否在匹配前用进程内布隆过滤器排除一定不存在的指纹ID与候选索引（仅 redis 引擎）
+         */
+        private boolean enabled = false;
+        
+        /**
+         * 单个键的误判率（不存在的键被判断为可能存在，此时照常访问 Redis）
+         */
+        private double falsePositiveRate = 0.01;
+        
+        /**
+         * 单个分区预期写入的键数（指纹ID与索引名），超出后误判率上升
+         */
+        private long expectedInsertions = 200000;
+        
+        /**
+         * 分区宽度：键按过期时间分区，整个分区过期后丢弃
+         */
+        private Duration partitionWidth = Duration.ofHours(1);
+        
+        /**
+         * 从 Redis 扫描数据键与索引键、补全过滤器的间隔（补上丢失的跨节点消息）
+         */
+        private Duration rebuildInterval = Duration.ofMinutes(10);
+        
+        /**
+         * 没有保存时发送空广播的间隔；其他节点超过 3 个间隔没有收到消息时绕过过滤器，直到扫描补全
+         */
+        private Duration heartbeatInterval = Duration.ofSeconds(1);
+    }
+    
+    public enum IdHash {
+        MD5,
+        MURMUR3
+    }
+    
+    public enum Engine {
+        REDIS,
+        MEMORY
+    }
+    
+    public enum ApiMode {
+        BLOCKING,
+        REACTIVE
+    }
+    
+    public enum Layout {
+        BLOB,
+        HASH
+    }
+    
+    public enum Keyspace {
+        FLAT,
+        CLUSTER
+    }
+    
+    public enum ConnectionMode {
+        POOLED,
+        SHARED
+    }
+}
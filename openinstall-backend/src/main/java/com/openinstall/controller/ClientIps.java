@@ -0,0 +1,60 @@
+package com.openinstall.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+
+import java.net.InetSocketAddress;
+import java.util.function.Function;
+
+/**
+ * 客户端IP解析（各控制器共用）
+ */
+final class ClientIps {
+    
+    private ClientIps() {
+    }
+    
+    /**
+     * 获取客户端真实IP
+     */
+    static String resolve(HttpServletRequest request) {
+        return resolve(request::getHeader, request.getRemoteAddr());
+    }
+    
+    /**
+     * 获取客户端真实IP（WebFlux 请求）
+     */
+    static String resolve(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        String remoteAddr = remoteAddress == null ? null
+                : remoteAddress.getAddress() != null ? remoteAddress.getAddress().getHostAddress()
+                : remoteAddress.getHostString();
+        return resolve(request.getHeaders()::getFirst, remoteAddr);
+    }
+    
+    private static String resolve(Function<String, String> headers, String remoteAddr) {
+        String ip = headers.apply("X-Forwarded-For");
+        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
+            ip = headers.apply("Proxy-Client-IP");
+        }
+        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
+            ip = headers.apply("WL-Proxy-Client-IP");
+        }
+        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
+            ip = headers.apply("HTTP_CLIENT_IP");
+        }
+        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
+            ip = headers.apply("HTTP_X_FORWARDED_FOR");
+        }
+        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
+            ip = remoteAddr;
+        }
+        
+        // 如果是多级代理，取第一个IP
+        if (ip != null && ip.contains(",")) {
+            ip = ip.split(",")[0].trim();
+        }
+        
+        return ip;
+    }
+}
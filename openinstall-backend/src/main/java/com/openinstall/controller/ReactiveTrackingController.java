@@ -0,0 +1,108 @@
+package com.openinstall.controller;
+
+import com.openinstall.dto.ApiResponse;
+import com.openinstall.dto.GetTrackingRequest;
+import com.openinstall.dto.SaveTrackingRequest;
+import com.openinstall.journal.TrafficCapture;
+import com.openinstall.model.TrackingData;
+import com.openinstall.service.ReactiveTrackingService;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.reactive.context.ReactiveWebApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+
+/**
+ * 追踪控制器（tracking.api.mode=reactive，以 reactive profile 运行在 WebFlux 上）
+ * 接口与 TrackingController 相同；请求在 Netty 事件循环上处理，发出 Redis 命令后即返回，
+ * 响应在 Redis 返回后写出，同时处理的请求数不受线程数限制
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/tracking")
+@CrossOrigin(origins = "*")
+@ConditionalOnProperty(prefix = "tracking.api", name = "mode", havingValue = "reactive")
+public class ReactiveTrackingController {
+
+    @Autowired
+    private ReactiveTrackingService reactiveTrackingService;
+
+    @Autowired
+    private TrafficCapture trafficCapture;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    /**
+     * 在 Servlet 容器中返回 Mono 只是把阻塞线程换成异步分派，比阻塞模式更慢，因此只允许运行在 WebFlux 上
+     */
+    @PostConstruct
+    public void checkWebApplicationType() {
+        if (!(applicationContext instanceof ReactiveWebApplicationContext)) {
+            throw new IllegalStateException(
+                    "tracking.api.mode=reactive 需要以 WebFlux 运行，请使用 --spring.profiles.active=reactive 启动");
+        }
+    }
+
+    /**
+     * 保存追踪数据（Web端调用）
+     */
+    @PostMapping("/save")
+    public Mono<ApiResponse<ApiResponse.SaveTrackingResponse>> saveTracking(
+            @Valid @RequestBody SaveTrackingRequest request,
+            ServerHttpRequest httpRequest) {
+
+        String clientIp = ClientIps.resolve(httpRequest);
+        trafficCapture.save(request.getFingerprintId(), request.getFingerprint(), request.getParams(),
+                request.getTimestamp(), clientIp);
+
+        TrackingData data = new TrackingData();
+        data.setFingerprint(request.getFingerprint());
+        data.setParams(request.getParams());
+        data.setTimestamp(request.getTimestamp() != null ? request.getTimestamp() : System.currentTimeMillis());
+        data.setClientIp(clientIp);
+
+        return reactiveTrackingService.saveTrackingData(data)
+                .map(fingerprintId -> ApiResponse.success(new ApiResponse.SaveTrackingResponse(fingerprintId)))
+                .onErrorResume(e -> {
+                    log.error("保存追踪数据失败", e);
+                    return Mono.just(ApiResponse.error("保存失败: " + e.getMessage()));
+                });
+    }
+
+    /**
+     * 获取追踪数据（App端调用）
+     */
+    @PostMapping("/get")
+    public Mono<ApiResponse<ApiResponse.GetTrackingResponse>> getTracking(
+            @Valid @RequestBody GetTrackingRequest request,
+            ServerHttpRequest httpRequest) {
+
+        String clientIp = ClientIps.resolve(httpRequest);
+        trafficCapture.get(request.getFingerprintId(), request.getFingerprint(), clientIp);
+
+        return reactiveTrackingService.matchTrackingData(request.getFingerprint(), clientIp)
+                .map(data -> new ApiResponse.GetTrackingResponse(data.getParams(), true, data.getFingerprintId()))
+                .defaultIfEmpty(new ApiResponse.GetTrackingResponse(new HashMap<>(), false, null))
+                .map(ApiResponse::success)
+                .onErrorResume(e -> {
+                    log.error("获取追踪数据失败", e);
+                    return Mono.just(ApiResponse.error("获取失败: " + e.getMessage()));
+                });
+    }
+
+    /**
+     * 健康检查
+     */
+    @GetMapping("/health")
+    public ApiResponse<String> health() {
+        return ApiResponse.success("服务运行正常");
+    }
+}
@@ -0,0 +1,125 @@
+package com.openinstall.controller;
+
+import com.openinstall.config.TrackingProperties;
+import com.openinstall.dto.ApiResponse;
+import com.openinstall.dto.BatchGetTrackingRequest;
+import com.openinstall.dto.BatchSaveTrackingRequest;
+import com.openinstall.journal.TrafficCapture;
+import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.model.TrackingData;
+import com.openinstall.service.TrackingService;
+import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 批量追踪控制器（服务端调用，两种 tracking.api.mode 下都可用；以 WebFlux 运行时在 ReactiveWebConfig 配置的线程池中执行）
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/tracking")
+@CrossOrigin(origins = "*")
+public class TrackingBatchController {
+    
+    @Autowired
+    private TrackingService trackingService;
+    
+    @Autowired
+    private TrackingProperties trackingProperties;
+    
+    @Autowired
+    private TrafficCapture trafficCapture;
+    
+    /**
+     * 批量保存追踪数据（服务端转发点击数据时调用）
+     * 整批通过一次存储访问写入，返回与请求顺序一致的逐条结果
+     */
+    @PostMapping("/save/batch")
+    public ApiResponse<List<ApiResponse<ApiResponse.SaveTrackingResponse>>> saveTrackingBatch(
+            @Valid @RequestBody BatchSaveTrackingRequest request) {
+        
+        try {
+            String limitError = checkBatchSize(request.getItems().size());
+            if (limitError != null) {
+                return ApiResponse.error(limitError);
+            }
+            
+            long now = System.currentTimeMillis();
+            List<TrackingData> batch = new ArrayList<>(request.getItems().size());
+            for (BatchSaveTrackingRequest.Item item : request.getItems()) {
+                // 逐条录制，回放时按单条 /save 发送
+                trafficCapture.save(item.getFingerprintId(), item.getFingerprint(), item.getParams(),
+                        item.getTimestamp(), item.getClientIp());
+                TrackingData data = new TrackingData();
+                data.setFingerprint(item.getFingerprint());
+                data.setParams(item.getParams());
+                data.setTimestamp(item.getTimestamp() != null ? item.getTimestamp() : now);
+                data.setClientIp(item.getClientIp());
+                batch.add(data);
+            }
+            
+            List<String> fingerprintIds = trackingService.saveTrackingDataBatch(batch);
+            List<ApiResponse<ApiResponse.SaveTrackingResponse>> results = new ArrayList<>(fingerprintIds.size());
+            for (String fingerprintId : fingerprintIds) {
+                results.add(fingerprintId != null
+                        ? ApiResponse.success(new ApiResponse.SaveTrackingResponse(fingerprintId))
+                        : ApiResponse.error("保存失败"));
+            }
+            return ApiResponse.success(results);
+            
+        } catch (Exception e) {
+            log.error("批量保存追踪数据失败", e);
+            return ApiResponse.error("保存失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 批量获取追踪数据（服务端对账任务调用）
+     * 精确匹配、候选查找和认领按批次访问存储，返回与请求顺序一致的逐条结果
+     */
+    @PostMapping("/get/batch")
+    public ApiResponse<List<ApiResponse.GetTrackingResponse>> getTrackingBatch(
+            @Valid @RequestBody BatchGetTrackingRequest request) {
+        
+        try {
+            String limitError = checkBatchSize(request.getItems().size());
+            if (limitError != null) {
+                return ApiResponse.error(limitError);
+            }
+            
+            List<DeviceFingerprint> fingerprints = new ArrayList<>(request.getItems().size());
+            List<String> clientIps = new ArrayList<>(request.getItems().size());
+            for (BatchGetTrackingRequest.Item item : request.getItems()) {
+                trafficCapture.get(item.getFingerprintId(), item.getFingerprint(), item.getClientIp());
+                fingerprints.add(item.getFingerprint());
+                clientIps.add(item.getClientIp());
+            }
+            
+            List<TrackingData> matched = trackingService.matchTrackingDataBatch(fingerprints, clientIps);
+            List<ApiResponse.GetTrackingResponse> results = new ArrayList<>(matched.size());
+            for (TrackingData data : matched) {
+                results.add(data != null
+                        ? new ApiResponse.GetTrackingResponse(data.getParams(), true, data.getFingerprintId())
+                        : new ApiResponse.GetTrackingResponse(new HashMap<>(), false, null));
+            }
+            return ApiResponse.success(results);
+            
+        } catch (Exception e) {
+            log.error("批量获取追踪数据失败", e);
+            return ApiResponse.error("获取失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * @return 超出 tracking.batch.max-items 时的错误信息，否则为 null
+     */
+    private String checkBatchSize(int size) {
+        int maxItems = trackingProperties.getBatch().getMaxItems();
+        return size > maxItems ? "批量请求最多 " + maxItems + " 条，实际 " + size + " 条" : null;
+    }
+}
@@ -3,19 +3,26 @@ package com.openinstall.controller;
 import com.openinstall.dto.ApiResponse;
 import com.openinstall.dto.GetTrackingRequest;
 import com.openinstall.dto.SaveTrackingRequest;
+import com.openinstall.journal.TrafficCapture;
 import com.openinstall.model.TrackingData;
 import com.openinstall.service.TrackingService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
- * 追踪控制器
+ * 追踪控制器（tracking.api.mode=blocking，默认）
  */
 @Slf4j
 @RestController
+@ConditionalOnProperty(prefix = "tracking.api", name = "mode", havingValue = "blocking", matchIfMissing = true)
 @RequestMapping("/api/tracking")
 @CrossOrigin(origins = "*")
 public class TrackingController {
@@ -23,17 +30,23 @@ public class TrackingController {
     @Autowired
     private TrackingService trackingService;
     
+    @Autowired
+    private TrafficCapture trafficCapture;
+    
     /**
      * 保存追踪数据（Web端调用）
+     * 默认同步保存，返回已完成的 future；启用微批写入时请求线程在排队后即释放，数据写入后再返回响应
      */
     @PostMapping("/save")
-    public ApiResponse<ApiResponse.SaveTrackingResponse> saveTracking(
+    public CompletableFuture<ApiResponse<ApiResponse.SaveTrackingResponse>> saveTracking(
             @Valid @RequestBody SaveTrackingRequest request,
             HttpServletRequest httpRequest) {
         
         try {
             // 获取客户端IP
-            String clientIp = getClientIp(httpRequest);
+            String clientIp = ClientIps.resolve(httpRequest);
+            trafficCapture.save(request.getFingerprintId(), request.getFingerprint(), request.getParams(),
+                    request.getTimestamp(), clientIp);
             
             // 构建追踪数据
             TrackingData data = new TrackingData();
@@ -45,26 +58,40 @@ public class TrackingController {
             data.setClientIp(clientIp);
             
             // 保存数据（内部会重新计算 fingerprintId）
-            String fingerprintId = trackingService.saveTrackingData(data);
-            
-            return ApiResponse.success(new ApiResponse.SaveTrackingResponse(fingerprintId));
+            return trackingService.saveTrackingDataAsync(data)
+                    .thenApply(fingerprintId -> ApiResponse.success(new ApiResponse.SaveTrackingResponse(fingerprintId)))
+                    .exceptionally(this::saveFailed);
             
         } catch (Exception e) {
-            log.error("保存追踪数据失败", e);
-            return ApiResponse.error("保存失败: " + e.getMessage());
+            return CompletableFuture.completedFuture(saveFailed(e));
         }
     }
     
+    private ApiResponse<ApiResponse.SaveTrackingResponse> saveFailed(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof RejectedExecutionException) {
+            // 微批写入队列已满，属于正常的限流，不打印堆栈
+            log.warn("保存追踪数据被拒绝: {}", cause.getMessage());
+        } else {
+            log.error("保存追踪数据失败", cause);
+        }
+        return ApiResponse.error("保存失败: " + cause.getMessage());
+    }
+    
     /**
      * 获取追踪数据（App端调用）
      */
     @PostMapping("/get")
     public ApiResponse<ApiResponse.GetTrackingResponse> getTracking(
-            @Valid @RequestBody GetTrackingRequest request) {
+            @Valid @RequestBody GetTrackingRequest request,
+            HttpServletRequest httpRequest) {
         
         try {
-            // 通过设备指纹匹配数据
-            TrackingData data = trackingService.matchTrackingData(request.getFingerprint());
+            String clientIp = ClientIps.resolve(httpRequest);
+            trafficCapture.get(request.getFingerprintId(), request.getFingerprint(), clientIp);
+            
+            // 通过设备指纹匹配数据（客户端IP用于子网候选和排序）
+            TrackingData data = trackingService.matchTrackingData(request.getFingerprint(), clientIp);
             
             ApiResponse.GetTrackingResponse response = new ApiResponse.GetTrackingResponse();
             
@@ -92,34 +119,4 @@ public class TrackingController {
     public ApiResponse<String> health() {
         return ApiResponse.success("服务运行正常");
     }
-    
-    /**
-     * 获取客户端真实IP
-     */
-    private String getClientIp(HttpServletRequest request) {
-        String ip = request.getHeader("X-Forwarded-For");
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("Proxy-Client-IP");
-        }
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("WL-Proxy-Client-IP");
-        }
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("HTTP_CLIENT_IP");
-        }
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("HTTP_X_FORWARDED_FOR");
-        }
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getRemoteAddr();
-        }
-        
-        // 如果是多级代理，取第一个IP
-        if (ip != null && ip.contains(",")) {
-            ip = ip.split(",")[0].trim();
-        }
-        
-        return ip;
-    }
 }
-
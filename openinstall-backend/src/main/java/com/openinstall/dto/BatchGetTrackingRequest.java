@@ -0,0 +1,29 @@
+package com.openinstall.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.List;
+
+/**
+ * 批量获取追踪数据请求（服务端对账任务使用）
+ */
+@Data
+public class BatchGetTrackingRequest {
+    
+    @NotEmpty(message = "items不能为空")
+    @Valid
+    private List<Item> items;
+    
+    @Data
+    @EqualsAndHashCode(callSuper = true)
+    public static class Item extends GetTrackingRequest {
+        
+        /**
+         * 设备的客户端IP（由调用方提供，用于子网候选和排序）；为空时不使用IP
+         */
+        private String clientIp;
+    }
+}
@@ -0,0 +1,29 @@
+package com.openinstall.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.List;
+
+/**
+ * 批量保存追踪数据请求（服务端转发点击数据时使用）
+ */
+@Data
+public class BatchSaveTrackingRequest {
+    
+    @NotEmpty(message = "items不能为空")
+    @Valid
+    private List<Item> items;
+    
+    @Data
+    @EqualsAndHashCode(callSuper = true)
+    public static class Item extends SaveTrackingRequest {
+        
+        /**
+         * 设备的客户端IP（由转发方提供）；为空时不记录IP，不使用转发方自身的IP
+         */
+        private String clientIp;
+    }
+}
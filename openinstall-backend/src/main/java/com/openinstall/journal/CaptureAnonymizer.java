@@ -0,0 +1,110 @@
+package com.openinstall.journal;
+
+import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.service.IpSubnets;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 录制请求的脱敏，只由录制线程使用
+ *
+ * 能识别用户的值替换为带密钥的 HMAC 假名：相同的原值得到相同的假名，匹配结果在回放时保持不变，但无法从文件还原原值。
+ * - 参与指纹ID与相似度计算的字段（UA、平台、屏幕、时区、语言等）原样保留
+ * - Canvas 指纹：前 20 个字符（参与相似度比较的部分）与完整值分别取假名，保留前缀相同、长度是否超过 20 的关系
+ * - WebGL 指纹、设备名称、客户端上报的 fingerprintId、点击参数的值替换为假名，参数名保留
+ * - 客户端IP：按子网（IPv4 /24、IPv6 /64）取假名映射为 IPv6 地址，保留"是否同一子网"；不参与索引的地址（内网等）统一为 127.0.0.1
+ */
+final class CaptureAnonymizer {
+
+    /**
+     * 与 FingerprintService 中 Canvas 指纹参与比较的前缀长度一致
+     */
+    private static final int CANVAS_PREFIX_LENGTH = 20;
+    private static final String NON_INDEXED_IP = "127.0.0.1";
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final Mac mac;
+
+    CaptureAnonymizer(byte[] key) {
+        try {
+            mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("初始化录制脱敏失败", e);
+        }
+    }
+
+    CaptureRecord anonymize(CaptureRecord raw) {
+        return new CaptureRecord(raw.ts(), raw.op(), pseudonym(raw.fingerprintId(), 8),
+                anonymize(raw.fingerprint()), anonymize(raw.params()), anonymizeIp(raw.ip()), raw.clickOffset());
+    }
+
+    private DeviceFingerprint anonymize(DeviceFingerprint raw) {
+        if (raw == null) {
+            return null;
+        }
+        DeviceFingerprint fp = new DeviceFingerprint(raw.getUserAgent(), raw.getLanguage(), raw.getPlatform(),
+                raw.getScreenWidth(), raw.getScreenHeight(), raw.getScreenColorDepth(), raw.getPixelRatio(),
+                raw.getTimezone(), raw.getTimezoneOffset(), null, null, raw.getCookieEnabled(), raw.getDoNotTrack(),
+                raw.getOsVersion(), raw.getDeviceModel(), raw.getDeviceBrand(), pseudonym(raw.getDeviceName(), 8),
+                raw.getScreenScale(), raw.getScreenDensity());
+
+        String canvas = raw.getCanvasFingerprint();
+        if (canvas != null) {
+            // 短于前缀长度的值不参与比较，取较短的假名保持"不超过 20 个字符"
+            fp.setCanvasFingerprint(canvas.length() > CANVAS_PREFIX_LENGTH
+                    ? pseudonym(canvas.substring(0, CANVAS_PREFIX_LENGTH), CANVAS_PREFIX_LENGTH / 2) + pseudonym(canvas, 8)
+                    : "s" + pseudonym(canvas, 8));
+        }
+        if (raw.getWebglFingerprint() != null) {
+            fp.setWebglFingerprint(Map.of("hash", pseudonym(raw.getWebglFingerprint().toString(), 8)));
+        }
+        return fp;
+    }
+
+    private Map<String, String> anonymize(Map<String, String> params) {
+        if (params == null) {
+            return null;
+        }
+        Map<String, String> result = new LinkedHashMap<>();
+        params.forEach((name, value) -> result.put(name, pseudonym(value, 8)));
+        return result;
+    }
+
+    private String anonymizeIp(String ip) {
+        if (ip == null) {
+            return null;
+        }
+        String subnet = IpSubnets.subnet(ip);
+        if (subnet == null) {
+            return NON_INDEXED_IP;
+        }
+        // 前 4 组由子网决定（2000::/4 全球单播，参与子网索引），最后一组区分子网内的不同地址
+        byte[] prefix = hmac(subnet);
+        byte[] host = hmac(ip);
+        return String.format("%x:%x:%x:%x::%x",
+                0x2000 | (group(prefix, 0) & 0x0FFF), group(prefix, 2), group(prefix, 4), group(prefix, 6),
+                group(host, 0));
+    }
+
+    /**
+     * @param bytes 假名取 HMAC 的前几个字节，输出长度为其两倍的十六进制字符串
+     */
+    private String pseudonym(String value, int bytes) {
+        return value != null ? HEX.formatHex(hmac(value), 0, bytes) : null;
+    }
+
+    private byte[] hmac(String value) {
+        return mac.doFinal(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int group(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 8 | (bytes[offset + 1] & 0xFF);
+    }
+}
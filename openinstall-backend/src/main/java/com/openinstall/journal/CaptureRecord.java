@@ -0,0 +1,20 @@
+package com.openinstall.journal;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.openinstall.model.DeviceFingerprint;
+
+import java.util.Map;
+
+/**
+ * 录制文件中的一条请求（写入时序列化为一行 JSON，空字段省略）
+ *
+ * ts 为请求到达时间（微秒时间戳），op 为 save / get；fingerprintId、fingerprint、params、ip 为脱敏后的请求内容，
+ * clickOffset 为 /save 请求自带的点击时间相对到达时间的偏移（毫秒），请求未带点击时间时为空
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CaptureRecord(long ts, String op, String fingerprintId, DeviceFingerprint fingerprint,
+                            Map<String, String> params, String ip, Long clickOffset) {
+
+    public static final String SAVE = "save";
+    public static final String GET = "get";
+}
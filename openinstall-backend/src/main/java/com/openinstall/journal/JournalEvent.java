@@ -0,0 +1,42 @@
+package com.openinstall.journal;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.openinstall.model.TrackingData;
+
+import java.util.Map;
+
+/**
+ * 事件日志中的一条记录（写入时序列化为一行 JSON，空字段省略）
+ *
+ * type=save：保存（点击），fp 为保存的指纹ID，ip 为点击时的客户端IP，clickTs 为点击时间
+ * type=match：匹配（安装），query 为安装设备计算出的指纹ID，result 为 exact / fuzzy / none，
+ * 匹配成功时 fp、params、clickTs 为被认领的点击数据，fuzzy 另有 score、rank 与扫描的候选数 candidates，
+ * ip 为安装时的客户端IP
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record JournalEvent(String type, long ts, String fp, String query, String result,
+                           Double score, Double rank, Integer candidates,
+                           Map<String, String> params, String ip, Long clickTs, Integer matchCount) {
+
+    public static final String SAVE = "save";
+    public static final String MATCH = "match";
+
+    public static final String EXACT = "exact";
+    public static final String FUZZY = "fuzzy";
+    public static final String NONE = "none";
+
+    static JournalEvent save(TrackingData data) {
+        return new JournalEvent(SAVE, System.currentTimeMillis(), data.getFingerprintId(), null, null,
+                null, null, null, data.getParams(), data.getClientIp(), data.getTimestamp(), null);
+    }
+
+    static JournalEvent match(String queryFingerprintId, String clientIp, String result, TrackingData matched,
+                              Double score, Double rank, Integer candidates) {
+        return new JournalEvent(MATCH, System.currentTimeMillis(),
+                matched != null ? matched.getFingerprintId() : null, queryFingerprintId, result,
+                score, rank, candidates,
+                matched != null ? matched.getParams() : null, clientIp,
+                matched != null ? matched.getTimestamp() : null,
+                matched != null ? matched.getMatchCount() : null);
+    }
+}
@@ -0,0 +1,140 @@
+package com.openinstall.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 按大小切换的内存映射日志文件，只由一个写入线程使用
+ *
+ * 每个文件创建时按 segment-size 整体映射，记录直接写入映射内存（不经过系统调用），写满后截断到实际长度并切换到新文件。
+ * 进程异常退出时最后一个文件末尾是未写入的零字节，下次启动时截断到最后一条完整记录。
+ * 文件名按创建时间排序：前缀-yyyyMMdd-HHmmss-SSS-序号.jsonl（事件日志的前缀为 match-journal）
+ */
+@Slf4j
+final class JournalSegments implements Closeable {
+
+    private static final String SUFFIX = ".jsonl";
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final Path directory;
+    private final String prefix;
+    private final long segmentSize;
+    private final int maxSegments;
+
+    private int sequence;
+    private Path current;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    JournalSegments(Path directory, String prefix, long segmentSize, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.prefix = prefix + "-";
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        Files.createDirectories(directory);
+        List<Path> existing = segments();
+        if (!existing.isEmpty()) {
+            trimTail(existing.get(existing.size() - 1));
+        }
+    }
+
+    /**
+     * 追加一条记录（记录本身不含换行，由这里补上）
+     */
+    void append(byte[] record) throws IOException {
+        if (buffer == null || buffer.remaining() < record.length + 1) {
+            rotate(record.length + 1);
+        }
+        buffer.put(record);
+        buffer.put((byte) '\n');
+    }
+
+    Path current() {
+        return current;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        buffer.force();
+        channel.truncate(buffer.position());
+        channel.close();
+        channel = null;
+        buffer = null;
+    }
+
+    private void rotate(int minSize) throws IOException {
+        close();
+        current = directory.resolve(prefix + LocalDateTime.now().format(NAME_FORMAT)
+                + "-" + String.format("%04d", sequence++ % 10000) + SUFFIX);
+        channel = FileChannel.open(current, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, minSize));
+        deleteOldSegments();
+    }
+
+    private void deleteOldSegments() throws IOException {
+        if (maxSegments <= 0) {
+            return;
+        }
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+            log.info("删除过期日志文件: {}", segments.get(i));
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(prefix) && name.endsWith(SUFFIX);
+            }).sorted().toList();
+        }
+    }
+
+    /**
+     * 截断到最后一条完整记录（最后一个换行符之后），去掉异常退出留下的零字节与不完整的记录
+     */
+    private static void trimTail(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            ByteBuffer block = ByteBuffer.allocate(64 * 1024);
+            long end = size;
+            while (end > 0) {
+                long start = Math.max(0, end - block.capacity());
+                block.clear().limit((int) (end - start));
+                while (block.hasRemaining()) {
+                    if (channel.read(block, start + block.position()) < 0) {
+                        break;
+                    }
+                }
+                for (int i = block.position() - 1; i >= 0; i--) {
+                    if (block.get(i) == '\n') {
+                        if (start + i + 1 < size) {
+                            channel.truncate(start + i + 1);
+                            log.info("日志文件末尾不完整，已截断: file={}, size={}", file, start + i + 1);
+                        }
+                        return;
+                    }
+                }
+                end = start;
+            }
+            channel.truncate(0);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.openinstall.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openinstall.config.TrackingProperties;
+import com.openinstall.model.TrackingData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 保存与匹配事件日志（tracking.journal）
+ *
+ * 请求线程只把事件放入队列，序列化与写文件都在单独的写入线程中完成；队列已满时丢弃事件并计数，不阻塞请求。
+ * 事件以 JSON Lines 写入按大小切换的内存映射文件，保留完整的归因数据（点击参数、指纹ID、相似度、客户端IP）供离线分析，
+ * 应用日志中只按 summary-interval 输出事件汇总。
+ */
+@Slf4j
+@Component
+public class MatchJournal {
+
+    private static final int MAX_DRAIN = 1024;
+
+    @Autowired
+    private TrackingProperties trackingProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private BlockingQueue<JournalEvent> queue;
+    private JournalSegments segments;
+    private Thread writer;
+    private volatile boolean running;
+
+    private Counter dropped;
+    private Counter writeErrors;
+
+    /**
+     * 汇总计数，只在写入线程中访问
+     */
+    private long saves;
+    private long exactMatches;
+    private long fuzzyMatches;
+    private long unmatched;
+    private double droppedAtLastSummary;
+    private double errorsAtLastSummary;
+
+    @PostConstruct
+    public void init() throws IOException {
+        TrackingProperties.Journal config = trackingProperties.getJournal();
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        segments = new JournalSegments(Path.of(config.getDirectory()), "match-journal",
+                config.getSegmentSize().toBytes(), config.getMaxSegments());
+        dropped = Counter.builder("tracking.journal.dropped")
+                .description("队列已满被丢弃的事件数")
+                .register(meterRegistry);
+        writeErrors = Counter.builder("tracking.journal.errors")
+                .description("写入失败的事件数")
+                .register(meterRegistry);
+        Gauge.builder("tracking.journal.queue.depth", queue, BlockingQueue::size)
+                .description("等待写入的事件数")
+                .register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::run, "tracking-journal");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("事件日志已启用: directory={}, segmentSize={}, maxSegments={}",
+                Path.of(config.getDirectory()).toAbsolutePath(), config.getSegmentSize(), config.getMaxSegments());
+    }
+
+    /**
+     * 停止接收事件，写完队列中剩余的事件后关闭文件
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * 记录保存（点击）事件
+     */
+    public void save(TrackingData data) {
+        if (queue != null) {
+            offer(JournalEvent.save(data));
+        }
+    }
+
+    /**
+     * 记录精确匹配成功
+     */
+    public void exactMatch(String queryFingerprintId, String clientIp, TrackingData matched) {
+        if (queue != null) {
+            offer(JournalEvent.match(queryFingerprintId, clientIp, JournalEvent.EXACT, matched, null, null, null));
+        }
+    }
+
+    /**
+     * 记录模糊匹配结果
+     * @param matched 认领成功的数据，未匹配时为 null
+     * @param candidates 扫描的候选数
+     */
+    public void fuzzyMatch(String queryFingerprintId, String clientIp, TrackingData matched,
+                           Double score, Double rank, int candidates) {
+        if (queue != null) {
+            offer(JournalEvent.match(queryFingerprintId, clientIp,
+                    matched != null ? JournalEvent.FUZZY : JournalEvent.NONE, matched, score, rank, candidates));
+        }
+    }
+
+    private void offer(JournalEvent event) {
+        if (!running || !queue.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    private void run() {
+        long summaryIntervalNanos = trackingProperties.getJournal().getSummaryInterval().toNanos();
+        long nextSummary = System.nanoTime() + summaryIntervalNanos;
+        List<JournalEvent> batch = new ArrayList<>(MAX_DRAIN);
+        try {
+            while (running || !queue.isEmpty()) {
+                JournalEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_DRAIN - 1);
+                    for (JournalEvent event : batch) {
+                        write(event);
+                    }
+                    batch.clear();
+                }
+                if (System.nanoTime() - nextSummary >= 0) {
+                    logSummary();
+                    nextSummary = System.nanoTime() + summaryIntervalNanos;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            logSummary();
+            try {
+                segments.close();
+            } catch (IOException e) {
+                log.error("关闭事件日志失败", e);
+            }
+        }
+    }
+
+    private void write(JournalEvent event) {
+        count(event);
+        try {
+            segments.append(objectMapper.writeValueAsBytes(event));
+        } catch (IOException | RuntimeException e) {
+            // 磁盘写满等情况下每个事件都会失败，只在两次汇总之间的第一次失败时输出错误
+            if (writeErrors.count() == errorsAtLastSummary) {
+                log.error("写入事件日志失败: {}", e.getMessage());
+            }
+            writeErrors.increment();
+        }
+    }
+
+    private void count(JournalEvent event) {
+        if (JournalEvent.SAVE.equals(event.type())) {
+            saves++;
+        } else if (JournalEvent.EXACT.equals(event.result())) {
+            exactMatches++;
+        } else if (JournalEvent.FUZZY.equals(event.result())) {
+            fuzzyMatches++;
+        } else {
+            unmatched++;
+        }
+    }
+
+    /**
+     * 输出上次汇总以来的事件数，没有事件时不输出
+     */
+    private void logSummary() {
+        double droppedTotal = dropped.count();
+        double errorsTotal = writeErrors.count();
+        long events = saves + exactMatches + fuzzyMatches + unmatched;
+        if (events > 0 || droppedTotal > droppedAtLastSummary || errorsTotal > errorsAtLastSummary) {
+            log.info("事件汇总: saves={}, exact={}, fuzzy={}, none={}, dropped={}, errors={}, segment={}",
+                    saves, exactMatches, fuzzyMatches, unmatched, (long) (droppedTotal - droppedAtLastSummary),
+                    (long) (errorsTotal - errorsAtLastSummary), segments.current());
+        }
+        saves = 0;
+        exactMatches = 0;
+        fuzzyMatches = 0;
+        unmatched = 0;
+        droppedAtLastSummary = droppedTotal;
+        errorsAtLastSummary = errorsTotal;
+    }
+}
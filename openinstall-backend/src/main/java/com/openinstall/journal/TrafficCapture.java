@@ -0,0 +1,178 @@
+package com.openinstall.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openinstall.config.TrackingProperties;
+import com.openinstall.model.DeviceFingerprint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求流量录制（tracking.capture），供 TrafficReplay 回放
+ *
+ * 控制器在调用服务前记录 /save、/get 请求（批量接口逐条记录）及到达时间；请求线程只放入队列，
+ * 脱敏（见 CaptureAnonymizer）、序列化与写文件都在录制线程中完成，队列已满时丢弃并计数，不阻塞请求。
+ * 录制文件与事件日志格式相同：按大小切换的内存映射文件，capture-yyyyMMdd-HHmmss-SSS-序号.jsonl。
+ */
+@Slf4j
+@Component
+public class TrafficCapture {
+
+    private static final int MAX_DRAIN = 1024;
+
+    @Autowired
+    private TrackingProperties trackingProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private BlockingQueue<CaptureRecord> queue;
+    private JournalSegments segments;
+    private CaptureAnonymizer anonymizer;
+    private Thread writer;
+    private volatile boolean running;
+
+    private Counter dropped;
+    private Counter writeErrors;
+
+    /**
+     * 已写入的请求数，只在录制线程中访问
+     */
+    private long written;
+
+    @PostConstruct
+    public void init() throws IOException {
+        TrackingProperties.Capture config = trackingProperties.getCapture();
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        byte[] key = config.getAnonymizationKey().getBytes(StandardCharsets.UTF_8);
+        if (key.length == 0) {
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            log.warn("未配置 tracking.capture.anonymization-key，使用随机密钥：本次录制的文件无法与其他进程录制的文件合并回放");
+        }
+        anonymizer = new CaptureAnonymizer(key);
+        queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        segments = new JournalSegments(Path.of(config.getDirectory()), "capture",
+                config.getSegmentSize().toBytes(), config.getMaxSegments());
+        dropped = Counter.builder("tracking.capture.dropped")
+                .description("队列已满未录制的请求数")
+                .register(meterRegistry);
+        writeErrors = Counter.builder("tracking.capture.errors")
+                .description("写入失败的录制请求数")
+                .register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::run, "tracking-capture");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("请求录制已启用: directory={}, segmentSize={}, maxSegments={}",
+                Path.of(config.getDirectory()).toAbsolutePath(), config.getSegmentSize(), config.getMaxSegments());
+    }
+
+    /**
+     * 停止录制，写完队列中剩余的请求后关闭文件
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * 录制保存请求
+     * @param timestamp 请求自带的点击时间，未带时为 null
+     */
+    public void save(String fingerprintId, DeviceFingerprint fingerprint, Map<String, String> params,
+                     Long timestamp, String clientIp) {
+        if (queue != null) {
+            long now = now();
+            offer(new CaptureRecord(now, CaptureRecord.SAVE, fingerprintId, fingerprint, params, clientIp,
+                    timestamp != null ? timestamp - now / 1000 : null));
+        }
+    }
+
+    /**
+     * 录制获取请求
+     */
+    public void get(String fingerprintId, DeviceFingerprint fingerprint, String clientIp) {
+        if (queue != null) {
+            offer(new CaptureRecord(now(), CaptureRecord.GET, fingerprintId, fingerprint, null, clientIp, null));
+        }
+    }
+
+    private static long now() {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+    }
+
+    private void offer(CaptureRecord record) {
+        if (!running || !queue.offer(record)) {
+            dropped.increment();
+        }
+    }
+
+    private void run() {
+        List<CaptureRecord> batch = new ArrayList<>(MAX_DRAIN);
+        try {
+            while (running || !queue.isEmpty()) {
+                CaptureRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_DRAIN - 1);
+                for (CaptureRecord record : batch) {
+                    write(record);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            log.info("请求录制结束: written={}, dropped={}, errors={}, segment={}",
+                    written, (long) dropped.count(), (long) writeErrors.count(), segments.current());
+            try {
+                segments.close();
+            } catch (IOException e) {
+                log.error("关闭录制文件失败", e);
+            }
+        }
+    }
+
+    private void write(CaptureRecord record) {
+        try {
+            segments.append(objectMapper.writeValueAsBytes(anonymizer.anonymize(record)));
+            written++;
+        } catch (IOException | RuntimeException e) {
+            // 磁盘写满等情况下每条都会失败，只输出第一次
+            if (writeErrors.count() == 0) {
+                log.error("写入录制文件失败: {}", e.getMessage());
+            }
+            writeErrors.increment();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.openinstall.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 设备指纹特征向量
+ * 保存时由设备指纹计算一次并随追踪数据存储，模糊匹配打分只比较这些基本类型字段
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FingerprintFeatures {
+
+    /**
+     * 屏幕宽高缺失
+     */
+    public static final int ABSENT = Integer.MIN_VALUE;
+
+    /**
+     * Canvas 指纹缺失
+     */
+    public static final long CANVAS_ABSENT = -1;
+
+    /**
+     * Canvas 指纹存在但不超过比较长度，参与计分但不会匹配
+     */
+    public static final long CANVAS_SHORT = 0;
+
+    /**
+     * 标准化 userAgent 的哈希
+     */
+    private int userAgent;
+
+    /**
+     * 标准化 platform 的哈希
+     */
+    private int platform;
+
+    private int screenWidth = ABSENT;
+
+    private int screenHeight = ABSENT;
+
+    /**
+     * 标准化 timezone 的哈希
+     */
+    private int timezone;
+
+    /**
+     * Canvas 指纹前缀：CANVAS_ABSENT、CANVAS_SHORT，或 (1 << 32) | 前缀哈希（恒为正数）
+     */
+    private long canvas = CANVAS_ABSENT;
+}
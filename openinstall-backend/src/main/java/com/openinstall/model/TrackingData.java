@@ -24,6 +24,11 @@ public class TrackingData {
      */
     private DeviceFingerprint fingerprint;
     
+    /**
+     * 设备指纹特征向量（保存时计算，用于模糊匹配打分）
+     */
+    private FingerprintFeatures features;
+    
     /**
      * 传递的参数（如邀请码、渠道ID等）
      */
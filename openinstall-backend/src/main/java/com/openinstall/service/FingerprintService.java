@@ -1,11 +1,17 @@
 package com.openinstall.service;
 
+import com.openinstall.config.TrackingProperties;
 import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.model.FingerprintFeatures;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * 设备指纹服务
@@ -13,46 +19,97 @@ import java.security.NoSuchAlgorithmException;
 @Service
 public class FingerprintService {
     
+    /**
+     * murmur3 指纹ID的版本前缀（md5 指纹ID无前缀，两种ID可在存储中共存）
+     */
+    public static final String MURMUR3_ID_PREFIX = "m3-";
+    
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final long MURMUR3_SEED = 0;
+    
+    /**
+     * Canvas 指纹参与比较的前缀长度
+     */
+    private static final int CANVAS_PREFIX_LENGTH = 20;
+    
+    /**
+     * 复用的指纹ID计算缓冲区：拼接字符串、UTF-8 字节、摘要结果、十六进制字符及 MD5 实例，
+     * 避免每次调用都查找 MessageDigest 和分配临时对象。
+     * 按随机槽位借还而不是 ThreadLocal：虚拟线程模式下每个请求都是新线程，线程内缓存无法复用
+     */
+    private static final AtomicReferenceArray<IdBuffer> ID_BUFFERS = new AtomicReferenceArray<>(64);
+    
+    @Autowired
+    private TrackingProperties trackingProperties;
+    
+    @Autowired
+    private UserAgentNormalizer userAgentNormalizer;
+    
     /**
      * 生成设备指纹ID
      * 使用标准化后的字段值，确保 Web 端和移动端在相同设备上生成相同的 fingerprintId
+     * 哈希算法由 tracking.fingerprint.id-hash 决定
      */
     public String generateFingerprintId(DeviceFingerprint fingerprint) {
+        return generateFingerprintId(fingerprint, trackingProperties.getFingerprint().getIdHash());
+    }
+    
+    /**
+     * 使用指定的哈希算法生成设备指纹ID
+     */
+    public String generateFingerprintId(DeviceFingerprint fingerprint, TrackingProperties.IdHash idHash) {
+        int slot = ThreadLocalRandom.current().nextInt(ID_BUFFERS.length());
+        IdBuffer buffer = ID_BUFFERS.getAndSet(slot, null);
+        if (buffer == null) {
+            buffer = new IdBuffer();
+        }
         try {
-            StringBuilder sb = new StringBuilder();
-            
-            // 标准化字段值，确保 Web 端和移动端格式一致
-            String normalizedUserAgent = normalizeUserAgent(fingerprint.getUserAgent());
-            String normalizedPlatform = normalizePlatform(fingerprint.getPlatform());
-            String normalizedTimezone = normalizeTimezone(fingerprint.getTimezone(), fingerprint.getTimezoneOffset());
-            
-            // 构建字符串（使用标准化后的值）
-            sb.append(normalizedUserAgent).append("|");
-            sb.append(normalizedPlatform).append("|");
-            sb.append(fingerprint.getScreenWidth() != null ? fingerprint.getScreenWidth().toString() : "").append("|");
-            sb.append(fingerprint.getScreenHeight() != null ? fingerprint.getScreenHeight().toString() : "").append("|");
-            sb.append(normalizedTimezone).append("|");
-            
-            // Canvas 指纹：Web 端有，移动端没有，所以不参与计算
-            // 如果包含 Canvas 指纹，会导致 Web 端和移动端的 fingerprintId 不同
-            // 因此这里不使用 Canvas 指纹
-            
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hash = md.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
-            
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
+            return generateFingerprintId(fingerprint, idHash, buffer);
+        } finally {
+            ID_BUFFERS.set(slot, buffer);
+        }
+    }
+    
+    private String generateFingerprintId(DeviceFingerprint fingerprint, TrackingProperties.IdHash idHash,
+                                         IdBuffer buffer) {
+        StringBuilder sb = buffer.text;
+        sb.setLength(0);
+        
+        // 标准化字段值，确保 Web 端和移动端格式一致
+        String normalizedUserAgent = userAgentNormalizer.normalize(fingerprint.getUserAgent());
+        String normalizedPlatform = normalizePlatform(fingerprint.getPlatform());
+        String normalizedTimezone = normalizeTimezone(fingerprint.getTimezone(), fingerprint.getTimezoneOffset());
+        
+        // 构建字符串（使用标准化后的值）
+        sb.append(normalizedUserAgent).append('|');
+        sb.append(normalizedPlatform).append('|');
+        if (fingerprint.getScreenWidth() != null) {
+            sb.append(fingerprint.getScreenWidth().intValue());
+        }
+        sb.append('|');
+        if (fingerprint.getScreenHeight() != null) {
+            sb.append(fingerprint.getScreenHeight().intValue());
+        }
+        sb.append('|');
+        sb.append(normalizedTimezone).append('|');
+        
+        // Canvas 指纹：Web 端有，移动端没有，所以不参与计算
+        // 如果包含 Canvas 指纹，会导致 Web 端和移动端的 fingerprintId 不同
+        // 因此这里不使用 Canvas 指纹
+        
+        int length = buffer.encodeText();
+        if (idHash == TrackingProperties.IdHash.MURMUR3) {
+            MurmurHash3.hash128(buffer.bytes, 0, length, MURMUR3_SEED, buffer.digest);
+            return buffer.toHex(MURMUR3_ID_PREFIX);
+        }
+        
+        try {
+            buffer.md5.update(buffer.bytes, 0, length);
+            buffer.md5.digest(buffer.digest, 0, buffer.digest.length);
+        } catch (DigestException e) {
             throw new RuntimeException("生成指纹ID失败", e);
         }
+        return buffer.toHex("");
     }
     
     /**
@@ -63,46 +120,100 @@ public class FingerprintService {
         if (fp1 == null || fp2 == null) {
             return 0.0;
         }
+        return calculateSimilarity(extractFeatures(fp1), extractFeatures(fp2), 0.0);
+    }
+    
+    /**
+     * 按特征向量计算相似度：相同字段的权重之和 / 参与比较字段的权重之和
+     * 不同字段累计的权重已使分数低于 threshold 时提前返回，此时返回值只保证小于 threshold
+     * @return 相似度分数 (0.0 - 1.0)
+     */
+    public double calculateSimilarity(FingerprintFeatures f1, FingerprintFeatures f2, double threshold) {
+        if (f1 == null || f2 == null) {
+            return 0.0;
+        }
         
-        int matchCount = 0;
-        int totalCount = 0;
-        
-        // 比较关键字段
-        if (compareField(fp1.getUserAgent(), fp2.getUserAgent())) matchCount++;
-        totalCount++;
-        
-        if (compareField(fp1.getScreenWidth(), fp2.getScreenWidth())) matchCount++;
-        totalCount++;
-        
-        if (compareField(fp1.getScreenHeight(), fp2.getScreenHeight())) matchCount++;
-        totalCount++;
-        
-        if (compareField(fp1.getTimezone(), fp2.getTimezone())) matchCount++;
-        totalCount++;
+        TrackingProperties.Weights weights = trackingProperties.getFuzzy().getWeights();
+        long canvas1 = f1.getCanvas();
+        long canvas2 = f2.getCanvas();
+        boolean compareCanvas = canvas1 != FingerprintFeatures.CANVAS_ABSENT && canvas2 != FingerprintFeatures.CANVAS_ABSENT;
+        double total = weights.getUserAgent() + weights.getPlatform() + weights.getScreenWidth()
+                + weights.getScreenHeight() + weights.getTimezone() + (compareCanvas ? weights.getCanvas() : 0);
+        if (total <= 0) {
+            return 0.0;
+        }
         
-        if (compareField(fp1.getPlatform(), fp2.getPlatform())) matchCount++;
-        totalCount++;
+        double score = total;
+        if (f1.getUserAgent() != f2.getUserAgent() && (score -= weights.getUserAgent()) / total < threshold) {
+            return score / total;
+        }
+        if (compareCanvas && (canvas1 == FingerprintFeatures.CANVAS_SHORT || canvas1 != canvas2)
+                && (score -= weights.getCanvas()) / total < threshold) {
+            return score / total;
+        }
+        if (f1.getScreenWidth() != f2.getScreenWidth() && (score -= weights.getScreenWidth()) / total < threshold) {
+            return score / total;
+        }
+        if (f1.getScreenHeight() != f2.getScreenHeight() && (score -= weights.getScreenHeight()) / total < threshold) {
+            return score / total;
+        }
+        if (f1.getTimezone() != f2.getTimezone() && (score -= weights.getTimezone()) / total < threshold) {
+            return score / total;
+        }
+        if (f1.getPlatform() != f2.getPlatform()) {
+            score -= weights.getPlatform();
+        }
+        return score / total;
+    }
+    
+    /**
+     * 提取特征向量：标准化后的 userAgent、platform、timezone 取哈希，屏幕宽高直接保存，
+     * Canvas 指纹只保留前 20 个字符的哈希
+     */
+    public FingerprintFeatures extractFeatures(DeviceFingerprint fingerprint) {
+        FingerprintFeatures features = new FingerprintFeatures();
+        features.setUserAgent(userAgentNormalizer.normalize(fingerprint.getUserAgent()).hashCode());
+        features.setPlatform(normalizePlatform(fingerprint.getPlatform()).hashCode());
+        features.setTimezone(normalizeTimezone(fingerprint.getTimezone(), fingerprint.getTimezoneOffset()).hashCode());
+        if (fingerprint.getScreenWidth() != null) {
+            features.setScreenWidth(fingerprint.getScreenWidth());
+        }
+        if (fingerprint.getScreenHeight() != null) {
+            features.setScreenHeight(fingerprint.getScreenHeight());
+        }
         
-        // Canvas 指纹部分匹配
-        if (fp1.getCanvasFingerprint() != null && fp2.getCanvasFingerprint() != null) {
-            String c1 = fp1.getCanvasFingerprint();
-            String c2 = fp2.getCanvasFingerprint();
-            if (c1.length() > 20 && c2.length() > 20) {
-                if (c1.substring(0, Math.min(20, c1.length()))
-                    .equals(c2.substring(0, Math.min(20, c2.length())))) {
-                    matchCount++;
+        String canvas = fingerprint.getCanvasFingerprint();
+        if (canvas != null) {
+            if (canvas.length() > CANVAS_PREFIX_LENGTH) {
+                // 与 canvas.substring(0, 20).hashCode() 相同，不创建子串
+                int hash = 0;
+                for (int i = 0; i < CANVAS_PREFIX_LENGTH; i++) {
+                    hash = 31 * hash + canvas.charAt(i);
                 }
+                features.setCanvas(1L << 32 | (hash & 0xFFFFFFFFL));
+            } else {
+                features.setCanvas(FingerprintFeatures.CANVAS_SHORT);
             }
-            totalCount++;
         }
-        
-        return totalCount > 0 ? (double) matchCount / totalCount : 0.0;
+        return features;
     }
     
-    private boolean compareField(Object field1, Object field2) {
-        if (field1 == null && field2 == null) return true;
-        if (field1 == null || field2 == null) return false;
-        return field1.equals(field2);
+    /**
+     * 模糊匹配阻塞键（使用标准化后的字段值，两端上报格式不同也能落入同一个键）
+     * 每个键省略一部分字段，只有一个字段不同的两个指纹至少共享一个键：
+     * platform+屏幕+时区 覆盖 userAgent 不同，屏幕+userAgent 覆盖 platform 或时区不同，
+     * platform+时区+userAgent 覆盖屏幕尺寸不同
+     */
+    public List<String> blockingKeys(DeviceFingerprint fingerprint) {
+        String userAgent = userAgentNormalizer.normalize(fingerprint.getUserAgent());
+        String platform = normalizePlatform(fingerprint.getPlatform());
+        String timezone = normalizeTimezone(fingerprint.getTimezone(), fingerprint.getTimezoneOffset());
+        String screen = (fingerprint.getScreenWidth() != null ? fingerprint.getScreenWidth().toString() : "")
+                + "x" + (fingerprint.getScreenHeight() != null ? fingerprint.getScreenHeight().toString() : "");
+        return List.of(
+                "p:" + platform + ":" + screen + ":" + timezone,
+                "s:" + screen + ":" + userAgent,
+                "u:" + platform + ":" + timezone + ":" + userAgent);
     }
     
     /**
@@ -110,7 +221,7 @@ public class FingerprintService {
      * Web 端: "Win32", "MacIntel", "Linux x86_64" -> "windows", "macos", "linux"
      * Flutter 端: "android", "ios" -> "android", "ios"
      */
-    private String normalizePlatform(String platform) {
+    String normalizePlatform(String platform) {
         if (platform == null || platform.isEmpty()) {
             return "";
         }
@@ -129,7 +240,7 @@ public class FingerprintService {
      * Web 端: "Asia/Shanghai" (IANA 格式)
      * Flutter 端: "CST", "UTC" (时区缩写) -> 转换为 IANA 格式
      */
-    private String normalizeTimezone(String timezone, Integer timezoneOffset) {
+    String normalizeTimezone(String timezone, Integer timezoneOffset) {
         if (timezone == null || timezone.isEmpty()) {
             // 如果没有时区名称，使用时区偏移量转换为时区
             if (timezoneOffset != null) {
@@ -205,70 +316,70 @@ public class FingerprintService {
     }
     
     /**
-     * 标准化 userAgent 字段
-     * 提取关键信息：操作系统和版本
-     * Web 端: "Mozilla/5.0 (Windows NT 10.0; Win64; x64)..." -> "Windows 10"
-     * Flutter 端: "Android/13 Pixel 6" -> "Android 13"
+     * 指纹ID计算缓冲区（同一时刻只被一个调用使用）
      */
-    private String normalizeUserAgent(String userAgent) {
-        if (userAgent == null || userAgent.isEmpty()) {
-            return "";
-        }
+    private static final class IdBuffer {
+        
+        private final StringBuilder text = new StringBuilder(128);
+        private byte[] bytes = new byte[256];
+        private final byte[] digest = new byte[16];
+        private final char[] hex = new char[MURMUR3_ID_PREFIX.length() + 32];
+        private final MessageDigest md5;
         
-        // 如果是 Flutter 端的格式（"Android/13" 或 "iOS/16"），直接返回
-        if (userAgent.startsWith("Android/") || userAgent.startsWith("iOS/")) {
-            // 提取 "Android/13" 或 "iOS/16"
-            int spaceIndex = userAgent.indexOf(' ');
-            if (spaceIndex > 0) {
-                return userAgent.substring(0, spaceIndex);
+        IdBuffer() {
+            try {
+                md5 = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("生成指纹ID失败", e);
             }
-            return userAgent;
         }
         
-        // 如果是 Web 端的格式，提取操作系统信息
-        String lower = userAgent.toLowerCase();
-        
-        // 提取 Windows 版本
-        if (lower.contains("windows")) {
-            if (lower.contains("windows nt 10.0") || lower.contains("windows 10")) {
-                return "Windows 10";
-            }
-            if (lower.contains("windows nt 6.3") || lower.contains("windows 8.1")) {
-                return "Windows 8.1";
+        /**
+         * 将 text 按 UTF-8 编码到 bytes，返回字节数
+         */
+        int encodeText() {
+            int length = text.length();
+            if (bytes.length < length * 3) {
+                bytes = new byte[length * 3];
             }
-            if (lower.contains("windows nt 6.1") || lower.contains("windows 7")) {
-                return "Windows 7";
+            int n = 0;
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    bytes[n++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[n++] = (byte) (0xC0 | (c >> 6));
+                    bytes[n++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, text.charAt(++i));
+                    bytes[n++] = (byte) (0xF0 | (cp >> 18));
+                    bytes[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    bytes[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    bytes[n++] = (byte) (0x80 | (cp & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // 不成对的代理字符与 String.getBytes(UTF_8) 一致，替换为 '?'
+                    bytes[n++] = '?';
+                } else {
+                    bytes[n++] = (byte) (0xE0 | (c >> 12));
+                    bytes[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[n++] = (byte) (0x80 | (c & 0x3F));
+                }
             }
-            return "Windows";
+            return n;
         }
         
-        // 提取 macOS 版本
-        if (lower.contains("mac os x") || lower.contains("macintosh")) {
-            // 尝试提取版本号
-            if (lower.contains("mac os x 10")) {
-                return "macOS 10";
+        /**
+         * 查表将 digest 编码为带前缀的十六进制字符串
+         */
+        String toHex(String prefix) {
+            int n = prefix.length();
+            prefix.getChars(0, n, hex, 0);
+            for (byte b : digest) {
+                hex[n++] = HEX_DIGITS[(b >> 4) & 0x0F];
+                hex[n++] = HEX_DIGITS[b & 0x0F];
             }
-            return "macOS";
-        }
-        
-        // 提取 Linux
-        if (lower.contains("linux")) {
-            return "Linux";
-        }
-        
-        // 提取 Android（从 Web 端）
-        if (lower.contains("android")) {
-            // 尝试提取版本号
-            return "Android";
+            return new String(hex, 0, n);
         }
-        
-        // 提取 iOS（从 Web 端）
-        if (lower.contains("iphone") || lower.contains("ipad") || lower.contains("ipod")) {
-            return "iOS";
-        }
-        
-        // 如果无法识别，返回原值的前 50 个字符
-        return userAgent.length() > 50 ? userAgent.substring(0, 50) : userAgent;
     }
 }
-
@@ -0,0 +1,144 @@
+package com.openinstall.service;
+
+/**
+ * 客户端IP子网：IPv4 取 /24，IPv6 取 /64
+ *
+ * 只做字面量解析，不做 DNS 查询；内网、回环、链路本地、运营商级 NAT 等大量用户共用的地址不参与索引。
+ */
+public final class IpSubnets {
+
+    private IpSubnets() {
+    }
+
+    /**
+     * @return 子网标识（"4:a.b.c" 或 "6:xxxx:xxxx:xxxx:xxxx"）；无法解析或不适合索引时返回 null
+     */
+    public static String subnet(String ip) {
+        if (ip == null || ip.isEmpty()) {
+            return null;
+        }
+        if (ip.indexOf(':') < 0) {
+            int[] v4 = parseIpv4(ip);
+            return v4 != null ? ipv4Subnet(v4) : null;
+        }
+
+        int[] groups = parseIpv6(ip);
+        if (groups == null) {
+            return null;
+        }
+        // IPv4 映射地址 ::ffff:a.b.c.d 按 IPv4 处理
+        if (groups[0] == 0 && groups[1] == 0 && groups[2] == 0 && groups[3] == 0 && groups[4] == 0 && groups[5] == 0xFFFF) {
+            return ipv4Subnet(new int[]{groups[6] >> 8, groups[6] & 0xFF, groups[7] >> 8, groups[7] & 0xFF});
+        }
+        // 未指定/回环（::/::1）、链路本地（fe80::/10）、唯一本地（fc00::/7）
+        if ((groups[0] == 0 && groups[1] == 0 && groups[2] == 0 && groups[3] == 0)
+                || (groups[0] & 0xFFC0) == 0xFE80 || (groups[0] & 0xFE00) == 0xFC00) {
+            return null;
+        }
+        return "6:" + Integer.toHexString(groups[0]) + ":" + Integer.toHexString(groups[1])
+                + ":" + Integer.toHexString(groups[2]) + ":" + Integer.toHexString(groups[3]);
+    }
+
+    private static String ipv4Subnet(int[] v4) {
+        int a = v4[0];
+        int b = v4[1];
+        // 0/8、10/8、127/8、169.254/16、172.16/12、192.168/16、100.64/10（运营商级 NAT）
+        if (a == 0 || a == 10 || a == 127 || (a == 169 && b == 254) || (a == 172 && (b & 0xF0) == 16)
+                || (a == 192 && b == 168) || (a == 100 && (b & 0xC0) == 64)) {
+            return null;
+        }
+        return "4:" + a + "." + b + "." + v4[2];
+    }
+
+    private static int[] parseIpv4(String ip) {
+        int[] octets = new int[4];
+        int part = 0;
+        int value = -1;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return null;
+                }
+            } else if (c == '.' && value >= 0 && part < 3) {
+                octets[part++] = value;
+                value = -1;
+            } else {
+                return null;
+            }
+        }
+        if (part != 3 || value < 0) {
+            return null;
+        }
+        octets[3] = value;
+        return octets;
+    }
+
+    /**
+     * 解析 IPv6 文本为 8 个 16 位分组，支持 "::" 缩写、末尾内嵌 IPv4、方括号与 %zone 后缀
+     */
+    private static int[] parseIpv6(String ip) {
+        String text = ip;
+        if (text.startsWith("[") && text.endsWith("]")) {
+            text = text.substring(1, text.length() - 1);
+        }
+        int zone = text.indexOf('%');
+        if (zone >= 0) {
+            text = text.substring(0, zone);
+        }
+
+        int gap = text.indexOf("::");
+        if (gap >= 0 && text.indexOf("::", gap + 1) >= 0) {
+            return null;
+        }
+        int[] head = gap >= 0 ? parseGroups(text.substring(0, gap)) : parseGroups(text);
+        int[] tail = gap >= 0 ? parseGroups(text.substring(gap + 2)) : new int[0];
+        if (head == null || tail == null) {
+            return null;
+        }
+        int count = head.length + tail.length;
+        if (gap >= 0 ? count > 7 : count != 8) {
+            return null;
+        }
+
+        int[] groups = new int[8];
+        System.arraycopy(head, 0, groups, 0, head.length);
+        System.arraycopy(tail, 0, groups, 8 - tail.length, tail.length);
+        return groups;
+    }
+
+    private static int[] parseGroups(String text) {
+        if (text.isEmpty()) {
+            return new int[0];
+        }
+        String[] parts = text.split(":", -1);
+        boolean embeddedIpv4 = parts[parts.length - 1].indexOf('.') >= 0;
+        int[] groups = new int[parts.length + (embeddedIpv4 ? 1 : 0)];
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i];
+            if (embeddedIpv4 && i == parts.length - 1) {
+                int[] v4 = parseIpv4(part);
+                if (v4 == null) {
+                    return null;
+                }
+                groups[i] = v4[0] << 8 | v4[1];
+                groups[i + 1] = v4[2] << 8 | v4[3];
+                break;
+            }
+            if (part.isEmpty() || part.length() > 4) {
+                return null;
+            }
+            int value = 0;
+            for (int j = 0; j < part.length(); j++) {
+                int digit = Character.digit(part.charAt(j), 16);
+                if (digit < 0) {
+                    return null;
+                }
+                value = value << 4 | digit;
+            }
+            groups[i] = value;
+        }
+        return groups;
+    }
+}
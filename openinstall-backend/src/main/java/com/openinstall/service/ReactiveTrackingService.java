@@ -0,0 +1,218 @@
+package com.openinstall.service;
+
+import com.openinstall.config.TrackingProperties;
+import com.openinstall.journal.MatchJournal;
+import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.model.TrackingData;
+import com.openinstall.store.ReactiveTrackingStore;
+import com.openinstall.store.RedisRoundTrips;
+import com.openinstall.store.TrackingLookupFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * 非阻塞追踪服务（tracking.api.mode=reactive）
+ * 指纹ID、索引名、候选合并与打分与 TrackingService 共用，存储访问通过 ReactiveTrackingStore 组合，
+ * 等待 Redis 响应期间不占用线程
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "tracking.api", name = "mode", havingValue = "reactive")
+public class ReactiveTrackingService {
+
+    @Autowired
+    private ReactiveTrackingStore reactiveTrackingStore;
+
+    @Autowired
+    private TrackingService trackingService;
+
+    @Autowired
+    private FingerprintService fingerprintService;
+
+    @Autowired
+    private TrackingProperties trackingProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MatchJournal matchJournal;
+
+    @Autowired
+    private TrackingLookupFilter lookupFilter;
+
+    /**
+     * 与阻塞模式共用 tracking.stage 计时器（指纹ID生成阶段在 TrackingService#prepareForSave 中记录）
+     */
+    private Timer fingerprintStage;
+    private Timer saveStage;
+    private Timer exactLookupStage;
+    private Timer indexReadStage;
+    private Timer candidateFetchStage;
+    private Timer scoringStage;
+    private Timer claimStage;
+
+    /**
+     * 与阻塞模式共用 tracking.match 计数器
+     */
+    private Counter exactMatches;
+    private Counter fuzzyMatches;
+    private Counter unmatched;
+
+    /**
+     * 与阻塞模式共用 tracking.redis.round-trips（save、match）
+     */
+    private DistributionSummary saveRoundTrips;
+    private DistributionSummary matchRoundTrips;
+
+    @PostConstruct
+    public void initMetrics() {
+        fingerprintStage = TrackingService.stageTimer(meterRegistry, "fingerprint");
+        saveStage = TrackingService.stageTimer(meterRegistry, "save");
+        exactLookupStage = TrackingService.stageTimer(meterRegistry, "exact_lookup");
+        indexReadStage = TrackingService.stageTimer(meterRegistry, "index_read");
+        candidateFetchStage = TrackingService.stageTimer(meterRegistry, "candidate_fetch");
+        scoringStage = TrackingService.stageTimer(meterRegistry, "scoring");
+        claimStage = TrackingService.stageTimer(meterRegistry, "claim");
+
+        exactMatches = TrackingService.matchCounter(meterRegistry, "exact");
+        fuzzyMatches = TrackingService.matchCounter(meterRegistry, "fuzzy");
+        unmatched = TrackingService.matchCounter(meterRegistry, "none");
+
+        saveRoundTrips = TrackingService.roundTripSummary(meterRegistry, "save");
+        matchRoundTrips = TrackingService.roundTripSummary(meterRegistry, "match");
+    }
+
+    /**
+     * 阶段耗时：从订阅到结束（包括出错），与阻塞模式的 Timer#record 对应
+     */
+    private <T> Mono<T> timed(Timer timer, Mono<T> stage) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return stage.doFinally(signal -> sample.stop(timer));
+        });
+    }
+
+    /**
+     * 保存追踪数据
+     * @return 数据写入后发出 fingerprintId
+     */
+    public Mono<String> saveTrackingData(TrackingData data) {
+        Mono<Void> save = Mono.defer(() -> {
+            List<String> indexNames = trackingService.prepareForSave(data);
+            return timed(saveStage, reactiveTrackingStore.save(data, indexNames));
+        });
+        return RedisRoundTrips.counted(save, saveRoundTrips::record).then(Mono.fromSupplier(() -> {
+            matchJournal.save(data);
+            log.debug("保存追踪数据: fingerprintId={}", data.getFingerprintId());
+            return data.getFingerprintId();
+        }));
+    }
+
+    /**
+     * 通过设备指纹匹配追踪数据：精确认领失败后模糊匹配，步骤与 TrackingService#matchTrackingData 相同
+     * @return 匹配并认领成功的数据；未匹配时为空
+     */
+    public Mono<TrackingData> matchTrackingData(DeviceFingerprint fingerprint, String clientIp) {
+        return RedisRoundTrips.counted(match(fingerprint, clientIp), matchRoundTrips::record);
+    }
+
+    private Mono<TrackingData> match(DeviceFingerprint fingerprint, String clientIp) {
+        return Mono.defer(() -> {
+            String fingerprintId = fingerprintStage.record(() -> fingerprintService.generateFingerprintId(fingerprint));
+            boolean[] exactSkipped = {true};
+            Mono<TrackingData> exact = claimPossible(fingerprintId, exactSkipped);
+
+            // 哈希算法切换期间，已保存的数据可能仍使用 md5 指纹ID
+            TrackingProperties.Fingerprint fingerprintConfig = trackingProperties.getFingerprint();
+            if (fingerprintConfig.isLegacyIdFallback() && fingerprintConfig.getIdHash() != TrackingProperties.IdHash.MD5) {
+                String legacyId = fingerprintStage.record(
+                        () -> fingerprintService.generateFingerprintId(fingerprint, TrackingProperties.IdHash.MD5));
+                exact = exact.switchIfEmpty(Mono.defer(() -> claimPossible(legacyId, exactSkipped)));
+            }
+
+            return exact
+                    .doOnNext(data -> {
+                        exactMatches.increment();
+                        matchJournal.exactMatch(fingerprintId, clientIp, data);
+                        log.debug("精确匹配成功: fingerprintId={}", data.getFingerprintId());
+                    })
+                    .switchIfEmpty(Mono.defer(() -> fuzzyMatch(fingerprintId, fingerprint, clientIp, exactSkipped[0])
+                            .doOnNext(data -> fuzzyMatches.increment())
+                            .switchIfEmpty(Mono.fromRunnable(unmatched::increment))));
+        });
+    }
+
+    /**
+     * 精确认领；负查找过滤器判断为不存在时不访问 Redis
+     * @param exactSkipped 实际认领时置为 false
+     */
+    private Mono<TrackingData> claimPossible(String fingerprintId, boolean[] exactSkipped) {
+        if (!lookupFilter.mightContainRecord(fingerprintId)) {
+            lookupFilter.skipped(TrackingLookupFilter.EXACT, 1);
+            return Mono.empty();
+        }
+        exactSkipped[0] = false;
+        return timed(exactLookupStage, reactiveTrackingStore.claim(fingerprintId));
+    }
+
+    /**
+     * 模糊匹配：候选查找、候选读取、依次认领
+     * @param fingerprintId 目标指纹的指纹ID（只用于事件日志）
+     * @param exactSkipped 精确认领是否全部被负查找过滤器跳过（未访问 Redis）
+     */
+    private Mono<TrackingData> fuzzyMatch(String fingerprintId, DeviceFingerprint targetFingerprint, String clientIp,
+                                          boolean exactSkipped) {
+        List<String> indexNames = trackingService.lookupIndexNames(targetFingerprint, clientIp);
+        if (indexNames.isEmpty()) {
+            lookupFilter.skipped(TrackingLookupFilter.FUZZY, 1);
+            if (exactSkipped) {
+                lookupFilter.skipped(TrackingLookupFilter.MATCH, 1);
+            }
+            matchJournal.fuzzyMatch(fingerprintId, clientIp, null, null, null, 0);
+            return Mono.empty();
+        }
+        return timed(indexReadStage,
+                reactiveTrackingStore.findCandidates(indexNames, trackingProperties.getFuzzy().getMaxCandidates()))
+                .flatMap(lookup -> {
+                    List<String> candidateIds =
+                            trackingService.mergeCandidates(lookup.total(0, indexNames.size()), lookup.members());
+                    log.debug("模糊匹配: candidates={}, indexNames={}", candidateIds.size(), indexNames);
+                    if (candidateIds.isEmpty()) {
+                        matchJournal.fuzzyMatch(fingerprintId, clientIp, null, null, null, 0);
+                        return Mono.empty();
+                    }
+                    return timed(candidateFetchStage, reactiveTrackingStore.getForScoring(candidateIds))
+                            .flatMap(candidates -> {
+                                List<TrackingService.ScoredCandidate> qualified = scoringStage.record(() ->
+                                        trackingService.rankCandidates(targetFingerprint, clientIp, candidateIds, candidates));
+                                return timed(claimStage, claimFirst(fingerprintId, clientIp, candidateIds.size(), qualified));
+                            })
+                            .switchIfEmpty(Mono.fromRunnable(() -> matchJournal.fuzzyMatch(
+                                    fingerprintId, clientIp, null, null, null, candidateIds.size())));
+                });
+    }
+
+    /**
+     * 按排序分从高到低依次认领；候选可能已被并发请求认领，此时尝试下一个，认领成功后不再继续
+     */
+    private Mono<TrackingData> claimFirst(String fingerprintId, String clientIp, int candidates,
+                                          List<TrackingService.ScoredCandidate> qualified) {
+        return Flux.fromIterable(qualified)
+                .concatMap(candidate -> reactiveTrackingStore.claim(candidate.fingerprintId())
+                        .doOnNext(claimed -> matchJournal.fuzzyMatch(fingerprintId, clientIp, claimed,
+                                candidate.score(), candidate.rank(), candidates)))
+                .next();
+    }
+}
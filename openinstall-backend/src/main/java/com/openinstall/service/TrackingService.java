@@ -1,41 +1,234 @@
 package com.openinstall.service;
 
+import com.openinstall.config.TrackingProperties;
+import com.openinstall.journal.MatchJournal;
 import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.model.FingerprintFeatures;
 import com.openinstall.model.TrackingData;
+import com.openinstall.store.RedisRoundTrips;
+import com.openinstall.store.TrackingLookupFilter;
+import com.openinstall.store.TrackingStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 追踪服务
+ * 指纹ID、特征向量、候选索引名与模糊匹配打分在这里完成，数据读写由 TrackingStore（tracking.storage.engine）负责
  */
 @Slf4j
 @Service
 public class TrackingService {
     
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private TrackingStore trackingStore;
+    
+    @Autowired
+    private TrackingWriteBehind writeBehind;
     
     @Autowired
     private FingerprintService fingerprintService;
     
-    private static final String REDIS_KEY_PREFIX = "tracking:";
-    private static final String REDIS_INDEX_PREFIX = "tracking:index:";
-    private static final long DEFAULT_EXPIRE_HOURS = 24; // 默认24小时过期
+    @Autowired
+    private TrackingProperties trackingProperties;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private MatchJournal matchJournal;
+    
+    @Autowired
+    private TrackingLookupFilter lookupFilter;
+    
+    // 子网候选索引名前缀
+    private static final String IP_INDEX_PREFIX = "ip:";
+    
+    /**
+     * 模糊匹配各索引中的候选数之和（同一候选可能出现在多个索引中）
+     */
+    private DistributionSummary candidateSetSize;
+    
+    /**
+     * 模糊匹配实际扫描的候选数量（受 tracking.fuzzy.max-candidates 限制）
+     */
+    private DistributionSummary candidatesScanned;
+    
+    /**
+     * 各阶段耗时（tracking.stage，按 stage 标签区分）：指纹ID生成、保存写入、精确认领、候选索引读取、
+     * 候选数据读取、打分、模糊匹配认领
+     */
+    private Timer fingerprintStage;
+    private Timer saveStage;
+    private Timer exactLookupStage;
+    private Timer indexReadStage;
+    private Timer candidateFetchStage;
+    private Timer scoringStage;
+    private Timer claimStage;
+    
+    /**
+     * 匹配结果（tracking.match，按 result 标签区分），精确 / 模糊命中率由各结果计数相除得到
+     */
+    private Counter exactMatches;
+    private Counter fuzzyMatches;
+    private Counter unmatched;
+    
+    /**
+     * 单个请求的 Redis 往返次数（tracking.redis.round-trips，按 operation 标签区分）
+     */
+    private DistributionSummary saveRoundTrips;
+    private DistributionSummary matchRoundTrips;
+    private DistributionSummary saveBatchRoundTrips;
+    private DistributionSummary matchBatchRoundTrips;
+    
+    @PostConstruct
+    public void initMetrics() {
+        candidateSetSize = DistributionSummary.builder("tracking.fuzzy.candidates")
+                .description("模糊匹配各索引中的候选数之和")
+                .register(meterRegistry);
+        candidatesScanned = DistributionSummary.builder("tracking.fuzzy.candidates.scanned")
+                .description("模糊匹配实际扫描的候选数量")
+                .register(meterRegistry);
+        
+        fingerprintStage = stageTimer(meterRegistry, "fingerprint");
+        saveStage = stageTimer(meterRegistry, "save");
+        exactLookupStage = stageTimer(meterRegistry, "exact_lookup");
+        indexReadStage = stageTimer(meterRegistry, "index_read");
+        candidateFetchStage = stageTimer(meterRegistry, "candidate_fetch");
+        scoringStage = stageTimer(meterRegistry, "scoring");
+        claimStage = stageTimer(meterRegistry, "claim");
+        
+        exactMatches = matchCounter(meterRegistry, "exact");
+        fuzzyMatches = matchCounter(meterRegistry, "fuzzy");
+        unmatched = matchCounter(meterRegistry, "none");
+        
+        saveRoundTrips = roundTripSummary(meterRegistry, "save");
+        matchRoundTrips = roundTripSummary(meterRegistry, "match");
+        saveBatchRoundTrips = roundTripSummary(meterRegistry, "save_batch");
+        matchBatchRoundTrips = roundTripSummary(meterRegistry, "match_batch");
+    }
+    
+    /**
+     * 阶段耗时计时器；非阻塞模式取得的是同一个计时器
+     */
+    static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("tracking.stage")
+                .description("保存与匹配各阶段耗时")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+    
+    /**
+     * 匹配结果计数器；同名同标签的计数器只注册一次，非阻塞模式取得的是同一个计数器
+     */
+    static Counter matchCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("tracking.match")
+                .description("匹配请求数（exact 精确命中、fuzzy 模糊命中、none 未匹配）")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Redis 往返次数分布；非阻塞模式取得的是同一个分布
+     */
+    static DistributionSummary roundTripSummary(MeterRegistry meterRegistry, String operation) {
+        return DistributionSummary.builder("tracking.redis.round-trips")
+                .description("单个请求的 Redis 往返次数（memory 引擎为 0）")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
     
     /**
      * 保存追踪数据
      */
     public String saveTrackingData(TrackingData data) {
+        long roundTrips = RedisRoundTrips.current();
+        List<String> indexNames = prepareForSave(data);
+        saveStage.record(() -> trackingStore.save(data, indexNames));
+        saveRoundTrips.record(RedisRoundTrips.current() - roundTrips);
+        
+        matchJournal.save(data);
+        log.debug("保存追踪数据: fingerprintId={}", data.getFingerprintId());
+        
+        return data.getFingerprintId();
+    }
+    
+    /**
+     * 异步保存追踪数据：启用微批写入时排队后整批写入，否则同步保存。
+     * save 阶段耗时包括排队等待，Redis 往返次数为请求所在批次整批写入的往返次数
+     * @return 数据写入后完成的 future，结果为 fingerprintId
+     */
+    public CompletableFuture<String> saveTrackingDataAsync(TrackingData data) {
+        if (!writeBehind.isEnabled()) {
+            return CompletableFuture.completedFuture(saveTrackingData(data));
+        }
+        
+        List<String> indexNames = prepareForSave(data);
+        String fingerprintId = data.getFingerprintId();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return writeBehind.submit(data, indexNames)
+                .whenComplete((roundTrips, error) -> sample.stop(saveStage))
+                .thenApply(roundTrips -> {
+                    saveRoundTrips.record(roundTrips);
+                    matchJournal.save(data);
+                    return fingerprintId;
+                });
+    }
+    
+    /**
+     * 批量保存追踪数据，整批通过一次存储访问写入；整批失败时逐条重试（保存是幂等的）
+     * @return 与 batch 顺序一致的 fingerprintId 列表，保存失败的位置为 null
+     */
+    public List<String> saveTrackingDataBatch(List<TrackingData> batch) {
+        long roundTrips = RedisRoundTrips.current();
+        List<List<String>> indexNames = new ArrayList<>(batch.size());
+        for (TrackingData data : batch) {
+            indexNames.add(prepareForSave(data));
+        }
+        
+        List<String> fingerprintIds = new ArrayList<>(batch.size());
+        try {
+            trackingStore.saveBatch(batch, indexNames);
+            for (TrackingData data : batch) {
+                fingerprintIds.add(data.getFingerprintId());
+                matchJournal.save(data);
+            }
+        } catch (RuntimeException e) {
+            log.warn("批量保存失败，逐条重试: size={}, error={}", batch.size(), e.getMessage());
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    trackingStore.save(batch.get(i), indexNames.get(i));
+                    fingerprintIds.add(batch.get(i).getFingerprintId());
+                    matchJournal.save(batch.get(i));
+                } catch (RuntimeException retryError) {
+                    log.error("保存追踪数据失败: fingerprintId={}", batch.get(i).getFingerprintId(), retryError);
+                    fingerprintIds.add(null);
+                }
+            }
+        }
+        saveBatchRoundTrips.record(RedisRoundTrips.current() - roundTrips);
+        log.debug("批量保存追踪数据: size={}", batch.size());
+        return fingerprintIds;
+    }
+    
+    /**
+     * 补全过期时间和时间戳，计算 fingerprintId 与特征向量
+     * @return 候选索引名
+     */
+    List<String> prepareForSave(TrackingData data) {
         long now = System.currentTimeMillis();
         
         // 设置过期时间
         if (data.getExpiresAt() == null) {
-            data.setExpiresAt(now + DEFAULT_EXPIRE_HOURS * 60 * 60 * 1000);
+            data.setExpiresAt(now + trackingProperties.getExpireHours() * 60 * 60 * 1000);
         }
         
         if (data.getTimestamp() == null) {
@@ -45,114 +238,449 @@ public class TrackingService {
         // 重要：使用后端统一的算法重新计算 fingerprintId
         // 确保无论前端（Web/Flutter）发送什么格式，后端都用统一算法计算
         // 这样保存和匹配时使用的 fingerprintId 完全一致
-        String fingerprintId = fingerprintService.generateFingerprintId(data.getFingerprint());
+        String fingerprintId = fingerprintStage.record(() -> fingerprintService.generateFingerprintId(data.getFingerprint()));
         data.setFingerprintId(fingerprintId);
+        // 特征向量只在保存时计算一次，模糊匹配时直接比较
+        data.setFeatures(fingerprintService.extractFeatures(data.getFingerprint()));
         
-        String key = REDIS_KEY_PREFIX + fingerprintId;
-        
-        // 保存到 Redis，设置过期时间
-        long expireSeconds = (data.getExpiresAt() - now) / 1000;
-        redisTemplate.opsForValue().set(key, data, expireSeconds, TimeUnit.SECONDS);
-        
-        // 创建索引用于模糊匹配（基于关键指纹特征）
-        String indexKey = buildIndexKey(data.getFingerprint());
-        redisTemplate.opsForSet().add(REDIS_INDEX_PREFIX + indexKey, data.getFingerprintId());
-        redisTemplate.expire(REDIS_INDEX_PREFIX + indexKey, expireSeconds, TimeUnit.SECONDS);
-        
-        log.info("保存追踪数据: fingerprintId={}, params={}", data.getFingerprintId(), data.getParams());
-        
-        return data.getFingerprintId();
+        // 写入 Redis 前加入负查找过滤器，写入完成后的匹配不会被误判为不存在
+        List<String> indexNames = indexNames(data.getFingerprint(), data.getClientIp());
+        lookupFilter.add(fingerprintId, indexNames, data.getExpiresAt());
+        return indexNames;
     }
     
     /**
      * 获取追踪数据（精确匹配）
      */
     public TrackingData getTrackingData(String fingerprintId) {
-        String key = REDIS_KEY_PREFIX + fingerprintId;
-        TrackingData data = (TrackingData) redisTemplate.opsForValue().get(key);
-        
-        if (data != null && data.getExpiresAt() > System.currentTimeMillis()) {
-            return data;
-        }
-        
-        return null;
+        return getTrackingDataBatch(Collections.singletonList(fingerprintId)).get(0);
+    }
+    
+    /**
+     * 批量获取追踪数据
+     * @return 与 fingerprintIds 顺序一致的列表，不存在或已过期的位置为 null
+     */
+    public List<TrackingData> getTrackingDataBatch(List<String> fingerprintIds) {
+        return trackingStore.get(fingerprintIds);
+    }
+    
+    /**
+     * 原子认领追踪数据
+     * 检查是否已被匹配、递增匹配次数并返回数据，由存储引擎原子完成，
+     * 并发请求不会重复认领同一条数据
+     * @return 认领成功的数据；数据不存在、已过期或已被认领时返回 null
+     */
+    public TrackingData claimTrackingData(String fingerprintId) {
+        return trackingStore.claim(fingerprintId);
     }
     
     /**
      * 通过设备指纹匹配追踪数据
      */
     public TrackingData matchTrackingData(DeviceFingerprint fingerprint) {
-        // 1. 先尝试精确匹配
-        String fingerprintId = fingerprintService.generateFingerprintId(fingerprint);
-        TrackingData data = getTrackingData(fingerprintId);
-        log.info("精确匹配: fingerprintId={}, data={}", fingerprintId, data);
+        return matchTrackingData(fingerprint, null);
+    }
+    
+    /**
+     * 通过设备指纹匹配追踪数据，客户端IP用于子网候选索引和候选排序
+     */
+    public TrackingData matchTrackingData(DeviceFingerprint fingerprint, String clientIp) {
+        long roundTrips = RedisRoundTrips.current();
+        TrackingData data = match(fingerprint, clientIp);
+        matchRoundTrips.record(RedisRoundTrips.current() - roundTrips);
+        return data;
+    }
+    
+    private TrackingData match(DeviceFingerprint fingerprint, String clientIp) {
+        // 1. 先尝试精确匹配（直接原子认领）
+        // 负查找过滤器判断为不存在的指纹ID不再认领
+        String fingerprintId = fingerprintStage.record(() -> fingerprintService.generateFingerprintId(fingerprint));
+        boolean exactSkipped = !lookupFilter.mightContainRecord(fingerprintId);
+        TrackingData data = null;
+        if (exactSkipped) {
+            lookupFilter.skipped(TrackingLookupFilter.EXACT, 1);
+        } else {
+            data = exactLookupStage.record(() -> claimTrackingData(fingerprintId));
+        }
 
-        if (data != null && !data.getMatched() && data.getMatchCount() < 3) {
-            // 匹配成功，标记为已使用
-            data.setMatched(true);
-            data.setMatchCount(data.getMatchCount() + 1);
-            saveTrackingData(data);
-            
-            log.info("精确匹配成功: fingerprintId={}, params={}", fingerprintId, data.getParams());
+        // 哈希算法切换期间，已保存的数据可能仍使用 md5 指纹ID
+        TrackingProperties.Fingerprint fingerprintConfig = trackingProperties.getFingerprint();
+        if (data == null && fingerprintConfig.isLegacyIdFallback()
+                && fingerprintConfig.getIdHash() != TrackingProperties.IdHash.MD5) {
+            String legacyId = fingerprintStage.record(
+                    () -> fingerprintService.generateFingerprintId(fingerprint, TrackingProperties.IdHash.MD5));
+            if (lookupFilter.mightContainRecord(legacyId)) {
+                exactSkipped = false;
+                data = exactLookupStage.record(() -> claimTrackingData(legacyId));
+            } else {
+                lookupFilter.skipped(TrackingLookupFilter.EXACT, 1);
+            }
+        }
+
+        if (data != null) {
+            exactMatches.increment();
+            matchJournal.exactMatch(fingerprintId, clientIp, data);
+            log.debug("精确匹配成功: fingerprintId={}", data.getFingerprintId());
             return data;
         }
         
         // 2. 如果精确匹配失败，尝试模糊匹配
-        return fuzzyMatch(fingerprint);
+        data = fuzzyMatch(fingerprintId, fingerprint, clientIp, exactSkipped);
+        (data != null ? fuzzyMatches : unmatched).increment();
+        return data;
     }
     
     /**
      * 模糊匹配
+     * @param fingerprintId 目标指纹的指纹ID（只用于事件日志）
+     * @param exactSkipped 精确认领是否全部被负查找过滤器跳过（未访问存储）
      */
-    private TrackingData fuzzyMatch(DeviceFingerprint targetFingerprint) {
-        String indexKey = buildIndexKey(targetFingerprint);
-        Set<Object> candidateIds = redisTemplate.opsForSet().members(REDIS_INDEX_PREFIX + indexKey);
-        log.info("模糊匹配成功: candidateIds={}, indexKey={}", candidateIds, indexKey);
+    private TrackingData fuzzyMatch(String fingerprintId, DeviceFingerprint targetFingerprint, String clientIp,
+                                    boolean exactSkipped) {
+        // 按全部阻塞键及IP子网查找（升级期间另外查找旧版本写入的索引）；负查找过滤器判断为不存在的索引不再读取
+        List<String> indexNames = lookupIndexNames(targetFingerprint, clientIp);
+        if (indexNames.isEmpty()) {
+            lookupFilter.skipped(TrackingLookupFilter.FUZZY, 1);
+            if (exactSkipped) {
+                lookupFilter.skipped(TrackingLookupFilter.MATCH, 1);
+            }
+            matchJournal.fuzzyMatch(fingerprintId, clientIp, null, null, null, 0);
+            return null;
+        }
+        TrackingStore.CandidateLookup lookup = indexReadStage.record(
+                () -> trackingStore.findCandidates(indexNames, trackingProperties.getFuzzy().getMaxCandidates()));
+        List<String> candidateIds = mergeCandidates(lookup.total(0, indexNames.size()), lookup.members());
+        log.debug("模糊匹配: candidates={}, indexNames={}", candidateIds.size(), indexNames);
 
-        if (candidateIds == null || candidateIds.isEmpty()) {
+        if (candidateIds.isEmpty()) {
+            matchJournal.fuzzyMatch(fingerprintId, clientIp, null, null, null, 0);
             return null;
         }
         
-        TrackingData bestMatch = null;
-        double highestScore = 0.0;
-        double threshold = 0.8; // 相似度阈值 80%
+        // 一次取回全部候选，避免逐个读取；引擎可以只读取打分需要的字段
+        List<TrackingData> candidates = candidateFetchStage.record(() -> trackingStore.getForScoring(candidateIds));
+        List<ScoredCandidate> qualified = scoringStage.record(
+                () -> rankCandidates(targetFingerprint, clientIp, candidateIds, candidates));
+        
+        // 按排序分从高到低依次认领；候选可能已被并发请求认领，此时尝试下一个
+        FuzzyClaim claim = claimStage.record(() -> claimFirst(qualified, 0));
+        journalFuzzyMatch(fingerprintId, clientIp, claim, candidateIds.size());
+        return claim != null ? claim.data() : null;
+    }
+    
+    /**
+     * 批量匹配：精确认领、候选查找、候选读取和首选候选认领各通过一次存储访问完成，
+     * 首选候选被抢先认领的条目再逐个尝试其余候选
+     * @param clientIps 与 fingerprints 顺序一致的客户端IP，可以为 null
+     * @return 与 fingerprints 顺序一致的列表，未匹配的位置为 null
+     */
+    public List<TrackingData> matchTrackingDataBatch(List<DeviceFingerprint> fingerprints, List<String> clientIps) {
+        long roundTrips = RedisRoundTrips.current();
+        List<TrackingData> result = matchBatch(fingerprints, clientIps);
+        matchBatchRoundTrips.record(RedisRoundTrips.current() - roundTrips);
+        return result;
+    }
+    
+    private List<TrackingData> matchBatch(List<DeviceFingerprint> fingerprints, List<String> clientIps) {
+        int size = fingerprints.size();
+        List<String> fingerprintIds = new ArrayList<>(size);
+        for (DeviceFingerprint fingerprint : fingerprints) {
+            fingerprintIds.add(fingerprintService.generateFingerprintId(fingerprint));
+        }
+        boolean[] lookedUp = new boolean[size];
+        List<TrackingData> result = claimPossible(fingerprintIds, allPositions(size), lookedUp);
+        
+        // 哈希算法切换期间，已保存的数据可能仍使用 md5 指纹ID
+        TrackingProperties.Fingerprint fingerprintConfig = trackingProperties.getFingerprint();
+        if (fingerprintConfig.isLegacyIdFallback() && fingerprintConfig.getIdHash() != TrackingProperties.IdHash.MD5) {
+            List<Integer> misses = missingPositions(result);
+            List<String> legacyIds = new ArrayList<>(misses.size());
+            for (int position : misses) {
+                legacyIds.add(fingerprintService.generateFingerprintId(fingerprints.get(position), TrackingProperties.IdHash.MD5));
+            }
+            fill(result, misses, claimPossible(legacyIds, misses, lookedUp));
+        }
+        
+        // 未精确匹配的条目一起查找候选：各条目的索引名依次拼接，结果再按条目切分
+        List<Integer> misses = missingPositions(result);
+        exactMatches.increment(size - misses.size());
+        for (int i = 0; i < size; i++) {
+            if (result.get(i) != null) {
+                matchJournal.exactMatch(fingerprintIds.get(i), clientIps.get(i), result.get(i));
+            }
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+        List<String> indexNames = new ArrayList<>();
+        int[] indexOffsets = new int[misses.size() + 1];
+        for (int j = 0; j < misses.size(); j++) {
+            int position = misses.get(j);
+            List<String> possible = lookupIndexNames(fingerprints.get(position), clientIps.get(position));
+            if (possible.isEmpty()) {
+                lookupFilter.skipped(TrackingLookupFilter.FUZZY, 1);
+                if (!lookedUp[position]) {
+                    lookupFilter.skipped(TrackingLookupFilter.MATCH, 1);
+                }
+            }
+            indexNames.addAll(possible);
+            indexOffsets[j + 1] = indexNames.size();
+        }
+        
+        List<List<String>> candidateIds = new ArrayList<>(misses.size());
+        Set<String> allCandidateIds = new LinkedHashSet<>();
+        if (indexNames.isEmpty()) {
+            // 全部条目的候选索引都被负查找过滤器排除
+            candidateIds.addAll(Collections.nCopies(misses.size(), List.of()));
+        } else {
+            TrackingStore.CandidateLookup lookup =
+                    trackingStore.findCandidates(indexNames, trackingProperties.getFuzzy().getMaxCandidates());
+            for (int j = 0; j < misses.size(); j++) {
+                List<String> ids = mergeCandidates(lookup.total(indexOffsets[j], indexOffsets[j + 1]),
+                        lookup.members().subList(indexOffsets[j], indexOffsets[j + 1]));
+                candidateIds.add(ids);
+                allCandidateIds.addAll(ids);
+            }
+        }
+        if (allCandidateIds.isEmpty()) {
+            unmatched.increment(misses.size());
+            for (int position : misses) {
+                matchJournal.fuzzyMatch(fingerprintIds.get(position), clientIps.get(position), null, null, null, 0);
+            }
+            return result;
+        }
         
-        for (Object idObj : candidateIds) {
-            String fingerprintId = (String) idObj;
-            TrackingData candidate = getTrackingData(fingerprintId);
-            log.info("模糊匹配成功: fingerprintId={}, candidate={}", fingerprintId, candidate);
+        // 所有条目的候选一次读取后各自打分
+        List<String> uniqueIds = new ArrayList<>(allCandidateIds);
+        List<TrackingData> loaded = trackingStore.getForScoring(uniqueIds);
+        Map<String, TrackingData> candidatesById = new HashMap<>(uniqueIds.size() * 2);
+        for (int i = 0; i < uniqueIds.size(); i++) {
+            candidatesById.put(uniqueIds.get(i), loaded.get(i));
+        }
+        List<List<ScoredCandidate>> ranked = new ArrayList<>(misses.size());
+        List<String> firstChoices = new ArrayList<>();
+        List<Integer> firstChoicePositions = new ArrayList<>();
+        for (int j = 0; j < misses.size(); j++) {
+            int position = misses.get(j);
+            List<String> ids = candidateIds.get(j);
+            List<TrackingData> candidates = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                candidates.add(candidatesById.get(id));
+            }
+            List<ScoredCandidate> qualified = rankCandidates(fingerprints.get(position), clientIps.get(position), ids, candidates);
+            ranked.add(qualified);
+            if (!qualified.isEmpty()) {
+                firstChoices.add(qualified.get(0).fingerprintId());
+                firstChoicePositions.add(j);
+            }
+        }
+        
+        // 各条目的首选候选一起认领；同批中的其他条目或并发请求可能抢先认领，此时继续尝试后面的候选
+        List<TrackingData> firstClaims = trackingStore.claimBatch(firstChoices);
+        FuzzyClaim[] claims = new FuzzyClaim[misses.size()];
+        for (int k = 0; k < firstChoicePositions.size(); k++) {
+            int j = firstChoicePositions.get(k);
+            TrackingData claimed = firstClaims.get(k);
+            claims[j] = claimed != null ? new FuzzyClaim(ranked.get(j).get(0), claimed) : claimFirst(ranked.get(j), 1);
+        }
+        int fuzzy = 0;
+        for (int j = 0; j < misses.size(); j++) {
+            int position = misses.get(j);
+            if (claims[j] != null) {
+                result.set(position, claims[j].data());
+                fuzzy++;
+            }
+            journalFuzzyMatch(fingerprintIds.get(position), clientIps.get(position), claims[j], candidateIds.get(j).size());
+        }
+        fuzzyMatches.increment(fuzzy);
+        unmatched.increment(misses.size() - fuzzy);
+        log.debug("批量匹配: size={}, exactMisses={}, fuzzyMatched={}", size, misses.size(), fuzzy);
+        return result;
+    }
+    
+    /**
+     * 从 from 开始按顺序认领第一个仍可认领的候选
+     * @return 认领成功的候选及数据，全部认领失败时返回 null
+     */
+    private FuzzyClaim claimFirst(List<ScoredCandidate> qualified, int from) {
+        for (ScoredCandidate candidate : qualified.subList(Math.min(from, qualified.size()), qualified.size())) {
+            TrackingData claimed = claimTrackingData(candidate.fingerprintId());
+            if (claimed != null) {
+                log.debug("模糊匹配成功: fingerprintId={}, score={}, rank={}",
+                        claimed.getFingerprintId(), candidate.score(), candidate.rank());
+                return new FuzzyClaim(candidate, claimed);
+            }
+        }
+        return null;
+    }
+    
+    private void journalFuzzyMatch(String fingerprintId, String clientIp, FuzzyClaim claim, int candidates) {
+        if (claim != null) {
+            matchJournal.fuzzyMatch(fingerprintId, clientIp, claim.data(),
+                    claim.candidate().score(), claim.candidate().rank(), candidates);
+        } else {
+            matchJournal.fuzzyMatch(fingerprintId, clientIp, null, null, null, candidates);
+        }
+    }
+    
+    /**
+     * 对候选打分，返回达到相似度阈值的候选（按排序分从高到低）
+     * @param candidates 与 candidateIds 顺序一致的候选数据，不存在的位置为 null
+     */
+    List<ScoredCandidate> rankCandidates(DeviceFingerprint targetFingerprint, String clientIp,
+                                                 List<String> candidateIds, List<TrackingData> candidates) {
+        double threshold = trackingProperties.getSimilarityThreshold();
+        FingerprintFeatures targetFeatures = fingerprintService.extractFeatures(targetFingerprint);
+        String targetSubnet = IpSubnets.subnet(clientIp);
+        double subnetBoost = trackingProperties.getFuzzy().getIpSubnetBoost();
+        List<ScoredCandidate> qualified = new ArrayList<>();
+        
+        for (int i = 0; i < candidateIds.size(); i++) {
+            String fingerprintId = candidateIds.get(i);
+            TrackingData candidate = candidates.get(i);
 
-            if (candidate == null || candidate.getMatched() || candidate.getMatchCount() >= 3) {
+            if (candidate == null || candidate.getMatched()) {
                 continue;
             }
             
-            double score = fingerprintService.calculateSimilarity(
-                targetFingerprint, 
-                candidate.getFingerprint()
-            );
+            // 没有特征向量的旧数据按指纹现算
+            FingerprintFeatures features = candidate.getFeatures() != null ? candidate.getFeatures()
+                    : candidate.getFingerprint() != null ? fingerprintService.extractFeatures(candidate.getFingerprint())
+                    : null;
+            double score = fingerprintService.calculateSimilarity(targetFeatures, features, threshold);
             
-            if (score > highestScore && score >= threshold) {
-                highestScore = score;
-                bestMatch = candidate;
+            if (score >= threshold) {
+                // 同一子网只影响排序，不影响是否达到阈值（点击与安装常在不同网络）
+                boolean sameSubnet = targetSubnet != null && targetSubnet.equals(IpSubnets.subnet(candidate.getClientIp()));
+                qualified.add(new ScoredCandidate(fingerprintId, score, sameSubnet ? score + subnetBoost : score));
             }
         }
         
-        if (bestMatch != null) {
-            // 匹配成功，标记为已使用
-            bestMatch.setMatched(true);
-            bestMatch.setMatchCount(bestMatch.getMatchCount() + 1);
-            saveTrackingData(bestMatch);
-            
-            log.info("模糊匹配成功: fingerprintId={}, score={}, params={}", 
-                bestMatch.getFingerprintId(), highestScore, bestMatch.getParams());
+        qualified.sort(Comparator.comparingDouble(ScoredCandidate::rank).reversed());
+        return qualified;
+    }
+    
+    /**
+     * 合并各索引的候选 ID：按索引顺序轮流取出、去重，合计不超过 tracking.fuzzy.max-candidates 个
+     * @param total 各索引未过期的候选数之和（用于指标）
+     * @param indexMembers 每个索引中最新的候选 ID
+     */
+    List<String> mergeCandidates(long total, List<List<String>> indexMembers) {
+        int maxCandidates = trackingProperties.getFuzzy().getMaxCandidates();
+        List<Iterator<String>> members = new ArrayList<>(indexMembers.size());
+        for (List<String> ids : indexMembers) {
+            if (!ids.isEmpty()) {
+                members.add(ids.iterator());
+            }
         }
-        log.info("模糊匹配成功: fingerprintId={}, params={}", targetFingerprint, bestMatch);
-
-        return bestMatch;
+        
+        // 轮流取各索引中最新的成员，避免成员多的索引挤掉其他索引的候选
+        Set<String> candidateIds = new LinkedHashSet<>();
+        while (!members.isEmpty() && candidateIds.size() < maxCandidates) {
+            Iterator<Iterator<String>> it = members.iterator();
+            while (it.hasNext() && candidateIds.size() < maxCandidates) {
+                Iterator<String> ids = it.next();
+                candidateIds.add(ids.next());
+                if (!ids.hasNext()) {
+                    it.remove();
+                }
+            }
+        }
+        
+        candidateSetSize.record(total);
+        candidatesScanned.record(candidateIds.size());
+        return new ArrayList<>(candidateIds);
+    }
+    
+    /**
+     * 批量认领，负查找过滤器判断为不存在的指纹ID不访问存储
+     * @param positions 各指纹ID对应的条目位置，实际认领的条目在 lookedUp 中标记
+     * @return 与 fingerprintIds 顺序一致的列表
+     */
+    private List<TrackingData> claimPossible(List<String> fingerprintIds, List<Integer> positions, boolean[] lookedUp) {
+        List<TrackingData> result = new ArrayList<>(Collections.nCopies(fingerprintIds.size(), null));
+        List<Integer> possiblePositions = new ArrayList<>(fingerprintIds.size());
+        List<String> possibleIds = new ArrayList<>(fingerprintIds.size());
+        for (int i = 0; i < fingerprintIds.size(); i++) {
+            if (lookupFilter.mightContainRecord(fingerprintIds.get(i))) {
+                possiblePositions.add(i);
+                possibleIds.add(fingerprintIds.get(i));
+                lookedUp[positions.get(i)] = true;
+            }
+        }
+        if (possibleIds.size() < fingerprintIds.size()) {
+            lookupFilter.skipped(TrackingLookupFilter.EXACT, fingerprintIds.size() - possibleIds.size());
+        }
+        if (!possibleIds.isEmpty()) {
+            fill(result, possiblePositions, trackingStore.claimBatch(possibleIds));
+        }
+        return result;
+    }
+    
+    private static List<Integer> allPositions(int size) {
+        List<Integer> positions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            positions.add(i);
+        }
+        return positions;
+    }
+    
+    private static List<Integer> missingPositions(List<TrackingData> result) {
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < result.size(); i++) {
+            if (result.get(i) == null) {
+                positions.add(i);
+            }
+        }
+        return positions;
+    }
+    
+    private static void fill(List<TrackingData> result, List<Integer> positions, List<TrackingData> values) {
+        for (int j = 0; j < positions.size(); j++) {
+            if (values.get(j) != null) {
+                result.set(positions.get(j), values.get(j));
+            }
+        }
+    }
+    
+    /**
+     * 模糊匹配候选及其相似度、排序分（相似度加上同一子网的加分）
+     */
+    record ScoredCandidate(String fingerprintId, double score, double rank) {
+    }
+    
+    /**
+     * 模糊匹配认领成功的候选及认领到的数据
+     */
+    private record FuzzyClaim(ScoredCandidate candidate, TrackingData data) {
+    }
+    
+    /**
+     * 模糊匹配候选索引名：每个阻塞键一个，客户端IP可索引时再加一个子网索引
+     */
+    private List<String> indexNames(DeviceFingerprint fingerprint, String clientIp) {
+        List<String> indexNames = new ArrayList<>(fingerprintService.blockingKeys(fingerprint));
+        String subnet = trackingProperties.getFuzzy().isIpSubnetIndex() ? IpSubnets.subnet(clientIp) : null;
+        if (subnet != null) {
+            indexNames.add(IP_INDEX_PREFIX + subnet);
+        }
+        return indexNames;
+    }
+    
+    /**
+     * 模糊匹配需要读取的索引名：写入时使用的索引中负查找过滤器判断可能存在的；
+     * 开启 legacy-index-lookup 时加上旧版本写入的索引（过滤器不记录旧版本的索引，不经过过滤）
+     */
+    List<String> lookupIndexNames(DeviceFingerprint fingerprint, String clientIp) {
+        List<String> indexNames = new ArrayList<>(lookupFilter.possibleIndexes(indexNames(fingerprint, clientIp)));
+        if (trackingProperties.getFuzzy().isLegacyIndexLookup()) {
+            indexNames.add(TrackingStore.LEGACY_INDEX_PREFIX + buildIndexKey(fingerprint));
+        }
+        return indexNames;
     }
     
     /**
-     * 构建索引键（用于快速查找候选数据）
+     * 旧版本的索引键后缀（原始字段值，只用于查找）
      */
     private String buildIndexKey(DeviceFingerprint fingerprint) {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,193 @@
+package com.openinstall.service;
+
+import com.openinstall.config.TrackingProperties;
+import com.openinstall.model.TrackingData;
+import com.openinstall.store.RedisRoundTrips;
+import com.openinstall.store.TrackingStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 保存请求的微批写入
+ *
+ * 启用后保存请求先进入有界队列，由后台线程凑满 batch-size 条或等待 max-delay 后整批写入存储引擎
+ * （Redis 引擎为一次往返），写入成功后才完成各请求的 future，因此响应语义与同步保存一致。
+ * 队列满时请求线程最多等待 enqueue-timeout，仍无空位则拒绝，避免突发流量无限堆积。
+ */
+@Slf4j
+@Component
+public class TrackingWriteBehind {
+
+    @Autowired
+    private TrackingStore trackingStore;
+
+    @Autowired
+    private TrackingProperties trackingProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private BlockingQueue<PendingSave> queue;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private DistributionSummary batchSize;
+    private Timer flushLatency;
+    private Counter rejected;
+
+    @PostConstruct
+    public void init() {
+        TrackingProperties.WriteBehind config = trackingProperties.getWriteBehind();
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        batchSize = DistributionSummary.builder("tracking.write-behind.batch.size")
+                .description("每次写入的保存请求数")
+                .register(meterRegistry);
+        flushLatency = Timer.builder("tracking.write-behind.flush")
+                .description("整批写入存储引擎的耗时")
+                .register(meterRegistry);
+        rejected = Counter.builder("tracking.write-behind.rejected")
+                .description("队列已满被拒绝的保存请求数")
+                .register(meterRegistry);
+        Gauge.builder("tracking.write-behind.queue.depth", queue, BlockingQueue::size)
+                .description("等待写入的保存请求数")
+                .register(meterRegistry);
+
+        running = true;
+        flusher = new Thread(this::run, "tracking-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("保存请求微批写入已启用: batchSize={}, maxDelay={}, queueCapacity={}",
+                config.getBatchSize(), config.getMaxDelay(), config.getQueueCapacity());
+    }
+
+    /**
+     * 停止接收新请求，写完队列中剩余的请求后退出
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+        PendingSave pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future().completeExceptionally(new RejectedExecutionException("服务正在关闭"));
+        }
+    }
+
+    public boolean isEnabled() {
+        return queue != null;
+    }
+
+    /**
+     * 提交保存请求
+     * @return 数据写入存储引擎后完成的 future，结果为整批写入的 Redis 往返次数；队列已满时以 RejectedExecutionException 失败
+     */
+    public CompletableFuture<Long> submit(TrackingData data, List<String> indexNames) {
+        PendingSave pending = new PendingSave(data, indexNames, new CompletableFuture<>());
+        try {
+            long timeoutNanos = trackingProperties.getWriteBehind().getEnqueueTimeout().toNanos();
+            if (!running || !queue.offer(pending, timeoutNanos, TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                pending.future().completeExceptionally(new RejectedExecutionException("保存队列已满"));
+            } else if (!running && queue.remove(pending)) {
+                // 等待入队期间开始关闭：后台线程可能已经退出、剩余请求也已清空，仍在队列中的请求由提交方完成；
+                // 已被取走的请求由后台线程写入或由 shutdown 拒绝
+                pending.future().completeExceptionally(new RejectedExecutionException("服务正在关闭"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future().completeExceptionally(e);
+        }
+        return pending.future();
+    }
+
+    private void run() {
+        TrackingProperties.WriteBehind config = trackingProperties.getWriteBehind();
+        int maxBatch = config.getBatchSize();
+        long maxDelayNanos = config.getMaxDelay().toNanos();
+        List<PendingSave> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingSave first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                // 从第一条请求开始计时，凑满一批或到达最大等待时间即写入
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatch) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatch || remaining <= 0) {
+                        break;
+                    }
+                    PendingSave next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingSave> batch) {
+        List<TrackingData> data = new ArrayList<>(batch.size());
+        List<List<String>> indexNames = new ArrayList<>(batch.size());
+        for (PendingSave pending : batch) {
+            data.add(pending.data());
+            indexNames.add(pending.indexNames());
+        }
+
+        batchSize.record(batch.size());
+        long start = System.nanoTime();
+        long roundTrips = RedisRoundTrips.current();
+        try {
+            trackingStore.saveBatch(data, indexNames);
+            long batchRoundTrips = RedisRoundTrips.current() - roundTrips;
+            for (PendingSave pending : batch) {
+                pending.future().complete(batchRoundTrips);
+            }
+        } catch (RuntimeException e) {
+            // 存储引擎已处理可以安全重试的错误（Redis 脚本未加载）；其余错误（连接失败、超时等）逐条重试
+            // 只会让每个请求再等一次同样的失败，整批直接返回错误
+            log.warn("批量保存失败: size={}, error={}", batch.size(), e.getMessage());
+            for (PendingSave pending : batch) {
+                pending.future().completeExceptionally(e);
+            }
+        } finally {
+            flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private record PendingSave(TrackingData data, List<String> indexNames, CompletableFuture<Long> future) {
+    }
+}
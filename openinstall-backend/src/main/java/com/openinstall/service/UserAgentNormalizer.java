@@ -0,0 +1,360 @@
+package com.openinstall.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.openinstall.config.TrackingProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+/**
+ * User-Agent 标准化
+ *
+ * 提取操作系统和版本：
+ * Web 端: "Mozilla/5.0 (Windows NT 10.0; Win64; x64)..." -> "Windows 10"
+ * Flutter 端: "Android/13 Pixel 6" -> "Android/13"
+ *
+ * 所有关键词编译成一个多模式自动机（Aho-Corasick），一次扫描 UA 即可得到全部命中的关键词，
+ * 扫描时按 ASCII 忽略大小写，不再生成小写副本；实际流量中不同的 UA 很少，结果再按原始 UA 缓存。
+ */
+@Component
+public class UserAgentNormalizer {
+
+    /**
+     * 超过该长度的 UA 不缓存，避免异常请求占用缓存
+     */
+    private static final int MAX_CACHED_LENGTH = 512;
+
+    /**
+     * 无法识别时保留的原值长度
+     */
+    private static final int MAX_UNKNOWN_LENGTH = 50;
+
+    private static final int WINDOWS = 0;
+    private static final int WINDOWS_NT_10 = 1;
+    private static final int WINDOWS_10 = 2;
+    private static final int WINDOWS_NT_6_3 = 3;
+    private static final int WINDOWS_8_1 = 4;
+    private static final int WINDOWS_NT_6_1 = 5;
+    private static final int WINDOWS_7 = 6;
+    private static final int MAC_OS_X = 7;
+    private static final int MAC_OS_X_10 = 8;
+    private static final int MACINTOSH = 9;
+    private static final int LINUX = 10;
+    private static final int ANDROID = 11;
+    private static final int IPHONE = 12;
+    private static final int IPAD = 13;
+    private static final int IPOD = 14;
+    private static final int ANDROID_VERSION = 15;
+    private static final int IPHONE_OS_VERSION = 16;
+    private static final int CPU_OS_VERSION = 17;
+
+    /**
+     * 关键词（小写），下标即上面的常量；*_VERSION 关键词之后紧跟主版本号
+     */
+    private static final String[] KEYWORDS = {
+            "windows", "windows nt 10.0", "windows 10", "windows nt 6.3", "windows 8.1",
+            "windows nt 6.1", "windows 7", "mac os x", "mac os x 10", "macintosh",
+            "linux", "android", "iphone", "ipad", "ipod",
+            "android ", "iphone os ", "cpu os "
+    };
+
+    private static final KeywordAutomaton AUTOMATON = new KeywordAutomaton(KEYWORDS);
+
+    @Autowired
+    private TrackingProperties trackingProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private boolean extractMobileVersion;
+
+    private Cache<String, String> cache;
+
+    @PostConstruct
+    public void init() {
+        TrackingProperties.Fingerprint config = trackingProperties.getFingerprint();
+        extractMobileVersion = config.isExtractMobileVersion();
+        if (config.getUserAgentCacheSize() <= 0) {
+            return;
+        }
+
+        cache = Caffeine.newBuilder()
+                .maximumSize(config.getUserAgentCacheSize())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "tracking.user-agent");
+        Gauge.builder("tracking.user-agent.cache.hit-ratio", cache, UserAgentNormalizer::hitRatio)
+                .description("User-Agent 标准化缓存命中率")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 标准化 userAgent 字段
+     */
+    public String normalize(String userAgent) {
+        if (userAgent == null || userAgent.isEmpty()) {
+            return "";
+        }
+        if (cache == null || userAgent.length() > MAX_CACHED_LENGTH) {
+            return compute(userAgent, extractMobileVersion);
+        }
+        return cache.get(userAgent, ua -> compute(ua, extractMobileVersion));
+    }
+
+    /**
+     * 尚无请求时为 0（Caffeine 的 hitRate() 此时返回 1）
+     */
+    private static double hitRatio(Cache<String, String> cache) {
+        CacheStats stats = cache.stats();
+        return stats.requestCount() == 0 ? 0 : stats.hitRate();
+    }
+
+    static String compute(String userAgent, boolean extractMobileVersion) {
+        // 如果是 Flutter 端的格式（"Android/13" 或 "iOS/16"），直接返回
+        if (userAgent.startsWith("Android/") || userAgent.startsWith("iOS/")) {
+            // 提取 "Android/13" 或 "iOS/16"
+            int spaceIndex = userAgent.indexOf(' ');
+            if (spaceIndex > 0) {
+                return userAgent.substring(0, spaceIndex);
+            }
+            return userAgent;
+        }
+
+        // 如果是 Web 端的格式，一次扫描提取全部关键词
+        ScanResult scan = AUTOMATON.scan(userAgent);
+
+        // 提取 Android/iOS 主版本号时，移动设备优先于 Linux/macOS 判断
+        // （Android 浏览器 UA 含 "Linux"，iOS 浏览器 UA 含 "Mac OS X"）
+        if (extractMobileVersion) {
+            if (scan.has(ANDROID)) {
+                return scan.androidVersion >= 0 ? "Android/" + scan.androidVersion : "Android";
+            }
+            if (scan.has(IPHONE) || scan.has(IPAD) || scan.has(IPOD)) {
+                return scan.iosVersion >= 0 ? "iOS/" + scan.iosVersion : "iOS";
+            }
+        }
+
+        // 提取 Windows 版本
+        if (scan.has(WINDOWS)) {
+            if (scan.has(WINDOWS_NT_10) || scan.has(WINDOWS_10)) {
+                return "Windows 10";
+            }
+            if (scan.has(WINDOWS_NT_6_3) || scan.has(WINDOWS_8_1)) {
+                return "Windows 8.1";
+            }
+            if (scan.has(WINDOWS_NT_6_1) || scan.has(WINDOWS_7)) {
+                return "Windows 7";
+            }
+            return "Windows";
+        }
+
+        // 提取 macOS 版本
+        if (scan.has(MAC_OS_X) || scan.has(MACINTOSH)) {
+            if (scan.has(MAC_OS_X_10)) {
+                return "macOS 10";
+            }
+            return "macOS";
+        }
+
+        // 提取 Linux
+        if (scan.has(LINUX)) {
+            return "Linux";
+        }
+
+        // 提取 Android（从 Web 端）
+        if (scan.has(ANDROID)) {
+            return "Android";
+        }
+
+        // 提取 iOS（从 Web 端）
+        if (scan.has(IPHONE) || scan.has(IPAD) || scan.has(IPOD)) {
+            return "iOS";
+        }
+
+        // 如果无法识别，返回原值的前 50 个字符
+        return userAgent.length() > MAX_UNKNOWN_LENGTH ? userAgent.substring(0, MAX_UNKNOWN_LENGTH) : userAgent;
+    }
+
+    /**
+     * 一次扫描的结果：命中的关键词位图和 Android/iOS 主版本号（-1 表示未找到）
+     */
+    private static final class ScanResult {
+
+        private final int matched;
+        private final int androidVersion;
+        private final int iosVersion;
+
+        ScanResult(int matched, int androidVersion, int iosVersion) {
+            this.matched = matched;
+            this.androidVersion = androidVersion;
+            this.iosVersion = iosVersion;
+        }
+
+        boolean has(int keyword) {
+            return (matched & (1 << keyword)) != 0;
+        }
+    }
+
+    /**
+     * 多关键词自动机：按 ASCII 字符类编码的确定性状态转移表，每个输入字符一次查表
+     */
+    private static final class KeywordAutomaton {
+
+        /**
+         * 主版本号最多读取的位数
+         */
+        private static final int MAX_VERSION_DIGITS = 3;
+
+        /**
+         * ASCII 字符到字符类的映射（大写字母与对应小写字母同类），0 表示不出现在任何关键词中的字符
+         */
+        private final byte[] charClass = new byte[128];
+        private final int classCount;
+
+        /**
+         * transitions[state * classCount + class] = (下一状态 * classCount) << 1 | 下一状态是否命中关键词，
+         * 扫描时直接用作下一次查表的偏移量，省去乘法和输出表读取
+         */
+        private final int[] transitions;
+
+        /**
+         * 到达该状态时命中的关键词位图（含后缀链上的关键词）
+         */
+        private final int[] outputs;
+
+        KeywordAutomaton(String[] keywords) {
+            int classes = 1;
+            for (String keyword : keywords) {
+                for (int i = 0; i < keyword.length(); i++) {
+                    char c = keyword.charAt(i);
+                    if (charClass[c] == 0) {
+                        charClass[c] = (byte) classes++;
+                    }
+                }
+            }
+            classCount = classes;
+            for (char c = 'A'; c <= 'Z'; c++) {
+                charClass[c] = charClass[c + ('a' - 'A')];
+            }
+
+            // 构建关键词前缀树
+            int maxStates = 1;
+            for (String keyword : keywords) {
+                maxStates += keyword.length();
+            }
+            int[] next = new int[maxStates * classCount];
+            Arrays.fill(next, -1);
+            int[] out = new int[maxStates];
+            int states = 1;
+            for (int k = 0; k < keywords.length; k++) {
+                int state = 0;
+                for (int i = 0; i < keywords[k].length(); i++) {
+                    int slot = state * classCount + charClass[keywords[k].charAt(i)];
+                    if (next[slot] < 0) {
+                        next[slot] = states++;
+                    }
+                    state = next[slot];
+                }
+                out[state] |= 1 << k;
+            }
+
+            // 按层补全失配转移，得到确定性自动机
+            int[] fail = new int[states];
+            Queue<Integer> queue = new ArrayDeque<>();
+            for (int c = 0; c < classCount; c++) {
+                if (next[c] < 0) {
+                    next[c] = 0;
+                } else {
+                    fail[next[c]] = 0;
+                    queue.add(next[c]);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                out[state] |= out[fail[state]];
+                for (int c = 0; c < classCount; c++) {
+                    int slot = state * classCount + c;
+                    int fallback = next[fail[state] * classCount + c];
+                    if (next[slot] < 0) {
+                        next[slot] = fallback;
+                    } else {
+                        fail[next[slot]] = fallback;
+                        queue.add(next[slot]);
+                    }
+                }
+            }
+
+            transitions = new int[states * classCount];
+            for (int slot = 0; slot < transitions.length; slot++) {
+                transitions[slot] = (next[slot] * classCount) << 1 | (out[next[slot]] != 0 ? 1 : 0);
+            }
+            outputs = Arrays.copyOf(out, states);
+        }
+
+        ScanResult scan(String text) {
+            int matched = 0;
+            int offset = 0;
+            int androidVersion = -1;
+            int iosVersion = -1;
+
+            // 当前正在读取的版本号：0 无，1 Android，2 iOS
+            int pendingVersion = 0;
+            int version = 0;
+            int digits = 0;
+
+            for (int i = 0, length = text.length(); i < length; i++) {
+                char c = text.charAt(i);
+
+                if (pendingVersion != 0) {
+                    if (c >= '0' && c <= '9' && digits < MAX_VERSION_DIGITS) {
+                        version = version * 10 + (c - '0');
+                        digits++;
+                    } else {
+                        if (digits > 0) {
+                            if (pendingVersion == 1) {
+                                androidVersion = version;
+                            } else {
+                                iosVersion = version;
+                            }
+                        }
+                        pendingVersion = 0;
+                    }
+                }
+
+                int transition = transitions[offset + (c < 128 ? charClass[c] : 0)];
+                offset = transition >>> 1;
+                if ((transition & 1) != 0) {
+                    int output = outputs[offset / classCount];
+                    matched |= output;
+                    if ((output & (1 << ANDROID_VERSION)) != 0 && androidVersion < 0) {
+                        pendingVersion = 1;
+                        version = 0;
+                        digits = 0;
+                    } else if ((output & ((1 << IPHONE_OS_VERSION) | (1 << CPU_OS_VERSION))) != 0 && iosVersion < 0) {
+                        pendingVersion = 2;
+                        version = 0;
+                        digits = 0;
+                    }
+                }
+            }
+
+            if (pendingVersion != 0 && digits > 0) {
+                if (pendingVersion == 1) {
+                    androidVersion = version;
+                } else {
+                    iosVersion = version;
+                }
+            }
+            return new ScanResult(matched, androidVersion, iosVersion);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.openinstall.store;
+
+import com.openinstall.model.TrackingData;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * 内存引擎的非阻塞接口：内存引擎的操作不涉及 I/O，直接在订阅线程上调用 InMemoryTrackingStore
+ */
+@Component
+@ConditionalOnProperty(prefix = "tracking.storage", name = "engine", havingValue = "memory")
+public class InMemoryReactiveTrackingStore implements ReactiveTrackingStore {
+
+    @Autowired
+    private InMemoryTrackingStore trackingStore;
+
+    @Override
+    public Mono<Void> save(TrackingData data, List<String> indexNames) {
+        return Mono.fromRunnable(() -> trackingStore.save(data, indexNames));
+    }
+
+    @Override
+    public Mono<List<TrackingData>> getForScoring(List<String> fingerprintIds) {
+        return Mono.fromSupplier(() -> trackingStore.getForScoring(fingerprintIds));
+    }
+
+    @Override
+    public Mono<TrackingData> claim(String fingerprintId) {
+        return Mono.fromSupplier(() -> trackingStore.claim(fingerprintId));
+    }
+
+    @Override
+    public Mono<TrackingStore.CandidateLookup> findCandidates(List<String> indexNames, int limit) {
+        return Mono.fromSupplier(() -> trackingStore.findCandidates(indexNames, limit));
+    }
+}
@@ -0,0 +1,438 @@
+package com.openinstall.store;
+
+import com.openinstall.config.TrackingProperties;
+import com.openinstall.model.TrackingData;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内存储引擎
+ *
+ * 数据保存在按 64 位键分段加锁的开放寻址表中（键为 fingerprintId 的 64 位哈希，碰撞时按 ID 链式区分），
+ * 候选索引是按过期时间排序的集合。过期由分层时间轮统一处理，不为每条数据单独创建定时任务；
+ * 读取时同样检查过期时间，时间轮只负责回收内存。
+ * 数据只在本进程内可见，适用于单节点部署和本地测试，重启后丢失。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "tracking.storage", name = "engine", havingValue = "memory")
+public class InMemoryTrackingStore implements TrackingStore {
+
+    private static final int STRIPES = 64;
+    private static final int INITIAL_CAPACITY = 64;
+
+    @Autowired
+    private TrackingProperties trackingProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final ConcurrentHashMap<String, Index> indexes = new ConcurrentHashMap<>();
+
+    private TimingWheel<Record> expiryWheel;
+
+    @PostConstruct
+    public void init() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        long tickMillis = trackingProperties.getStorage().getWheelTick().toMillis();
+        expiryWheel = new TimingWheel<>("tracking-expiry-wheel", tickMillis, this::expire);
+
+        Gauge.builder("tracking.store.memory.records", this, InMemoryTrackingStore::size)
+                .description("进程内存储引擎中的数据条数（含尚未回收的过期数据）")
+                .register(meterRegistry);
+        Gauge.builder("tracking.store.memory.indexes", indexes, Map::size)
+                .description("进程内存储引擎中的候选索引数量")
+                .register(meterRegistry);
+        log.info("使用进程内存储引擎: wheelTick={}ms", tickMillis);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        expiryWheel.stop();
+    }
+
+    @Override
+    public void save(TrackingData data, List<String> indexNames) {
+        Record record = new Record(data.getFingerprintId(), copy(data), data.getExpiresAt(),
+                indexNames.toArray(new String[0]));
+        long key = key(record.id);
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            // 重新保存即重置认领状态
+            stripe.put(key, record);
+        }
+
+        long now = System.currentTimeMillis();
+        int maxIndexSize = trackingProperties.getFuzzy().getMaxIndexSize();
+        for (String indexName : indexNames) {
+            addToIndex(indexName, record.id, record.expiresAt, now, maxIndexSize);
+        }
+        expiryWheel.schedule(record, record.expiresAt);
+    }
+
+    @Override
+    public List<TrackingData> get(List<String> fingerprintIds) {
+        long now = System.currentTimeMillis();
+        List<TrackingData> result = new ArrayList<>(fingerprintIds.size());
+        for (String fingerprintId : fingerprintIds) {
+            long key = key(fingerprintId);
+            Stripe stripe = stripe(key);
+            TrackingData data = null;
+            synchronized (stripe) {
+                Record record = stripe.get(key, fingerprintId);
+                if (record != null && record.expiresAt > now) {
+                    data = record.snapshot();
+                }
+            }
+            result.add(data);
+        }
+        return result;
+    }
+
+    @Override
+    public TrackingData claim(String fingerprintId) {
+        long key = key(fingerprintId);
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            Record record = stripe.get(key, fingerprintId);
+            if (record == null || record.matched || record.expiresAt <= System.currentTimeMillis()) {
+                return null;
+            }
+            record.matched = true;
+            record.matchCount++;
+            return record.snapshot();
+        }
+    }
+
+    @Override
+    public CandidateLookup findCandidates(List<String> indexNames, int limit) {
+        long now = System.currentTimeMillis();
+        long[] counts = new long[indexNames.size()];
+        List<List<String>> members = new ArrayList<>(indexNames.size());
+        for (int i = 0; i < indexNames.size(); i++) {
+            Index index = indexes.get(indexNames.get(i));
+            if (index == null) {
+                members.add(Collections.emptyList());
+                continue;
+            }
+            synchronized (index) {
+                index.removeExpired(now);
+                counts[i] = index.size();
+                members.add(index.latest(limit));
+            }
+        }
+        return new CandidateLookup(counts, members);
+    }
+
+    /**
+     * 时间轮回调：回收已过期的数据及其索引成员（数据已被重新保存时只清理旧的索引成员）
+     */
+    private void expire(Record record) {
+        long key = key(record.id);
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            if (stripe.get(key, record.id) == record) {
+                stripe.remove(key, record.id);
+            }
+        }
+        for (String indexName : record.indexNames) {
+            Index index = indexes.get(indexName);
+            if (index == null) {
+                continue;
+            }
+            synchronized (index) {
+                index.remove(record.id, record.expiresAt);
+                if (index.isEmpty()) {
+                    index.retired = true;
+                    indexes.remove(indexName, index);
+                }
+            }
+        }
+    }
+
+    private void addToIndex(String indexName, String fingerprintId, long expiresAt, long now, int maxIndexSize) {
+        while (true) {
+            Index index = indexes.computeIfAbsent(indexName, name -> new Index());
+            synchronized (index) {
+                // 索引可能刚被时间轮回收，此时重新创建
+                if (index.retired) {
+                    continue;
+                }
+                index.add(fingerprintId, expiresAt);
+                index.removeExpired(now);
+                // 超出上限时淘汰最早过期的成员
+                while (index.size() > maxIndexSize) {
+                    index.removeEarliest();
+                }
+                return;
+            }
+        }
+    }
+
+    private long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    private Stripe stripe(long key) {
+        return stripes[(int) (key >>> 58) & (STRIPES - 1)];
+    }
+
+    /**
+     * fingerprintId 的 64 位哈希（FNV-1a 后再做一次混合，使高位用于分段、低位用于寻址）；0 保留为空槽标记
+     */
+    private static long key(String fingerprintId) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < fingerprintId.length(); i++) {
+            h ^= fingerprintId.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h != 0 ? h : 1;
+    }
+
+    private static TrackingData copy(TrackingData data) {
+        return new TrackingData(data.getFingerprintId(), data.getFingerprint(), data.getFeatures(), data.getParams(),
+                data.getTimestamp(), data.getClientIp(), data.getExpiresAt(), false, 0);
+    }
+
+    /**
+     * 一条数据及其认领状态（由所在分段的锁保护）
+     */
+    private static final class Record {
+
+        private final String id;
+        private final TrackingData data;
+        private final long expiresAt;
+        private final String[] indexNames;
+        private boolean matched;
+        private int matchCount;
+
+        /**
+         * 64 位键碰撞时的下一条数据
+         */
+        private Record next;
+
+        private Record(String id, TrackingData data, long expiresAt, String[] indexNames) {
+            this.id = id;
+            this.data = data;
+            this.expiresAt = expiresAt;
+            this.indexNames = indexNames;
+        }
+
+        private TrackingData snapshot() {
+            TrackingData snapshot = copy(data);
+            snapshot.setMatched(matched);
+            snapshot.setMatchCount(matchCount);
+            return snapshot;
+        }
+    }
+
+    /**
+     * 一个分段：long 键的开放寻址表（线性探测，删除时回移），调用方持有分段锁
+     */
+    private static final class Stripe {
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private Record[] values = new Record[INITIAL_CAPACITY];
+        private int size;
+
+        private Record get(long key, String id) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    for (Record record = values[i]; record != null; record = record.next) {
+                        if (record.id.equals(id)) {
+                            return record;
+                        }
+                    }
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        private void put(long key, Record record) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == key) {
+                values[i] = replace(values[i], record);
+                return;
+            }
+            keys[i] = key;
+            values[i] = record;
+            // 负载超过 1/2 时扩容
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+        }
+
+        private void remove(long key, String id) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != key) {
+                if (keys[i] == 0) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            Record chain = unlink(values[i], id);
+            if (chain != null) {
+                values[i] = chain;
+                return;
+            }
+
+            // 回移后续探测链上的条目，保持探测链连续
+            int gap = i;
+            for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+                int home = mix(keys[j]) & mask;
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    keys[gap] = keys[j];
+                    values[gap] = values[j];
+                    gap = j;
+                }
+            }
+            keys[gap] = 0;
+            values[gap] = null;
+            size--;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Record[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Record[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int j = mix(oldKeys[i]) & mask;
+                    while (keys[j] != 0) {
+                        j = (j + 1) & mask;
+                    }
+                    keys[j] = oldKeys[i];
+                    values[j] = oldValues[i];
+                }
+            }
+        }
+
+        /**
+         * 在碰撞链中替换同 ID 的数据，没有则追加到链头
+         */
+        private static Record replace(Record chain, Record record) {
+            Record rest = unlink(chain, record.id);
+            record.next = rest;
+            return record;
+        }
+
+        /**
+         * @return 去掉指定 ID 后的碰撞链（可能为 null）
+         */
+        private static Record unlink(Record chain, String id) {
+            if (chain == null) {
+                return null;
+            }
+            if (chain.id.equals(id)) {
+                return chain.next;
+            }
+            chain.next = unlink(chain.next, id);
+            return chain;
+        }
+
+        private static int mix(long key) {
+            return (int) (key ^ (key >>> 32));
+        }
+    }
+
+    /**
+     * 候选索引：按 (过期时间, fingerprintId) 排序的成员集合（由自身锁保护）
+     */
+    private static final class Index {
+
+        private final TreeSet<Member> members = new TreeSet<>();
+        private final HashMap<String, Long> expiresAtById = new HashMap<>();
+
+        /**
+         * 已从索引表中移除，后续写入需重新创建
+         */
+        private boolean retired;
+
+        private void add(String id, long expiresAt) {
+            Long previous = expiresAtById.put(id, expiresAt);
+            if (previous != null) {
+                members.remove(new Member(previous, id));
+            }
+            members.add(new Member(expiresAt, id));
+        }
+
+        /**
+         * 移除成员（仅当其过期时间与给定值一致，即未被重新保存）
+         */
+        private void remove(String id, long expiresAt) {
+            Long current = expiresAtById.get(id);
+            if (current != null && current == expiresAt) {
+                expiresAtById.remove(id);
+                members.remove(new Member(expiresAt, id));
+            }
+        }
+
+        private void removeEarliest() {
+            Member earliest = members.pollFirst();
+            if (earliest != null) {
+                expiresAtById.remove(earliest.id());
+            }
+        }
+
+        private void removeExpired(long now) {
+            while (!members.isEmpty() && members.first().expiresAt() < now) {
+                removeEarliest();
+            }
+        }
+
+        private List<String> latest(int limit) {
+            List<String> ids = new ArrayList<>(Math.min(limit, members.size()));
+            Iterator<Member> it = members.descendingIterator();
+            while (it.hasNext() && ids.size() < limit) {
+                ids.add(it.next().id());
+            }
+            return ids;
+        }
+
+        private int size() {
+            return members.size();
+        }
+
+        private boolean isEmpty() {
+            return members.isEmpty();
+        }
+    }
+
+    private record Member(long expiresAt, String id) implements Comparable<Member> {
+
+        @Override
+        public int compareTo(Member other) {
+            int byExpiry = Long.compare(expiresAt, other.expiresAt);
+            return byExpiry != 0 ? byExpiry : id.compareTo(other.id);
+        }
+    }
+}
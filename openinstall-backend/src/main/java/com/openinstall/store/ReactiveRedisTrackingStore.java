@@ -0,0 +1,187 @@
+package com.openinstall.store;
+
+import com.openinstall.model.TrackingData;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Redis 引擎的非阻塞接口
+ *
+ * 与 RedisTrackingStore 使用相同的脚本、键和数据布局，脚本调用的构建、结果解析和近端缓存处理都委托给它，
+ * 只把 Redis 访问换成 ReactiveRedisTemplate：同一次查找的多条命令在共享连接上连续发出，不逐条等待响应。
+ * 往返次数按等待点计数（同时发出的多条命令计一次），与 RedisTrackingStore 的一批命令计一次对应。
+ */
+@Component
+@ConditionalOnProperty(prefix = "tracking.storage", name = "engine", havingValue = "redis", matchIfMissing = true)
+public class ReactiveRedisTrackingStore implements ReactiveTrackingStore {
+
+    @Autowired
+    private RedisTrackingStore redisTrackingStore;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, byte[]> reactiveRedisTemplate;
+
+    @Autowired
+    private TrackingNearCache nearCache;
+
+    @Override
+    public Mono<Void> save(TrackingData data, List<String> indexNames) {
+        return Mono.defer(() -> {
+            RedisTrackingStore.SaveCall call = redisTrackingStore.saveCall(data, indexNames, System.currentTimeMillis());
+            // 集群键空间下数据与各索引的脚本同时发往各自的节点，合计一次往返
+            return RedisRoundTrips.increment(Flux.fromIterable(call.all())
+                            .flatMap(part -> reactiveRedisTemplate.execute(part.script(), part.keys(), Arrays.asList(part.args())))
+                            .then())
+                    .then(Mono.fromRunnable(() -> nearCache.put(data)));
+        });
+    }
+
+    /**
+     * hash 模式只读取打分需要的字段，没有特征向量的旧数据再读取一次指纹字段
+     */
+    @Override
+    public Mono<List<TrackingData>> getForScoring(List<String> fingerprintIds) {
+        Mono<List<TrackingData>> candidates = loadRecords(fingerprintIds, TrackingHashLayout.SCORING_FIELDS);
+        if (!redisTrackingStore.isHashLayout()) {
+            return candidates;
+        }
+
+        return candidates.flatMap(loaded -> {
+            List<Integer> legacyPositions = RedisTrackingStore.legacyPositions(loaded);
+            if (legacyPositions.isEmpty()) {
+                return Mono.just(loaded);
+            }
+            List<String> legacyIds = new ArrayList<>(legacyPositions.size());
+            for (int position : legacyPositions) {
+                legacyIds.add(fingerprintIds.get(position));
+            }
+            return loadRecords(legacyIds, TrackingHashLayout.LEGACY_SCORING_FIELDS).map(legacy -> {
+                for (int j = 0; j < legacyPositions.size(); j++) {
+                    loaded.set(legacyPositions.get(j), legacy.get(j));
+                }
+                return loaded;
+            });
+        });
+    }
+
+    /**
+     * 近端缓存未命中的部分，blob 模式通过一次 MGET 读取，hash 模式每条数据一次 HMGET（连续发出）
+     */
+    private Mono<List<TrackingData>> loadRecords(List<String> fingerprintIds, String[] hashFields) {
+        return Mono.defer(() -> {
+            RedisTrackingStore.PendingLoad load = redisTrackingStore.startLoad(fingerprintIds);
+            if (load.missing().isEmpty()) {
+                return Mono.just(load.result());
+            }
+            Mono<List<TrackingData>> loaded = redisTrackingStore.isHashLayout()
+                    ? readHashes(load.missing(), hashFields) : readBlobs(load.missing());
+            return RedisRoundTrips.increment(loaded)
+                    .map(records -> redisTrackingStore.finishLoad(load, records, hashFields));
+        });
+    }
+
+    /**
+     * 集群键空间下每条数据一个 MGET（数据键与认领键同槽位），同时发往各节点
+     */
+    private Mono<List<TrackingData>> readBlobs(List<String> fingerprintIds) {
+        RedisSerializer<Object> valueSerializer = redisTrackingStore.valueSerializer();
+        Mono<List<byte[]>> raw = redisTrackingStore.isClusterKeyspace()
+                ? Flux.fromIterable(fingerprintIds)
+                        .flatMapSequential(fingerprintId -> reactiveRedisTemplate.opsForValue()
+                                .multiGet(redisTrackingStore.blobKeys(List.of(fingerprintId))))
+                        .collectList()
+                        .map(ReactiveRedisTrackingStore::concat)
+                : reactiveRedisTemplate.opsForValue().multiGet(redisTrackingStore.blobKeys(fingerprintIds));
+        return raw.map(rawValues -> {
+            List<Object> values = new ArrayList<>(rawValues.size());
+            for (byte[] value : rawValues) {
+                values.add(value != null ? valueSerializer.deserialize(value) : null);
+            }
+            return redisTrackingStore.decodeBlobs(fingerprintIds, values);
+        });
+    }
+
+    /**
+     * 按顺序连接各条数据的 MGET 结果（结果中有 null，不能展开为 Flux 元素）
+     */
+    private static List<byte[]> concat(List<List<byte[]>> lists) {
+        List<byte[]> values = new ArrayList<>(lists.size() * 2);
+        for (List<byte[]> list : lists) {
+            values.addAll(list);
+        }
+        return values;
+    }
+
+    private Mono<List<TrackingData>> readHashes(List<String> fingerprintIds, String[] fields) {
+        RedisSerializer<Object> valueSerializer = redisTrackingStore.valueSerializer();
+        List<String> fieldNames = Arrays.asList(fields);
+        return Flux.fromIterable(fingerprintIds)
+                .flatMapSequential(fingerprintId -> reactiveRedisTemplate.<String, byte[]>opsForHash()
+                        .multiGet(redisTrackingStore.hashKey(fingerprintId), fieldNames))
+                .map(values -> TrackingHashLayout.decode(fields, new ArrayList<Object>(values), valueSerializer))
+                .collectList();
+    }
+
+    /**
+     * 脚本未加载时 ReactiveRedisTemplate 会自动改用 EVAL 重试（脚本未执行，重试是安全的）
+     */
+    @Override
+    public Mono<TrackingData> claim(String fingerprintId) {
+        return Mono.defer(() -> {
+            RedisTrackingStore.ClaimCall call = redisTrackingStore.claimCall(fingerprintId);
+            return RedisRoundTrips.increment(reactiveRedisTemplate.execute(call.script(), call.keys(), Arrays.asList(call.args()))
+                            .next())
+                    .mapNotNull(result -> redisTrackingStore.claimed(fingerprintId, result));
+        });
+    }
+
+    /**
+     * 每个索引的 ZCOUNT 与 ZREVRANGEBYSCORE（旧版本索引为 SCARD 与 SRANDMEMBER）同时发出，按索引顺序汇总
+     */
+    @Override
+    public Mono<TrackingStore.CandidateLookup> findCandidates(List<String> indexNames, int limit) {
+        return Mono.defer(() -> {
+            Range<Double> unexpired = Range.closed((double) System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+            return RedisRoundTrips.increment(Flux.fromIterable(indexNames)
+                    .flatMapSequential(indexName -> {
+                        if (RedisTrackingStore.isLegacyIndex(indexName)) {
+                            String legacyKey = RedisTrackingStore.legacyIndexKey(indexName);
+                            return Mono.zip(
+                                    reactiveRedisTemplate.opsForSet().size(legacyKey),
+                                    reactiveRedisTemplate.opsForSet().distinctRandomMembers(legacyKey, limit)
+                                            .map(redisTrackingStore::legacyIndexMember)
+                                            .collectList());
+                        }
+                        String key = redisTrackingStore.indexKey(indexName);
+                        return Mono.zip(
+                                reactiveRedisTemplate.opsForZSet().count(key, unexpired),
+                                reactiveRedisTemplate.opsForZSet()
+                                        .reverseRangeByScore(key, unexpired, Limit.limit().count(limit))
+                                        .map(member -> new String(member, StandardCharsets.UTF_8))
+                                        .collectList());
+                    })
+                    .collectList())
+                    .map(results -> {
+                        long[] counts = new long[results.size()];
+                        List<List<String>> members = new ArrayList<>(results.size());
+                        for (int i = 0; i < results.size(); i++) {
+                            counts[i] = results.get(i).getT1();
+                            members.add(results.get(i).getT2());
+                        }
+                        return new TrackingStore.CandidateLookup(counts, members);
+                    });
+        });
+    }
+}
@@ -0,0 +1,37 @@
+package com.openinstall.store;
+
+import com.openinstall.model.TrackingData;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * 非阻塞追踪数据存储（tracking.api.mode=reactive 时单条接口使用）
+ *
+ * 各方法语义与 TrackingStore 的同名方法相同，结果通过 Mono 返回，调用线程不等待 I/O。
+ * 引擎与 TrackingStore 一致，由 tracking.storage.engine 选择。
+ */
+public interface ReactiveTrackingStore {
+
+    /**
+     * 保存追踪数据，见 TrackingStore#save
+     */
+    Mono<Void> save(TrackingData data, List<String> indexNames);
+
+    /**
+     * 批量读取模糊匹配打分所需的数据，见 TrackingStore#getForScoring
+     * @return 与 fingerprintIds 顺序一致的列表，不存在或已过期的位置为 null
+     */
+    Mono<List<TrackingData>> getForScoring(List<String> fingerprintIds);
+
+    /**
+     * 原子认领，见 TrackingStore#claim
+     * @return 认领成功的数据；数据不存在、已过期或已被认领时为空
+     */
+    Mono<TrackingData> claim(String fingerprintId);
+
+    /**
+     * 查找模糊匹配候选，见 TrackingStore#findCandidates
+     */
+    Mono<TrackingStore.CandidateLookup> findCandidates(List<String> indexNames, int limit);
+}
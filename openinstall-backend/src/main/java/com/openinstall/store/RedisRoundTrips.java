@@ -0,0 +1,56 @@
+package com.openinstall.store;
+
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * 当前线程累计的 Redis 往返次数（脚本调用、MGET、一批同时发出的命令各计一次）
+ *
+ * RedisTrackingStore 每次访问 Redis 时递增，TrackingService 在请求前后各取一次、相减得到单个请求的往返次数。
+ * 计数只增不减，不需要在请求结束时清理；memory 引擎不计数。
+ *
+ * 非阻塞模式下一个请求会在多个线程上执行，计数器改为放在 Reactor Context 中：ReactiveTrackingService 通过 counted
+ * 为每个请求放入一个计数器，ReactiveRedisTrackingStore 每次等待 Redis 响应（同时发出的多条命令合计一次）时递增。
+ */
+public final class RedisRoundTrips {
+
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    private static final Class<RedisRoundTrips> CONTEXT_KEY = RedisRoundTrips.class;
+
+    private RedisRoundTrips() {
+    }
+
+    static void increment() {
+        COUNT.get()[0]++;
+    }
+
+    public static long current() {
+        return COUNT.get()[0];
+    }
+
+    /**
+     * 订阅 access 时计一次往返；不在 counted 范围内时不计数
+     */
+    static <T> Mono<T> increment(Mono<T> access) {
+        return Mono.deferContextual(context -> {
+            context.<AtomicLong>getOrEmpty(CONTEXT_KEY).ifPresent(AtomicLong::incrementAndGet);
+            return access;
+        });
+    }
+
+    /**
+     * 统计 operation 的 Redis 往返次数，operation 成功结束（包括为空）时交给 recorder
+     */
+    public static <T> Mono<T> counted(Mono<T> operation, LongConsumer recorder) {
+        return Mono.defer(() -> {
+            AtomicLong count = new AtomicLong();
+            return operation
+                    .doOnSuccess(value -> recorder.accept(count.get()))
+                    .contextWrite(Context.of(CONTEXT_KEY, count));
+        });
+    }
+}
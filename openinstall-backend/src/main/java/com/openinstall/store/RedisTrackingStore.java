@@ -0,0 +1,837 @@
+package com.openinstall.store;
+
+import com.openinstall.config.TrackingProperties;
+import com.openinstall.model.TrackingData;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Redis 存储引擎
+ *
+ * 保存与认领通过 Lua 脚本在一次往返内原子完成；读取优先使用近端缓存。
+ * 数据按 tracking.storage.layout 保存为整条 blob 或分字段的 Hash。
+ * tracking.storage.keyspace=cluster 时键带哈希标签：同一条数据的数据键与认领键位于同一槽位，认领仍是单个脚本；
+ * 索引键按阻塞键分布在各槽位，保存时数据与各索引分别写入。
+ * 多条命令在共享连接上连续发出后再一起等待结果（executeBatch），由 Lettuce 按槽位发往各节点，各节点并行执行。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "tracking.storage", name = "engine", havingValue = "redis", matchIfMissing = true)
+public class RedisTrackingStore implements TrackingStore {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisScript<Long> saveTrackingScript;
+
+    @Autowired
+    @SuppressWarnings("rawtypes")
+    private RedisScript<List> claimTrackingScript;
+
+    @Autowired
+    private RedisScript<Long> saveTrackingHashScript;
+
+    @Autowired
+    @SuppressWarnings("rawtypes")
+    private RedisScript<List> claimTrackingHashScript;
+
+    @Autowired
+    private RedisScript<Long> updateIndexScript;
+
+    @Autowired
+    private TrackingProperties trackingProperties;
+
+    @Autowired
+    private TrackingNearCache nearCache;
+
+    private static final String REDIS_KEY_PREFIX = "tracking:";
+    // 有序集合索引，分值为过期时间戳；旧版本的 tracking:index:* 集合不再写入，最迟 expire-hours 后自然过期
+    private static final String REDIS_INDEX_PREFIX = "tracking:zindex:";
+    private static final String REDIS_CLAIM_PREFIX = "tracking:claim:";
+    // Hash 存储模式的数据键；与 blob 模式的键分开，切换布局时不会出现 WRONGTYPE
+    private static final String REDIS_HASH_PREFIX = "tracking:h:";
+    private static final String REDIS_LEGACY_INDEX_PREFIX = "tracking:index:";
+
+    // scanLiveKeys 每页的键数
+    private static final int SCAN_COUNT = 1000;
+
+    // 脚本参数已预先序列化，按原始字节传递
+    private static final RedisSerializer<byte[]> RAW_SERIALIZER = RedisSerializer.byteArray();
+    private static final RedisSerializer<Long> LONG_SERIALIZER = new GenericToStringSerializer<>(Long.class);
+
+    @Override
+    public void save(TrackingData data, List<String> indexNames) {
+        SaveCall call = saveCall(data, indexNames, System.currentTimeMillis());
+        RedisRoundTrips.increment();
+        if (call.indexCalls().isEmpty()) {
+            // 数据写入、索引添加、索引过期通过一个 Lua 脚本完成：一次往返，且不会出现数据与索引不一致
+            redisTemplate.execute(call.script(), RAW_SERIALIZER, LONG_SERIALIZER, call.keys(), (Object[]) call.args());
+        } else {
+            saveAcrossSlots(call);
+        }
+        nearCache.put(data);
+    }
+
+    /**
+     * 集群键空间：数据与各索引位于不同槽位，各脚本一次发往各自的节点。
+     * 索引可能先于数据写入，读取候选时不存在的数据会被跳过
+     */
+    private void saveAcrossSlots(SaveCall call) {
+        try {
+            evalShaPipelined(call.all());
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            // 脚本尚未加载到对应节点：逐个执行（EVAL 时加载），重复写入相同的数据与索引成员没有副作用
+            for (SaveCall part : call.all()) {
+                RedisRoundTrips.increment();
+                redisTemplate.execute(part.script(), RAW_SERIALIZER, LONG_SERIALIZER, part.keys(), (Object[]) part.args());
+            }
+        }
+    }
+
+    /**
+     * 整批保存脚本通过一次往返执行（EVALSHA）。
+     * 脚本尚未加载（首次使用或 Redis 重启后）时逐个执行（EVAL 时加载），其他错误直接抛出
+     */
+    @Override
+    public void saveBatch(List<TrackingData> batch, List<List<String>> indexNames) {
+        long now = System.currentTimeMillis();
+        List<SaveCall> calls = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            calls.add(saveCall(batch.get(i), indexNames.get(i), now));
+        }
+        List<SaveCall> parts = new ArrayList<>(calls.size());
+        for (SaveCall call : calls) {
+            parts.addAll(call.all());
+        }
+        RedisRoundTrips.increment();
+        try {
+            evalShaPipelined(parts);
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            // 重复写入相同的数据与索引成员没有副作用
+            for (SaveCall part : parts) {
+                RedisRoundTrips.increment();
+                redisTemplate.execute(part.script(), RAW_SERIALIZER, LONG_SERIALIZER, part.keys(), (Object[]) part.args());
+            }
+        }
+        for (TrackingData data : batch) {
+            nearCache.put(data);
+        }
+    }
+
+    /**
+     * 通过一次往返执行保存脚本（EVALSHA），脚本未加载时抛出含 NOSCRIPT 的异常
+     */
+    private void evalShaPipelined(List<SaveCall> calls) {
+        requireAll(executeBatch(commands -> {
+            List<RedisFuture<?>> futures = new ArrayList<>(calls.size());
+            for (SaveCall call : calls) {
+                futures.add(commands.evalsha(call.script().getSha1(), ScriptOutputType.INTEGER,
+                        serializeKeys(call.keys()), call.args()));
+            }
+            return futures;
+        }));
+    }
+
+    /**
+     * 构建保存脚本调用：blob 模式写数据键并重置认领键，hash 模式写各字段。
+     * 集群键空间下保存脚本不带索引键，每个索引单独一个 update_index 调用
+     */
+    SaveCall saveCall(TrackingData data, List<String> indexNames, long now) {
+        String fingerprintId = data.getFingerprintId();
+        long expireSeconds = Math.max(1, (data.getExpiresAt() - now) / 1000);
+        List<SaveCall> indexCalls = indexCalls(fingerprintId, data.getExpiresAt(), now, indexNames);
+        List<String> scriptIndexNames = indexCalls.isEmpty() ? indexNames : Collections.emptyList();
+        if (isHashLayout()) {
+            List<Object> args = new ArrayList<>(Arrays.asList(
+                    scriptArg(expireSeconds),
+                    scriptArg(fingerprintId),
+                    scriptArg(data.getExpiresAt()),
+                    scriptArg(now),
+                    scriptArg(trackingProperties.getFuzzy().getMaxIndexSize()),
+                    scriptArg(nearCache.channel()),
+                    scriptArg(nearCache.invalidationMessage(fingerprintId))));
+            args.addAll(TrackingHashLayout.encode(data, valueSerializer()));
+            List<String> keys = new ArrayList<>(1 + scriptIndexNames.size());
+            keys.add(hashKey(fingerprintId));
+            addIndexKeys(keys, scriptIndexNames);
+            return new SaveCall(saveTrackingHashScript, keys, args.toArray(new byte[0][]), indexCalls);
+        }
+
+        List<String> keys = new ArrayList<>(2 + scriptIndexNames.size());
+        keys.add(dataKey(fingerprintId));
+        keys.add(claimKey(fingerprintId));
+        addIndexKeys(keys, scriptIndexNames);
+        return new SaveCall(saveTrackingScript, keys, new byte[][]{
+                serializeValue(data),
+                scriptArg(fingerprintId),
+                scriptArg(expireSeconds),
+                scriptArg(data.getExpiresAt()),
+                scriptArg(now),
+                scriptArg(trackingProperties.getFuzzy().getMaxIndexSize()),
+                scriptArg(nearCache.channel()),
+                scriptArg(nearCache.invalidationMessage(fingerprintId))}, indexCalls);
+    }
+
+    /**
+     * 集群键空间下每个索引的更新调用；flat 键空间返回空列表（索引由保存脚本一并更新）
+     */
+    private List<SaveCall> indexCalls(String fingerprintId, long expiresAt, long now, List<String> indexNames) {
+        if (!isClusterKeyspace()) {
+            return Collections.emptyList();
+        }
+        byte[][] args = {
+                scriptArg(fingerprintId),
+                scriptArg(expiresAt),
+                scriptArg(now),
+                scriptArg(trackingProperties.getFuzzy().getMaxIndexSize())};
+        List<SaveCall> calls = new ArrayList<>(indexNames.size());
+        for (String indexName : indexNames) {
+            calls.add(new SaveCall(updateIndexScript, Collections.singletonList(indexKey(indexName)), args,
+                    Collections.emptyList()));
+        }
+        return calls;
+    }
+
+    @Override
+    public List<TrackingData> get(List<String> fingerprintIds) {
+        return loadRecords(fingerprintIds, TrackingHashLayout.ALL_FIELDS);
+    }
+
+    /**
+     * hash 模式只读取打分需要的字段，没有特征向量的旧数据再读取一次指纹字段
+     */
+    @Override
+    public List<TrackingData> getForScoring(List<String> fingerprintIds) {
+        List<TrackingData> candidates = loadRecords(fingerprintIds, TrackingHashLayout.SCORING_FIELDS);
+        if (!isHashLayout()) {
+            return candidates;
+        }
+
+        List<Integer> legacyPositions = legacyPositions(candidates);
+        if (!legacyPositions.isEmpty()) {
+            List<String> legacyIds = new ArrayList<>(legacyPositions.size());
+            for (int position : legacyPositions) {
+                legacyIds.add(fingerprintIds.get(position));
+            }
+            List<TrackingData> legacy = loadRecords(legacyIds, TrackingHashLayout.LEGACY_SCORING_FIELDS);
+            for (int j = 0; j < legacyPositions.size(); j++) {
+                candidates.set(legacyPositions.get(j), legacy.get(j));
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * 没有特征向量、需要再读取指纹字段的旧数据的位置
+     */
+    static List<Integer> legacyPositions(List<TrackingData> candidates) {
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            TrackingData candidate = candidates.get(i);
+            if (candidate != null && candidate.getFeatures() == null && candidate.getFingerprint() == null) {
+                positions.add(i);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * 读取追踪数据：近端缓存未命中的部分，blob 模式通过一次 MGET 读取数据键与认领键，
+     * hash 模式通过一次往返 HMGET 指定字段
+     * @param hashFields hash 模式下读取的字段；只读取部分字段时结果不放入近端缓存
+     */
+    private List<TrackingData> loadRecords(List<String> fingerprintIds, String[] hashFields) {
+        PendingLoad load = startLoad(fingerprintIds);
+        if (load.missing().isEmpty()) {
+            return load.result();
+        }
+        List<TrackingData> loaded = isHashLayout() ? readHashes(load.missing(), hashFields) : readBlobs(load.missing());
+        return finishLoad(load, loaded, hashFields);
+    }
+
+    /**
+     * 从近端缓存取出已缓存的数据，其余 ID 留待从 Redis 读取
+     */
+    PendingLoad startLoad(List<String> fingerprintIds) {
+        List<TrackingData> result = new ArrayList<>(fingerprintIds.size());
+        List<String> missing = new ArrayList<>();
+        List<Integer> missingPositions = new ArrayList<>();
+        for (int i = 0; i < fingerprintIds.size(); i++) {
+            TrackingData cached = nearCache.get(fingerprintIds.get(i));
+            result.add(cached);
+            if (cached == null) {
+                missing.add(fingerprintIds.get(i));
+                missingPositions.add(i);
+            }
+        }
+        return new PendingLoad(result, missing, missingPositions);
+    }
+
+    /**
+     * 将从 Redis 读取的数据（与 load.missing() 顺序一致）中未过期的部分填入结果
+     */
+    List<TrackingData> finishLoad(PendingLoad load, List<TrackingData> loaded, String[] hashFields) {
+        long now = System.currentTimeMillis();
+        boolean cacheable = !isHashLayout() || hashFields == TrackingHashLayout.ALL_FIELDS;
+        for (int j = 0; j < load.missing().size(); j++) {
+            TrackingData data = loaded.get(j);
+            if (data != null && data.getExpiresAt() != null && data.getExpiresAt() > now) {
+                if (cacheable) {
+                    nearCache.put(data);
+                }
+                load.result().set(load.missingPositions().get(j), data);
+            }
+        }
+        return load.result();
+    }
+
+    /**
+     * blob 模式：一次 MGET 读取数据键与认领键。
+     * 集群键空间下数据分布在不同槽位，每条数据一个 MGET（数据键与认领键同槽位），连续发往各节点并行读取
+     */
+    @SuppressWarnings("unchecked")
+    private List<TrackingData> readBlobs(List<String> fingerprintIds) {
+        RedisRoundTrips.increment();
+        if (!isClusterKeyspace()) {
+            List<Object> values = redisTemplate.opsForValue().multiGet(blobKeys(fingerprintIds));
+            return decodeBlobs(fingerprintIds, values);
+        }
+
+        List<Object> replies = requireAll(executeBatch(commands -> {
+            List<RedisFuture<?>> futures = new ArrayList<>(fingerprintIds.size());
+            for (String fingerprintId : fingerprintIds) {
+                futures.add(commands.mget(serializeKey(dataKey(fingerprintId)), serializeKey(claimKey(fingerprintId))));
+            }
+            return futures;
+        }));
+        List<Object> values = new ArrayList<>(fingerprintIds.size() * 2);
+        for (Object reply : replies) {
+            for (KeyValue<byte[], byte[]> value : (List<KeyValue<byte[], byte[]>>) reply) {
+                values.add(valueSerializer().deserialize(value.getValueOrElse(null)));
+            }
+        }
+        return decodeBlobs(fingerprintIds, values);
+    }
+
+    /**
+     * blob 模式读取的键：每条数据依次为数据键与认领键
+     */
+    List<String> blobKeys(List<String> fingerprintIds) {
+        List<String> keys = new ArrayList<>(fingerprintIds.size() * 2);
+        for (String fingerprintId : fingerprintIds) {
+            keys.add(dataKey(fingerprintId));
+            keys.add(claimKey(fingerprintId));
+        }
+        return keys;
+    }
+
+    /**
+     * 合并 blobKeys 对应的值（已反序列化）为追踪数据
+     */
+    List<TrackingData> decodeBlobs(List<String> fingerprintIds, List<Object> values) {
+        List<TrackingData> result = new ArrayList<>(fingerprintIds.size());
+        for (int i = 0; i < fingerprintIds.size(); i++) {
+            TrackingData data = values != null ? (TrackingData) values.get(i * 2) : null;
+            if (data != null) {
+                applyClaimState(data, values.get(i * 2 + 1));
+            }
+            result.add(data);
+        }
+        return result;
+    }
+
+    /**
+     * hash 模式：一次往返读取每条数据的指定字段
+     */
+    @SuppressWarnings("unchecked")
+    private List<TrackingData> readHashes(List<String> fingerprintIds, String[] fields) {
+        byte[][] rawFields = TrackingHashLayout.fieldNames(fields);
+        RedisRoundTrips.increment();
+        List<Object> replies = requireAll(executeBatch(commands -> {
+            List<RedisFuture<?>> futures = new ArrayList<>(fingerprintIds.size());
+            for (String fingerprintId : fingerprintIds) {
+                futures.add(commands.hmget(serializeKey(hashKey(fingerprintId)), rawFields));
+            }
+            return futures;
+        }));
+
+        List<TrackingData> result = new ArrayList<>(fingerprintIds.size());
+        for (Object reply : replies) {
+            List<KeyValue<byte[], byte[]>> fieldValues = (List<KeyValue<byte[], byte[]>>) reply;
+            List<Object> values = new ArrayList<>(fieldValues.size());
+            for (KeyValue<byte[], byte[]> value : fieldValues) {
+                values.add(value.getValueOrElse(null));
+            }
+            result.add(TrackingHashLayout.decode(fields, values, valueSerializer()));
+        }
+        return result;
+    }
+
+    /**
+     * 认领结果只由 Redis 脚本决定：近端缓存中的认领状态可能已过时（失效通知可能丢失），不据此跳过认领
+     */
+    @Override
+    public TrackingData claim(String fingerprintId) {
+        ClaimCall call = claimCall(fingerprintId);
+        RedisRoundTrips.increment();
+        List<Object> result = redisTemplate.execute((RedisCallback<List<Object>>) connection -> evalClaim(connection, call));
+        return claimed(fingerprintId, result);
+    }
+
+    /**
+     * 执行认领脚本（EVALSHA，脚本尚未加载时改用 EVAL），结果列表中的数据保持原始字节，由 value 序列化器反序列化
+     */
+    private List<Object> evalClaim(RedisConnection connection, ClaimCall call) {
+        byte[][] keysAndArgs = keysAndArgs(call.keys(), call.args());
+        try {
+            return connection.scriptingCommands().evalSha(call.script().getSha1(), ReturnType.MULTI,
+                    call.keys().size(), keysAndArgs);
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            return connection.scriptingCommands().eval(call.script().getScriptAsString().getBytes(StandardCharsets.UTF_8),
+                    ReturnType.MULTI, call.keys().size(), keysAndArgs);
+        }
+    }
+
+    private byte[][] serializeKeys(List<String> keys) {
+        byte[][] rawKeys = new byte[keys.size()][];
+        for (int i = 0; i < keys.size(); i++) {
+            rawKeys[i] = serializeKey(keys.get(i));
+        }
+        return rawKeys;
+    }
+
+    /**
+     * 脚本的键（序列化后）与参数拼接为 EVAL / EVALSHA 的参数
+     */
+    private byte[][] keysAndArgs(List<String> keys, byte[][] args) {
+        byte[][] keysAndArgs = new byte[keys.size() + args.length][];
+        for (int i = 0; i < keys.size(); i++) {
+            keysAndArgs[i] = serializeKey(keys.get(i));
+        }
+        System.arraycopy(args, 0, keysAndArgs, keys.size(), args.length);
+        return keysAndArgs;
+    }
+
+    /**
+     * 认领脚本通过一次往返执行（EVALSHA）。
+     * 脚本尚未加载时对应位置返回 NOSCRIPT 且脚本未执行，这些 ID 改为逐条认领；其他错误的位置视为未认领
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<TrackingData> claimBatch(List<String> fingerprintIds) {
+        List<TrackingData> result = new ArrayList<>(Collections.nCopies(fingerprintIds.size(), null));
+        if (fingerprintIds.isEmpty()) {
+            return result;
+        }
+
+        RedisRoundTrips.increment();
+        List<Object> replies = executeBatch(commands -> {
+            List<RedisFuture<?>> futures = new ArrayList<>(fingerprintIds.size());
+            for (String fingerprintId : fingerprintIds) {
+                ClaimCall call = claimCall(fingerprintId);
+                futures.add(commands.evalsha(call.script().getSha1(), ScriptOutputType.MULTI,
+                        serializeKeys(call.keys()), call.args()));
+            }
+            return futures;
+        });
+
+        for (int i = 0; i < fingerprintIds.size(); i++) {
+            String fingerprintId = fingerprintIds.get(i);
+            Object reply = replies.get(i);
+            if (reply instanceof Throwable error) {
+                if (isNoScript(error)) {
+                    result.set(i, claim(fingerprintId));
+                } else {
+                    log.warn("批量认领失败: fingerprintId={}, error={}", fingerprintId, error.getMessage());
+                }
+                continue;
+            }
+            result.set(i, claimed(fingerprintId, (List<Object>) reply));
+        }
+        return result;
+    }
+
+    /**
+     * 构建认领脚本调用：blob 模式的认领状态保存在单独的认领键，数据本身不被重写；
+     * hash 模式只修改 matched / matchCount 字段，返回的数据不含指纹
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ClaimCall claimCall(String fingerprintId) {
+        byte[][] args = {scriptArg(nearCache.channel()), scriptArg(nearCache.invalidationMessage(fingerprintId))};
+        if (isHashLayout()) {
+            return new ClaimCall((RedisScript) claimTrackingHashScript,
+                    Collections.singletonList(hashKey(fingerprintId)), args);
+        }
+        return new ClaimCall((RedisScript) claimTrackingScript,
+                Arrays.asList(dataKey(fingerprintId), claimKey(fingerprintId)), args);
+    }
+
+    /**
+     * 解析认领脚本结果（blob 模式为 {数据, 匹配次数}，hash 模式为 {认领结果字段..., 匹配次数}），
+     * 并按结果更新近端缓存
+     */
+    TrackingData claimed(String fingerprintId, List<Object> result) {
+        TrackingData data = isHashLayout() ? decodeClaimHash(result) : decodeClaimBlob(result);
+        if (data == null || data.getExpiresAt() <= System.currentTimeMillis()) {
+            nearCache.invalidate(fingerprintId);
+            return null;
+        }
+        nearCache.put(data);
+        return data;
+    }
+
+    private TrackingData decodeClaimBlob(List<Object> result) {
+        if (result == null || result.size() < 2) {
+            return null;
+        }
+
+        TrackingData data = (TrackingData) valueSerializer().deserialize((byte[]) result.get(0));
+        if (data == null) {
+            return null;
+        }
+        data.setMatched(true);
+        data.setMatchCount(((Long) result.get(1)).intValue());
+        return data;
+    }
+
+    private TrackingData decodeClaimHash(List<Object> result) {
+        String[] fields = TrackingHashLayout.CLAIM_RESULT_FIELDS;
+        if (result == null || result.size() <= fields.length) {
+            return null;
+        }
+
+        TrackingData data = TrackingHashLayout.decode(fields, result.subList(0, fields.length), valueSerializer());
+        if (data == null) {
+            return null;
+        }
+        data.setMatched(true);
+        data.setMatchCount(((Long) result.get(fields.length)).intValue());
+        return data;
+    }
+
+    /**
+     * 脚本未加载（NOSCRIPT）：此时脚本没有执行，可以安全重试
+     */
+    private static boolean isNoScript(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 每个索引未过期的成员数与最新的 limit 个成员通过一次往返读取；旧版本索引读取集合大小与随机的 limit 个成员
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public CandidateLookup findCandidates(List<String> indexNames, int limit) {
+        io.lettuce.core.Range<Long> unexpired = io.lettuce.core.Range.from(
+                io.lettuce.core.Range.Boundary.including(System.currentTimeMillis()),
+                io.lettuce.core.Range.Boundary.unbounded());
+        io.lettuce.core.Limit first = io.lettuce.core.Limit.create(0, limit);
+        RedisRoundTrips.increment();
+        List<Object> results = requireAll(executeBatch(commands -> {
+            List<RedisFuture<?>> futures = new ArrayList<>(indexNames.size() * 2);
+            for (String indexName : indexNames) {
+                if (isLegacyIndex(indexName)) {
+                    byte[] rawLegacyKey = serializeKey(legacyIndexKey(indexName));
+                    futures.add(commands.scard(rawLegacyKey));
+                    futures.add(commands.srandmember(rawLegacyKey, limit));
+                    continue;
+                }
+                byte[] rawIndexKey = serializeKey(indexKey(indexName));
+                futures.add(commands.zcount(rawIndexKey, unexpired));
+                futures.add(commands.zrevrangebyscore(rawIndexKey, unexpired, first));
+            }
+            return futures;
+        }));
+
+        long[] counts = new long[indexNames.size()];
+        List<List<String>> members = new ArrayList<>(indexNames.size());
+        for (int i = 0; i < indexNames.size(); i++) {
+            Long count = (Long) results.get(i * 2);
+            List<byte[]> rawIds = (List<byte[]>) results.get(i * 2 + 1);
+            counts[i] = count != null ? count : 0;
+            boolean legacy = isLegacyIndex(indexNames.get(i));
+            List<String> ids = new ArrayList<>(rawIds != null ? rawIds.size() : 0);
+            if (rawIds != null) {
+                for (byte[] rawId : rawIds) {
+                    ids.add(legacy ? legacyIndexMember(rawId) : new String(rawId, StandardCharsets.UTF_8));
+                }
+            }
+            members.add(ids);
+        }
+        return new CandidateLookup(counts, members);
+    }
+
+    /**
+     * 在 redisTemplate 的共享连接上连续发出一批命令，全部发出后再依次等待结果：与管道一样只有一次往返，
+     * 但不借用专用连接（未启用连接池时每次管道都会新建并关闭一个连接）。单个命令的超时沿用 spring.data.redis.timeout
+     * @return 与发出顺序一致的结果，执行失败的命令对应位置为异常
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object> executeBatch(Function<RedisClusterAsyncCommands<byte[], byte[]>, List<RedisFuture<?>>> batch) {
+        return redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+            List<RedisFuture<?>> futures =
+                    batch.apply((RedisClusterAsyncCommands<byte[], byte[]>) connection.getNativeConnection());
+            List<Object> results = new ArrayList<>(futures.size());
+            for (RedisFuture<?> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    results.add(translate(e.getCause()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RedisSystemException("等待 Redis 响应时被中断", e);
+                }
+            }
+            return results;
+        });
+    }
+
+    /**
+     * 有命令失败时抛出第一个异常（同一批的其余命令可能已经执行）
+     */
+    private static List<Object> requireAll(List<Object> results) {
+        for (Object result : results) {
+            if (result instanceof RuntimeException error) {
+                throw error;
+            }
+        }
+        return results;
+    }
+
+    private RuntimeException translate(Throwable error) {
+        if (error instanceof RuntimeException runtime) {
+            DataAccessException translated = redisTemplate.getRequiredConnectionFactory().translateExceptionIfPossible(runtime);
+            return translated != null ? translated : runtime;
+        }
+        return new RedisSystemException(error.getMessage(), error);
+    }
+
+    /**
+     * 遍历 Redis 中未过期的数据键与索引键（负查找过滤器补全时使用）：SCAN 每页的键通过一次往返读取剩余有效期，
+     * 集群键空间下由 Lettuce 依次扫描各主节点
+     * @param consumer 回调数据的 fingerprintId 或索引名及其过期时间戳
+     */
+    void scanLiveKeys(LiveKeyConsumer consumer) {
+        ScanOptions options = ScanOptions.scanOptions().match(REDIS_KEY_PREFIX + "*").count(SCAN_COUNT).build();
+        try (RedisConnection connection = redisTemplate.getRequiredConnectionFactory().getConnection()) {
+            scanLiveKeys(connection.keyCommands().scan(options), consumer);
+        }
+    }
+
+    private void scanLiveKeys(Cursor<byte[]> cursor, LiveKeyConsumer consumer) {
+        try (cursor) {
+            List<String> page = new ArrayList<>(SCAN_COUNT);
+            while (cursor.hasNext()) {
+                String key = new String(cursor.next(), StandardCharsets.UTF_8);
+                // 认领键与旧版本的集合索引不参与匹配前的查找
+                if (!key.startsWith(REDIS_CLAIM_PREFIX) && !key.startsWith(REDIS_LEGACY_INDEX_PREFIX)) {
+                    page.add(key);
+                }
+                if (page.size() == SCAN_COUNT || (!cursor.hasNext() && !page.isEmpty())) {
+                    acceptLiveKeys(page, consumer);
+                    page.clear();
+                }
+            }
+        }
+    }
+
+    private void acceptLiveKeys(List<String> keys, LiveKeyConsumer consumer) {
+        long now = System.currentTimeMillis();
+        List<Object> ttls = requireAll(executeBatch(commands -> {
+            List<RedisFuture<?>> futures = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                futures.add(commands.pttl(serializeKey(key)));
+            }
+            return futures;
+        }));
+        for (int i = 0; i < keys.size(); i++) {
+            Long ttl = (Long) ttls.get(i);
+            if (ttl == null || ttl == -2) {
+                continue;
+            }
+            // 没有过期时间的键（不应出现）按最长有效期处理
+            long expiresAt = ttl >= 0 ? now + ttl : now + trackingProperties.getExpireHours() * 60 * 60 * 1000;
+            String key = keys.get(i);
+            if (key.startsWith(REDIS_INDEX_PREFIX)) {
+                consumer.accept(true, stripHashTag(key.substring(REDIS_INDEX_PREFIX.length())), expiresAt);
+            } else if (key.startsWith(REDIS_HASH_PREFIX)) {
+                consumer.accept(false, stripHashTag(key.substring(REDIS_HASH_PREFIX.length())), expiresAt);
+            } else {
+                consumer.accept(false, stripHashTag(key.substring(REDIS_KEY_PREFIX.length())), expiresAt);
+            }
+        }
+    }
+
+    /**
+     * scanLiveKeys 的回调
+     */
+    @FunctionalInterface
+    interface LiveKeyConsumer {
+
+        /**
+         * @param index true 为索引名，false 为数据的 fingerprintId
+         */
+        void accept(boolean index, String name, long expiresAt);
+    }
+
+    /**
+     * 将认领键中的匹配次数合并到数据上（匹配次数大于 0 即视为已匹配）
+     */
+    private void applyClaimState(TrackingData data, Object claimValue) {
+        if (claimValue == null) {
+            return;
+        }
+        int matchCount = Integer.parseInt(claimValue.toString());
+        data.setMatchCount(matchCount);
+        data.setMatched(Boolean.TRUE.equals(data.getMatched()) || matchCount > 0);
+    }
+
+    /**
+     * 保存脚本及其键和参数（参数已序列化为字节）；indexCalls 为集群键空间下单独执行的索引更新
+     */
+    record SaveCall(RedisScript<Long> script, List<String> keys, byte[][] args, List<SaveCall> indexCalls) {
+
+        /**
+         * 需要执行的全部脚本调用：数据写入在前，索引更新在后
+         */
+        List<SaveCall> all() {
+            if (indexCalls.isEmpty()) {
+                return Collections.singletonList(this);
+            }
+            List<SaveCall> all = new ArrayList<>(1 + indexCalls.size());
+            all.add(this);
+            all.addAll(indexCalls);
+            return all;
+        }
+    }
+
+    /**
+     * 认领脚本及其键和参数
+     */
+    record ClaimCall(RedisScript<List<Object>> script, List<String> keys, byte[][] args) {
+    }
+
+    /**
+     * 读取中的数据：近端缓存命中的已填入 result，missing 为需要从 Redis 读取的 ID 及其在 result 中的位置
+     */
+    record PendingLoad(List<TrackingData> result, List<String> missing, List<Integer> missingPositions) {
+    }
+
+    private void addIndexKeys(List<String> keys, List<String> indexNames) {
+        for (String indexName : indexNames) {
+            keys.add(indexKey(indexName));
+        }
+    }
+
+    String dataKey(String fingerprintId) {
+        return REDIS_KEY_PREFIX + hashTag(fingerprintId);
+    }
+
+    String claimKey(String fingerprintId) {
+        return REDIS_CLAIM_PREFIX + hashTag(fingerprintId);
+    }
+
+    String hashKey(String fingerprintId) {
+        return REDIS_HASH_PREFIX + hashTag(fingerprintId);
+    }
+
+    String indexKey(String indexName) {
+        return REDIS_INDEX_PREFIX + hashTag(indexName);
+    }
+
+    static boolean isLegacyIndex(String indexName) {
+        return indexName.startsWith(LEGACY_INDEX_PREFIX);
+    }
+
+    /**
+     * 旧版本的索引键（单机键空间，不带哈希标签）
+     */
+    static String legacyIndexKey(String indexName) {
+        return REDIS_LEGACY_INDEX_PREFIX + indexName.substring(LEGACY_INDEX_PREFIX.length());
+    }
+
+    /**
+     * 旧版本按 value 序列化器（JSON）写入索引成员，读取时同样反序列化
+     */
+    String legacyIndexMember(byte[] rawMember) {
+        return (String) valueSerializer().deserialize(rawMember);
+    }
+
+    /**
+     * 集群键空间下用 {} 包裹，槽位只由括号内的部分决定：同一 fingerprintId 的数据键与认领键位于同一槽位
+     */
+    private String hashTag(String id) {
+        return isClusterKeyspace() ? "{" + id + "}" : id;
+    }
+
+    private String stripHashTag(String name) {
+        return isClusterKeyspace() && name.startsWith("{") && name.endsWith("}")
+                ? name.substring(1, name.length() - 1) : name;
+    }
+
+    boolean isHashLayout() {
+        return trackingProperties.getStorage().getLayout() == TrackingProperties.Layout.HASH;
+    }
+
+    boolean isClusterKeyspace() {
+        return trackingProperties.getStorage().getKeyspace() == TrackingProperties.Keyspace.CLUSTER;
+    }
+
+    @SuppressWarnings("unchecked")
+    RedisSerializer<Object> valueSerializer() {
+        return (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] serializeKey(String key) {
+        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(key);
+    }
+
+    private static byte[] scriptArg(Object value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 使用 RedisTemplate 的 value 序列化器序列化脚本参数，保证与普通读写的数据格式一致
+     */
+    private byte[] serializeValue(Object value) {
+        return valueSerializer().serialize(value);
+    }
+}
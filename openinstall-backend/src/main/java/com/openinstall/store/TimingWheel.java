@@ -0,0 +1,158 @@
+package com.openinstall.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮
+ *
+ * 4 层、每层 64 个槽，第 n 层一个槽覆盖 64^n 个刻度；到期时间超出范围的定时器先放在最高层，到时再重新放入。
+ * 添加定时器只是入队（无锁），由单个后台线程每个刻度取出新定时器、逐层下放并触发到期的定时器，
+ * 因此时间轮本身不需要加锁。定时器不可取消：回调方需自行检查对象是否已被替换或续期。
+ */
+@Slf4j
+final class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickMillis;
+    private final Consumer<T> onExpire;
+    private final ConcurrentLinkedQueue<Timer<T>> incoming = new ConcurrentLinkedQueue<>();
+    @SuppressWarnings("unchecked")
+    private final Timer<T>[][] buckets = new Timer[LEVELS][SLOTS];
+    private final Thread worker;
+
+    /**
+     * 下一个待处理的刻度（只由后台线程访问）
+     */
+    private long tick;
+    private volatile boolean running = true;
+
+    TimingWheel(String name, long tickMillis, Consumer<T> onExpire) {
+        this.tickMillis = Math.max(1, tickMillis);
+        this.onExpire = onExpire;
+        this.tick = System.currentTimeMillis() / this.tickMillis;
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 添加定时器：在 deadlineMillis（毫秒时间戳）之后的第一个刻度触发
+     */
+    void schedule(T item, long deadlineMillis) {
+        // 向上取整，保证触发时已到期
+        incoming.offer(new Timer<>(item, (deadlineMillis + tickMillis - 1) / tickMillis));
+    }
+
+    void stop() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    private void run() {
+        while (running) {
+            long now = System.currentTimeMillis();
+            long currentTick = now / tickMillis;
+            // 落后时（GC 停顿等）逐个刻度补上
+            while (tick <= currentTick && running) {
+                drainIncoming();
+                advance();
+            }
+            long sleepMillis = tick * tickMillis - System.currentTimeMillis();
+            if (sleepMillis > 0) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(sleepMillis));
+            }
+        }
+    }
+
+    private void drainIncoming() {
+        Timer<T> timer;
+        while ((timer = incoming.poll()) != null) {
+            place(timer);
+        }
+    }
+
+    /**
+     * 处理当前刻度：先把高层到期的槽逐层下放，再触发第 0 层当前槽的定时器
+     */
+    private void advance() {
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                int slot = (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK;
+                Timer<T> timer = buckets[level][slot];
+                buckets[level][slot] = null;
+                while (timer != null) {
+                    Timer<T> next = timer.next;
+                    place(timer);
+                    timer = next;
+                }
+            }
+        }
+
+        int slot = (int) tick & SLOT_MASK;
+        Timer<T> timer = buckets[0][slot];
+        buckets[0][slot] = null;
+        tick++;
+        while (timer != null) {
+            Timer<T> next = timer.next;
+            timer.next = null;
+            if (timer.deadlineTick < tick) {
+                fire(timer.item);
+            } else {
+                // 超出时间轮范围的定时器转了一圈还未到期
+                place(timer);
+            }
+            timer = next;
+        }
+    }
+
+    /**
+     * 按剩余刻度数放入对应层；已到期的直接触发
+     */
+    private void place(Timer<T> timer) {
+        long delta = timer.deadlineTick - tick;
+        if (delta < 0) {
+            timer.next = null;
+            fire(timer.item);
+            return;
+        }
+        long target = delta < MAX_SPAN ? timer.deadlineTick : tick + MAX_SPAN - 1;
+        delta = target - tick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) (target >>> (SLOT_BITS * level)) & SLOT_MASK;
+        timer.next = buckets[level][slot];
+        buckets[level][slot] = timer;
+    }
+
+    private void fire(T item) {
+        try {
+            onExpire.accept(item);
+        } catch (RuntimeException e) {
+            log.warn("时间轮回调失败", e);
+        }
+    }
+
+    private static final class Timer<T> {
+
+        private final T item;
+        private final long deadlineTick;
+        private Timer<T> next;
+
+        private Timer(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
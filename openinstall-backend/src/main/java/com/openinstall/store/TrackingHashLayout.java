@@ -0,0 +1,129 @@
+package com.openinstall.store;
+
+import com.openinstall.codec.BinaryTrackingDataCodec;
+import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.model.TrackingData;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash 存储模式下追踪数据的字段布局
+ *
+ * 认领状态、参数、指纹分别保存在同一个 Hash 的不同字段中：
+ * 认领只修改 matched / matchCount，模糊匹配只读取参与比较的字段。
+ * 指纹与参数使用 RedisTemplate 的 value 序列化器编码，特征向量使用定长二进制编码，
+ * 其余字段为 UTF-8 文本（数值可直接 HINCRBY）。
+ */
+final class TrackingHashLayout {
+    
+    static final String ID = "id";
+    static final String FINGERPRINT = "fp";
+    static final String FEATURES = "fv";
+    static final String PARAMS = "params";
+    static final String TIMESTAMP = "ts";
+    static final String CLIENT_IP = "ip";
+    static final String EXPIRES_AT = "exp";
+    static final String MATCHED = "matched";
+    static final String MATCH_COUNT = "matchCount";
+    
+    /**
+     * 模糊匹配打分所需的字段
+     */
+    static final String[] SCORING_FIELDS = {ID, FEATURES, CLIENT_IP, EXPIRES_AT, MATCHED, MATCH_COUNT};
+    
+    /**
+     * 没有特征向量的旧数据，打分时改为读取指纹
+     */
+    static final String[] LEGACY_SCORING_FIELDS = {ID, FINGERPRINT, CLIENT_IP, EXPIRES_AT, MATCHED, MATCH_COUNT};
+    
+    /**
+     * 完整读取时的字段
+     */
+    static final String[] ALL_FIELDS = {ID, FINGERPRINT, FEATURES, PARAMS, TIMESTAMP, CLIENT_IP, EXPIRES_AT, MATCHED, MATCH_COUNT};
+    
+    /**
+     * 认领脚本返回的字段（顺序与 claim_tracking_hash.lua 一致，其后附加匹配次数）
+     */
+    static final String[] CLAIM_RESULT_FIELDS = {ID, PARAMS, TIMESTAMP, CLIENT_IP, EXPIRES_AT};
+    
+    private TrackingHashLayout() {
+    }
+    
+    /**
+     * 编码为 [字段, 值, 字段, 值, ...]，供保存脚本 HSET 使用
+     */
+    static List<byte[]> encode(TrackingData data, RedisSerializer<Object> valueSerializer) {
+        List<byte[]> fieldsAndValues = new ArrayList<>(16);
+        put(fieldsAndValues, ID, text(data.getFingerprintId()));
+        if (data.getFingerprint() != null) {
+            put(fieldsAndValues, FINGERPRINT, valueSerializer.serialize(data.getFingerprint()));
+        }
+        if (data.getFeatures() != null) {
+            put(fieldsAndValues, FEATURES, BinaryTrackingDataCodec.encodeFeatures(data.getFeatures()));
+        }
+        if (data.getParams() != null) {
+            put(fieldsAndValues, PARAMS, valueSerializer.serialize(data.getParams()));
+        }
+        put(fieldsAndValues, TIMESTAMP, text(data.getTimestamp()));
+        put(fieldsAndValues, CLIENT_IP, text(data.getClientIp()));
+        put(fieldsAndValues, EXPIRES_AT, text(data.getExpiresAt()));
+        put(fieldsAndValues, MATCHED, text(Boolean.TRUE.equals(data.getMatched()) ? 1 : 0));
+        put(fieldsAndValues, MATCH_COUNT, text(data.getMatchCount() != null ? data.getMatchCount() : 0));
+        return fieldsAndValues;
+    }
+    
+    /**
+     * 按字段名解码 HMGET 结果；记录不存在（id 字段为空）时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    static TrackingData decode(String[] fields, List<?> values, RedisSerializer<Object> valueSerializer) {
+        TrackingData data = new TrackingData();
+        for (int i = 0; i < fields.length; i++) {
+            byte[] value = (byte[]) values.get(i);
+            if (value == null) {
+                continue;
+            }
+            switch (fields[i]) {
+                case ID -> data.setFingerprintId(string(value));
+                case FINGERPRINT -> data.setFingerprint((DeviceFingerprint) valueSerializer.deserialize(value));
+                case FEATURES -> data.setFeatures(BinaryTrackingDataCodec.decodeFeatures(value));
+                case PARAMS -> data.setParams((Map<String, String>) valueSerializer.deserialize(value));
+                case TIMESTAMP -> data.setTimestamp(Long.parseLong(string(value)));
+                case CLIENT_IP -> data.setClientIp(string(value));
+                case EXPIRES_AT -> data.setExpiresAt(Long.parseLong(string(value)));
+                case MATCHED -> data.setMatched("1".equals(string(value)));
+                case MATCH_COUNT -> data.setMatchCount(Integer.parseInt(string(value)));
+                default -> {
+                }
+            }
+        }
+        return data.getFingerprintId() != null ? data : null;
+    }
+    
+    static byte[][] fieldNames(String[] fields) {
+        byte[][] names = new byte[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            names[i] = fields[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return names;
+    }
+    
+    private static void put(List<byte[]> fieldsAndValues, String field, byte[] value) {
+        if (value != null) {
+            fieldsAndValues.add(field.getBytes(StandardCharsets.UTF_8));
+            fieldsAndValues.add(value);
+        }
+    }
+    
+    private static byte[] text(Object value) {
+        return value != null ? String.valueOf(value).getBytes(StandardCharsets.UTF_8) : null;
+    }
+    
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
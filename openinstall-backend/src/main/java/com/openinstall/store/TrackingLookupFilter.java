@@ -0,0 +1,629 @@
+package com.openinstall.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openinstall.config.TrackingProperties;
+import com.openinstall.service.MurmurHash3;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 负查找过滤器（tracking.lookup-filter）
+ *
+ * 进程内布隆过滤器记录未过期的指纹ID与候选索引名，匹配前排除一定不存在的键：精确ID不存在时跳过精确认领，
+ * 不存在的索引不再读取，全部排除时不访问 Redis 直接返回未匹配（大部分自然安装没有对应的点击）。
+ * 键按过期时间分区，整个分区过期后丢弃，不需要从过滤器中删除单个键。
+ *
+ * 过滤器由三部分保持与 Redis 一致：本节点保存时在写入 Redis 前加入；其他节点保存的键经失效频道之外的
+ * 过滤器频道批量广播；每隔 rebuild-interval 扫描 Redis 中的数据键与索引键补全。
+ *
+ * 过滤器可能产生假阴性（存在的键被判断为不存在，获取请求返回未匹配）：其他节点的广播有毫秒级延迟，
+ * 延迟内到达本节点的获取请求可能被误判；广播是发布/订阅，没有送达保证。为了不让丢失的广播一直造成假阴性，
+ * 每个节点的广播带递增序号，空闲时每隔 heartbeat-interval 发送空广播，出现以下情况时本节点判定过滤器失效：
+ * 序号不连续（发送方队列已满丢弃或 PUBLISH 失败）、已知节点超过 3 个心跳间隔没有消息、本节点重新订阅频道。
+ * 失效后所有键都判断为可能存在（不排除任何键），稍后立即扫描 Redis，失效之后开始的扫描完成才恢复排除。
+ * 启动后第一次扫描完成前同样不排除任何键。
+ */
+@Slf4j
+@Component
+public class TrackingLookupFilter implements MessageListener, SubscriptionListener {
+
+    /**
+     * 过滤器频道
+     */
+    public static final String CHANNEL = "tracking:lookup-filter";
+
+    public static final String EXACT = "exact";
+    public static final String FUZZY = "fuzzy";
+    public static final String MATCH = "match";
+
+    private static final String GAP = "gap";
+    private static final String SILENT = "silent";
+    private static final String RESUBSCRIBED = "resubscribed";
+
+    private static final String RECORD_PREFIX = "f:";
+    private static final String INDEX_PREFIX = "i:";
+    private static final int PUBLISH_QUEUE_CAPACITY = 65536;
+    private static final int MAX_PUBLISH_BATCH = 1024;
+    private static final long PUBLISH_INTERVAL_MILLIS = 5;
+
+    /**
+     * 失效后等待正在进行的保存写入 Redis，再开始扫描
+     */
+    private static final long STALE_SETTLE_MILLIS = 1000;
+
+    /**
+     * 已知节点超过该心跳间隔数没有消息时判定过滤器失效
+     */
+    private static final int MISSED_HEARTBEATS = 3;
+
+    @Autowired
+    private TrackingProperties trackingProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 只在启用时使用；内存存储引擎下可以没有 Redis 连接
+     */
+    @Autowired
+    private ObjectProvider<RedisTemplate<String, Object>> redisTemplate;
+
+    @Autowired
+    private ObjectProvider<RedisTrackingStore> redisTrackingStore;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 节点标识，用于忽略本节点自己广播的消息
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 分区序号（过期时间 / 分区宽度）到分区
+     */
+    private final Map<Long, Partition> partitions = new ConcurrentHashMap<>();
+
+    private long partitionWidthMillis;
+    private long bitCount;
+    private int hashCount;
+    private boolean enabled;
+    private volatile boolean ready;
+    private volatile boolean running;
+    private volatile boolean closing;
+    private long heartbeatMillis;
+
+    /**
+     * 本节点广播的序号；队列已满丢弃时也占用一个序号，其他节点据此发现缺失
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 其他节点最近一条广播的序号与时间
+     */
+    private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+
+    /**
+     * 失效次数；staleMark 与 clearedMark 不同时过滤器失效，扫描开始前读取 staleMark，完成后写入 clearedMark
+     */
+    private final AtomicLong staleMark = new AtomicLong();
+    private volatile long clearedMark;
+    private volatile long lastStaleAt;
+    private volatile long subscribedAt;
+    private final Semaphore rebuildRequested = new Semaphore(0);
+
+    private BlockingQueue<Update> publishQueue;
+    private Thread publisher;
+    private Thread rebuilder;
+
+    private Counter exactSkipped;
+    private Counter fuzzySkipped;
+    private Counter matchSkipped;
+    private Counter dropped;
+    private Map<String, Counter> staleCounters;
+
+    @PostConstruct
+    public void init() {
+        TrackingProperties.LookupFilter config = trackingProperties.getLookupFilter();
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (trackingProperties.getStorage().getEngine() != TrackingProperties.Engine.REDIS) {
+            throw new IllegalStateException("tracking.lookup-filter 只用于 redis 存储引擎");
+        }
+        if (config.getFalsePositiveRate() <= 0 || config.getFalsePositiveRate() >= 1 || config.getExpectedInsertions() < 1) {
+            throw new IllegalArgumentException("tracking.lookup-filter.false-positive-rate 应在 0 到 1 之间，expected-insertions 必须大于 0");
+        }
+
+        // 查找时检查所有未过期的分区，每个分区的误判率取总误判率 / 分区数，合计不超过配置值
+        partitionWidthMillis = config.getPartitionWidth().toMillis();
+        heartbeatMillis = config.getHeartbeatInterval().toMillis();
+        long expireMillis = TimeUnit.HOURS.toMillis(trackingProperties.getExpireHours());
+        long partitionCount = (expireMillis + partitionWidthMillis - 1) / partitionWidthMillis + 1;
+        double partitionRate = config.getFalsePositiveRate() / partitionCount;
+        bitCount = Math.max(64, (long) Math.ceil(
+                -config.getExpectedInsertions() * Math.log(partitionRate) / (Math.log(2) * Math.log(2))));
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / config.getExpectedInsertions() * Math.log(2)));
+
+        exactSkipped = skipCounter(EXACT);
+        fuzzySkipped = skipCounter(FUZZY);
+        matchSkipped = skipCounter(MATCH);
+        dropped = Counter.builder("tracking.lookup-filter.dropped")
+                .description("广播队列已满或发送失败的键数（其他节点发现序号缺失后绕过过滤器，直到扫描补全）")
+                .register(meterRegistry);
+        staleCounters = Map.of(
+                GAP, staleCounter(GAP),
+                SILENT, staleCounter(SILENT),
+                RESUBSCRIBED, staleCounter(RESUBSCRIBED));
+        Gauge.builder("tracking.lookup-filter.bypassed", this, filter -> filter.isStale() ? 1 : 0)
+                .description("过滤器是否失效（1 表示不排除任何键，等待扫描补全）")
+                .register(meterRegistry);
+        Gauge.builder("tracking.lookup-filter.insertions", this, TrackingLookupFilter::insertions)
+                .description("未过期分区的写入次数（同一个键可能重复写入）")
+                .register(meterRegistry);
+
+        enabled = true;
+        running = true;
+        publishQueue = new ArrayBlockingQueue<>(PUBLISH_QUEUE_CAPACITY);
+        publisher = new Thread(this::publish, "tracking-lookup-filter-publish");
+        publisher.setDaemon(true);
+        publisher.start();
+        log.info("负查找过滤器已启用: falsePositiveRate={}, partitions={}, bitsPerPartition={}, hashes={}",
+                config.getFalsePositiveRate(), partitionCount, bitCount, hashCount);
+    }
+
+    /**
+     * 应用启动完成（过滤器频道已订阅）后开始扫描 Redis，之后按 rebuild-interval 定期补全
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRebuild() {
+        if (!enabled || rebuilder != null) {
+            return;
+        }
+        rebuilder = new Thread(this::rebuildLoop, "tracking-lookup-filter-rebuild");
+        rebuilder.setDaemon(true);
+        rebuilder.start();
+    }
+
+    /**
+     * 连接工厂在上下文关闭时先于 @PreDestroy 停止，这里提前结束正在进行的扫描并归还连接
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void stopRebuild() throws InterruptedException {
+        closing = true;
+        if (rebuilder != null) {
+            rebuilder.interrupt();
+            rebuilder.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (publisher != null) {
+            publisher.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    /**
+     * 第一次扫描完成后、且没有失效时才排除键
+     */
+    public boolean isActive() {
+        return ready && !isStale();
+    }
+
+    /**
+     * 记录保存的数据及其候选索引（在写入 Redis 前调用），并广播给其他节点
+     */
+    public void add(String fingerprintId, List<String> indexNames, long expiresAt) {
+        if (!enabled) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(indexNames.size() + 1);
+        keys.add(RECORD_PREFIX + fingerprintId);
+        for (String indexName : indexNames) {
+            keys.add(INDEX_PREFIX + indexName);
+        }
+        for (String key : keys) {
+            put(key, expiresAt);
+        }
+        if (!running || !publishQueue.offer(new Update(expiresAt, keys))) {
+            // 占用一个序号，其他节点收到下一条广播时发现缺失
+            sequence.incrementAndGet();
+            dropped.increment(keys.size());
+        }
+    }
+
+    /**
+     * 指纹ID对应的数据是否可能存在；过滤器未就绪或已失效时总是返回 true
+     */
+    public boolean mightContainRecord(String fingerprintId) {
+        return !isActive() || mightContain(RECORD_PREFIX + fingerprintId);
+    }
+
+    /**
+     * 可能存在的候选索引（保持原顺序）；过滤器未就绪或已失效时原样返回
+     */
+    public List<String> possibleIndexes(List<String> indexNames) {
+        if (!isActive()) {
+            return indexNames;
+        }
+        List<String> possible = new ArrayList<>(indexNames.size());
+        for (String indexName : indexNames) {
+            if (mightContain(INDEX_PREFIX + indexName)) {
+                possible.add(indexName);
+            }
+        }
+        return possible;
+    }
+
+    /**
+     * 记录被跳过的查找：exact 精确认领、fuzzy 候选查找、match 整个匹配（不访问 Redis）
+     */
+    public void skipped(String lookup, int count) {
+        if (!enabled) {
+            return;
+        }
+        switch (lookup) {
+            case EXACT -> exactSkipped.increment(count);
+            case FUZZY -> fuzzySkipped.increment(count);
+            case MATCH -> matchSkipped.increment(count);
+            default -> throw new IllegalArgumentException("未知的查找类型: " + lookup);
+        }
+    }
+
+    /**
+     * 其他节点广播的键（监听容器按接收顺序逐条调用）
+     */
+    @Override
+    public void onMessage(@NonNull Message message, byte[] pattern) {
+        try {
+            Broadcast broadcast = objectMapper.readValue(message.getBody(), Broadcast.class);
+            if (!enabled || nodeId.equals(broadcast.node())) {
+                return;
+            }
+            for (Update update : broadcast.updates()) {
+                for (String key : update.keys()) {
+                    put(key, update.expiresAt());
+                }
+            }
+            track(broadcast);
+        } catch (IOException | RuntimeException e) {
+            // 无法解析的消息中可能有键
+            log.warn("解析过滤器消息失败: {}", e.getMessage());
+            markStale(GAP);
+        }
+    }
+
+    /**
+     * 第一次订阅之后再收到订阅确认，说明连接断开后重新订阅，断开期间的广播已丢失
+     */
+    @Override
+    public void onChannelSubscribed(@NonNull byte[] channel, long count) {
+        if (!enabled) {
+            return;
+        }
+        if (subscribedAt == 0) {
+            subscribedAt = System.currentTimeMillis();
+        } else {
+            markStale(RESUBSCRIBED);
+        }
+    }
+
+    /**
+     * 检查广播序号是否连续
+     */
+    private void track(Broadcast broadcast) {
+        long now = System.currentTimeMillis();
+        Peer peer = peers.get(broadcast.node());
+        if (peer == null) {
+            // 订阅超过失联时间后才出现的节点，其第一条广播应当在订阅之后发出
+            if (broadcast.seq() != 1 && subscribedAt != 0 && now - subscribedAt > MISSED_HEARTBEATS * heartbeatMillis) {
+                markStale(GAP);
+            }
+            peer = new Peer();
+            peers.put(broadcast.node(), peer);
+        } else if (broadcast.seq() != peer.seq + 1) {
+            markStale(GAP);
+        }
+        peer.seq = broadcast.seq();
+        peer.lastSeen = now;
+    }
+
+    /**
+     * 超过 3 个心跳间隔没有消息的节点：可能已停止（停止前最后的广播可能未发出），也可能是本节点的订阅已断开
+     */
+    private void checkSilentPeers() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Peer> entry : peers.entrySet()) {
+            if (now - entry.getValue().lastSeen > MISSED_HEARTBEATS * heartbeatMillis
+                    && peers.remove(entry.getKey(), entry.getValue())) {
+                markStale(SILENT);
+            }
+        }
+    }
+
+    /**
+     * 过滤器失效：不再排除任何键，稍后扫描 Redis 补全
+     */
+    private void markStale(String reason) {
+        if (!enabled) {
+            return;
+        }
+        staleMark.incrementAndGet();
+        lastStaleAt = System.currentTimeMillis();
+        staleCounters.get(reason).increment();
+        rebuildRequested.release();
+        log.warn("负查找过滤器失效，扫描补全前不排除任何键: reason={}", reason);
+    }
+
+    private boolean isStale() {
+        return staleMark.get() != clearedMark;
+    }
+
+    private Counter staleCounter(String reason) {
+        return Counter.builder("tracking.lookup-filter.stale")
+                .description("过滤器失效次数（失效后绕过过滤器，直到扫描补全）")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private Counter skipCounter(String lookup) {
+        return Counter.builder("tracking.lookup-filter.skipped")
+                .description("负查找过滤器判断为不存在、跳过的查找数")
+                .tag("lookup", lookup)
+                .register(meterRegistry);
+    }
+
+    private void put(String key, long expiresAt) {
+        long now = System.currentTimeMillis();
+        if (expiresAt <= now) {
+            return;
+        }
+        Partition partition = partitions.computeIfAbsent(expiresAt / partitionWidthMillis,
+                ignored -> new Partition(bitCount));
+        long[] hash = hash(key);
+        for (int i = 0; i < hashCount; i++) {
+            partition.set(bitIndex(hash, i));
+        }
+        partition.insertions.increment();
+    }
+
+    private boolean mightContain(String key) {
+        long now = System.currentTimeMillis();
+        long[] hash = hash(key);
+        for (Map.Entry<Long, Partition> entry : partitions.entrySet()) {
+            // 分区内的键都已过期
+            if ((entry.getKey() + 1) * partitionWidthMillis <= now) {
+                continue;
+            }
+            if (entry.getValue().containsAll(hash, this)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 双重哈希：第 i 个位置为 h1 + i * h2（所有分区大小相同，位置只计算一次）
+     */
+    private long bitIndex(long[] hash, int i) {
+        return Math.floorMod(hash[0] + i * hash[1], bitCount);
+    }
+
+    private static long[] hash(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[16];
+        MurmurHash3.hash128(bytes, 0, bytes.length, 0, out);
+        ByteBuffer buffer = ByteBuffer.wrap(out).order(ByteOrder.LITTLE_ENDIAN);
+        return new long[]{buffer.getLong(0), buffer.getLong(8)};
+    }
+
+    private double insertions() {
+        long now = System.currentTimeMillis();
+        long total = 0;
+        for (Map.Entry<Long, Partition> entry : partitions.entrySet()) {
+            if ((entry.getKey() + 1) * partitionWidthMillis > now) {
+                total += entry.getValue().insertions.sum();
+            }
+        }
+        return total;
+    }
+
+    private void dropExpiredPartitions() {
+        long now = System.currentTimeMillis();
+        partitions.keySet().removeIf(partition -> (partition + 1) * partitionWidthMillis <= now);
+    }
+
+    private void rebuildLoop() {
+        long intervalMillis = trackingProperties.getLookupFilter().getRebuildInterval().toMillis();
+        while (!closing) {
+            try {
+                // 最近一次失效后稍等片刻，让失效前开始的保存写入 Redis
+                long settle;
+                while ((settle = lastStaleAt + STALE_SETTLE_MILLIS - System.currentTimeMillis()) > 0) {
+                    Thread.sleep(settle);
+                }
+                long mark = staleMark.get();
+                rebuild();
+                clearedMark = mark;
+                // 按间隔定期扫描，失效时提前开始
+                rebuildRequested.tryAcquire(intervalMillis, TimeUnit.MILLISECONDS);
+                rebuildRequested.drainPermits();
+            } catch (InterruptedException | CancellationException e) {
+                return;
+            } catch (RuntimeException e) {
+                if (closing) {
+                    return;
+                }
+                // Redis 不可用时稍后重试；第一次扫描成功前不排除任何键
+                log.warn("扫描 Redis 补全负查找过滤器失败: {}", e.getMessage());
+                try {
+                    Thread.sleep(Math.min(intervalMillis, TimeUnit.SECONDS.toMillis(10)));
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 扫描 Redis 中未过期的数据键与索引键加入过滤器（只增加，过期的键随分区丢弃）
+     */
+    private void rebuild() {
+        long start = System.nanoTime();
+        long[] counts = new long[2];
+        redisTrackingStore.getObject().scanLiveKeys((index, name, expiresAt) -> {
+            if (closing) {
+                throw new CancellationException("应用正在关闭");
+            }
+            put((index ? INDEX_PREFIX : RECORD_PREFIX) + name, expiresAt);
+            counts[index ? 1 : 0]++;
+        });
+        dropExpiredPartitions();
+        if (!ready) {
+            ready = true;
+            log.info("负查找过滤器已就绪: records={}, indexes={}, elapsed={}ms",
+                    counts[0], counts[1], TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } else {
+            log.debug("负查找过滤器已补全: records={}, indexes={}, elapsed={}ms",
+                    counts[0], counts[1], TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * 把本节点保存的键批量广播给其他节点，每批一条消息；空闲时发送心跳，并检查失联的节点
+     */
+    private void publish() {
+        byte[] channel = CHANNEL.getBytes(StandardCharsets.UTF_8);
+        List<Update> batch = new ArrayList<>(MAX_PUBLISH_BATCH);
+        long nextCleanup = System.currentTimeMillis();
+        long lastSent = 0;
+        try {
+            while (running || !publishQueue.isEmpty()) {
+                Update first = publishQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    // 稍等片刻，让并发保存的键合并到同一条消息
+                    Thread.sleep(PUBLISH_INTERVAL_MILLIS);
+                    batch.add(first);
+                    publishQueue.drainTo(batch, MAX_PUBLISH_BATCH - 1);
+                    send(channel, batch);
+                    batch.clear();
+                    lastSent = System.currentTimeMillis();
+                } else if (System.currentTimeMillis() - lastSent >= heartbeatMillis) {
+                    send(channel, batch);
+                    lastSent = System.currentTimeMillis();
+                }
+                checkSilentPeers();
+                if (System.currentTimeMillis() >= nextCleanup) {
+                    dropExpiredPartitions();
+                    nextCleanup = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(byte[] channel, List<Update> batch) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(new Broadcast(nodeId, sequence.incrementAndGet(), batch));
+            redisTemplate.getObject().execute((RedisCallback<Long>) connection -> connection.publish(channel, body));
+        } catch (IOException | RuntimeException e) {
+            int keys = 0;
+            for (Update update : batch) {
+                keys += update.keys().size();
+            }
+            dropped.increment(keys);
+            log.warn("广播过滤器消息失败: keys={}, error={}", keys, e.getMessage());
+        }
+    }
+
+    /**
+     * 一次保存写入的键（指纹ID与索引名，带类型前缀）及其过期时间
+     */
+    record Update(long expiresAt, List<String> keys) {
+    }
+
+    /**
+     * 过滤器频道上的一条消息：发送节点、序号（每个节点从 1 开始连续递增）、键（心跳为空）
+     */
+    record Broadcast(String node, long seq, List<Update> updates) {
+    }
+
+    /**
+     * 其他节点的广播状态（只在监听线程中更新）
+     */
+    private static final class Peer {
+
+        private long seq;
+        private volatile long lastSeen;
+    }
+
+    /**
+     * 一个时间分区：位数组与写入次数
+     */
+    private static final class Partition {
+
+        private final AtomicLongArray words;
+        private final LongAdder insertions = new LongAdder();
+
+        Partition(long bits) {
+            words = new AtomicLongArray((int) ((bits + 63) >>> 6));
+        }
+
+        void set(long bit) {
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = words.get(word)) & mask) == 0) {
+                if (words.compareAndSet(word, current, current | mask)) {
+                    return;
+                }
+            }
+        }
+
+        boolean containsAll(long[] hash, TrackingLookupFilter filter) {
+            for (int i = 0; i < filter.hashCount; i++) {
+                long bit = filter.bitIndex(hash, i);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
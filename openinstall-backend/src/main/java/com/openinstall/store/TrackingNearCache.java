@@ -0,0 +1,180 @@
+package com.openinstall.store;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.openinstall.config.TrackingProperties;
+import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.model.TrackingData;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 追踪数据进程内近端缓存
+ *
+ * 缓存未过期的追踪数据快照（含认领状态），减少重复请求和本节点刚保存数据的 Redis 读取。
+ * 认领始终由 Redis 脚本原子完成，不依据缓存中的认领状态跳过；快照过时只影响候选读取与打分。
+ * 数据被保存或认领时，Redis 脚本向失效频道发布消息，其他节点收到后删除对应条目。
+ * 存入和取出时各复制一次，调用方修改取到的数据不会改变缓存中的快照。
+ */
+@Slf4j
+@Component
+public class TrackingNearCache implements MessageListener {
+
+    /**
+     * 失效频道
+     */
+    public static final String INVALIDATION_CHANNEL = "tracking:invalidate";
+
+    @Autowired
+    private TrackingProperties trackingProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 节点标识，用于忽略本节点自己发布的失效消息
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private Cache<String, TrackingData> cache;
+
+    @PostConstruct
+    public void init() {
+        TrackingProperties.NearCache config = trackingProperties.getNearCache();
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        long maxTtlNanos = config.getTtl().toNanos();
+        cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaxSize())
+                .expireAfter(new Expiry<String, TrackingData>() {
+                    @Override
+                    public long expireAfterCreate(@NonNull String key, @NonNull TrackingData value, long currentTime) {
+                        return remainingNanos(value, maxTtlNanos);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(@NonNull String key, @NonNull TrackingData value,
+                                                  long currentTime, long currentDuration) {
+                        return remainingNanos(value, maxTtlNanos);
+                    }
+
+                    @Override
+                    public long expireAfterRead(@NonNull String key, @NonNull TrackingData value,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "tracking.near-cache");
+        log.info("追踪数据近端缓存已启用: maxSize={}, ttl={}", config.getMaxSize(), config.getTtl());
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    public TrackingData get(String fingerprintId) {
+        TrackingData cached = cache != null ? cache.getIfPresent(fingerprintId) : null;
+        return cached != null ? copy(cached) : null;
+    }
+
+    public void put(TrackingData data) {
+        if (cache != null && data != null && data.getFingerprintId() != null) {
+            cache.put(data.getFingerprintId(), copy(data));
+        }
+    }
+
+    public void invalidate(String fingerprintId) {
+        if (cache != null) {
+            cache.invalidate(fingerprintId);
+        }
+    }
+
+    /**
+     * 失效频道名称，未启用缓存时为空字符串（Redis 脚本据此跳过发布）
+     */
+    public String channel() {
+        return cache != null ? INVALIDATION_CHANNEL : "";
+    }
+
+    /**
+     * 失效消息内容：节点标识:fingerprintId
+     */
+    public String invalidationMessage(String fingerprintId) {
+        return nodeId + ":" + fingerprintId;
+    }
+
+    @Override
+    public void onMessage(@NonNull Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.lastIndexOf(':');
+        if (separator < 0 || body.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        invalidate(body.substring(separator + 1));
+    }
+
+    /**
+     * 复制参数表与设备指纹；特征向量保存时计算后不再修改，直接共享
+     */
+    private static TrackingData copy(TrackingData data) {
+        return new TrackingData(data.getFingerprintId(), copy(data.getFingerprint()), data.getFeatures(),
+                data.getParams() != null ? new HashMap<>(data.getParams()) : null,
+                data.getTimestamp(), data.getClientIp(), data.getExpiresAt(), data.getMatched(), data.getMatchCount());
+    }
+
+    private static DeviceFingerprint copy(DeviceFingerprint fingerprint) {
+        if (fingerprint == null) {
+            return null;
+        }
+        DeviceFingerprint copy = new DeviceFingerprint();
+        copy.setUserAgent(fingerprint.getUserAgent());
+        copy.setLanguage(fingerprint.getLanguage());
+        copy.setPlatform(fingerprint.getPlatform());
+        copy.setScreenWidth(fingerprint.getScreenWidth());
+        copy.setScreenHeight(fingerprint.getScreenHeight());
+        copy.setScreenColorDepth(fingerprint.getScreenColorDepth());
+        copy.setPixelRatio(fingerprint.getPixelRatio());
+        copy.setTimezone(fingerprint.getTimezone());
+        copy.setTimezoneOffset(fingerprint.getTimezoneOffset());
+        copy.setCanvasFingerprint(fingerprint.getCanvasFingerprint());
+        copy.setWebglFingerprint(fingerprint.getWebglFingerprint() != null
+                ? new HashMap<>(fingerprint.getWebglFingerprint()) : null);
+        copy.setCookieEnabled(fingerprint.getCookieEnabled());
+        copy.setDoNotTrack(fingerprint.getDoNotTrack());
+        copy.setOsVersion(fingerprint.getOsVersion());
+        copy.setDeviceModel(fingerprint.getDeviceModel());
+        copy.setDeviceBrand(fingerprint.getDeviceBrand());
+        copy.setDeviceName(fingerprint.getDeviceName());
+        copy.setScreenScale(fingerprint.getScreenScale());
+        copy.setScreenDensity(fingerprint.getScreenDensity());
+        return copy;
+    }
+
+    /**
+     * 缓存时长不超过配置的 TTL，也不超过数据本身的剩余有效期
+     */
+    private static long remainingNanos(TrackingData data, long maxTtlNanos) {
+        if (data.getExpiresAt() == null) {
+            return maxTtlNanos;
+        }
+        long remainingMillis = data.getExpiresAt() - System.currentTimeMillis();
+        return Math.max(0, Math.min(maxTtlNanos, TimeUnit.MILLISECONDS.toNanos(remainingMillis)));
+    }
+}
@@ -0,0 +1,94 @@
+package com.openinstall.store;
+
+import com.openinstall.model.TrackingData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 追踪数据存储
+ *
+ * TrackingService 负责指纹ID、特征向量、索引名与模糊匹配打分，存储引擎负责数据、认领状态与候选索引的读写。
+ * 引擎由 tracking.storage.engine 选择：redis（默认）或 memory（进程内，用于单节点部署和本地测试）。
+ */
+public interface TrackingStore {
+
+    /**
+     * 保存追踪数据（重置认领状态），数据在 expiresAt 时过期，并以 expiresAt 为分值加入各候选索引
+     * @param indexNames 候选索引名（不含引擎自己的键前缀）
+     */
+    void save(TrackingData data, List<String> indexNames);
+
+    /**
+     * 批量保存，语义与逐条 save 相同；失败时批内部分数据可能已写入（重复保存是幂等的）
+     * @param indexNames 与 batch 顺序一致的各条数据的候选索引名
+     */
+    default void saveBatch(List<TrackingData> batch, List<List<String>> indexNames) {
+        for (int i = 0; i < batch.size(); i++) {
+            save(batch.get(i), indexNames.get(i));
+        }
+    }
+
+    /**
+     * 批量读取追踪数据
+     * @return 与 fingerprintIds 顺序一致的列表，不存在或已过期的位置为 null
+     */
+    List<TrackingData> get(List<String> fingerprintIds);
+
+    /**
+     * 批量读取模糊匹配打分所需的数据：至少包含 fingerprintId、features（旧数据为 fingerprint）、
+     * clientIp、expiresAt 和认领状态，引擎可以省略其余字段
+     */
+    default List<TrackingData> getForScoring(List<String> fingerprintIds) {
+        return get(fingerprintIds);
+    }
+
+    /**
+     * 原子认领：未认领时标记为已认领、递增匹配次数并返回数据，并发请求不会重复认领同一条数据
+     * @return 认领成功的数据；数据不存在、已过期或已被认领时返回 null
+     */
+    TrackingData claim(String fingerprintId);
+
+    /**
+     * 批量原子认领，每条数据的语义与 claim 相同
+     * @return 与 fingerprintIds 顺序一致的列表，未认领成功的位置为 null
+     */
+    default List<TrackingData> claimBatch(List<String> fingerprintIds) {
+        List<TrackingData> result = new ArrayList<>(fingerprintIds.size());
+        for (String fingerprintId : fingerprintIds) {
+            result.add(claim(fingerprintId));
+        }
+        return result;
+    }
+
+    /**
+     * 升级前版本写入的索引的索引名前缀，其后为 platform:WxH:时区（tracking.fuzzy.legacy-index-lookup）。
+     * 旧版本的索引是 Redis 集合 tracking:index:<platform:WxH:时区>，成员没有过期时间也没有先后顺序：
+     * 成员数为集合大小，返回的成员为随机的最多 limit 个。其他引擎没有这类数据，按空索引处理
+     */
+    String LEGACY_INDEX_PREFIX = "legacy:";
+
+    /**
+     * 查找模糊匹配候选
+     * @param limit 每个索引最多返回的成员数量
+     * @return 每个索引未过期的成员数，以及过期时间最晚的最多 limit 个成员（与 indexNames 顺序一致）
+     */
+    CandidateLookup findCandidates(List<String> indexNames, int limit);
+
+    /**
+     * 候选查找结果
+     */
+    record CandidateLookup(long[] counts, List<List<String>> members) {
+
+        /**
+         * 下标 [from, to) 的索引未过期的成员数之和
+         */
+        public long total(int from, int to) {
+            long total = 0;
+            for (int i = from; i < to; i++) {
+                total += counts[i];
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+-- 原子认领追踪数据（一次往返）：检查未被匹配后递增匹配次数，并返回数据
+-- 认领状态单独保存在认领键中，数据本身不再因认领而整体重写
+-- KEYS[1]: 数据键 tracking:{fingerprintId}
+-- KEYS[2]: 认领键 tracking:claim:{fingerprintId}（值为匹配次数，大于 0 即视为已匹配）
+-- ARGV[1]: 近端缓存失效频道（为空表示未启用）
+-- ARGV[2]: 近端缓存失效消息
+-- 返回: {数据, 匹配次数}；数据不存在或已被认领时返回 nil
+local payload = redis.call('GET', KEYS[1])
+if not payload then
+    return false
+end
+-- 兼容旧版本：认领状态曾直接写在 JSON 数据中（首字节为 '{'）
+if string.byte(payload, 1) == 123 and string.find(payload, '"matched":true', 1, true) then
+    return false
+end
+if tonumber(redis.call('GET', KEYS[2]) or '0') > 0 then
+    return false
+end
+local count = redis.call('INCR', KEYS[2])
+local ttl = redis.call('PTTL', KEYS[1])
+if ttl > 0 then
+    redis.call('PEXPIRE', KEYS[2], ttl)
+end
+if ARGV[1] ~= '' then
+    redis.call('PUBLISH', ARGV[1], ARGV[2])
+end
+return {payload, count}
@@ -0,0 +1,17 @@
+-- 原子认领追踪数据（Hash 存储模式，一次往返）
+-- 只修改 matched / matchCount 字段，并只返回响应需要的字段（不返回指纹）
+-- KEYS[1]: 数据键 tracking:{fingerprintId}（Hash）
+-- ARGV[1]: 近端缓存失效频道（为空表示未启用）
+-- ARGV[2]: 近端缓存失效消息
+-- 返回: {id, params, ts, ip, exp, 匹配次数}；数据不存在或已被认领时返回 nil
+local matched = redis.call('HGET', KEYS[1], 'matched')
+if not matched or matched == '1' then
+    return false
+end
+local count = redis.call('HINCRBY', KEYS[1], 'matchCount', 1)
+redis.call('HSET', KEYS[1], 'matched', '1')
+if ARGV[1] ~= '' then
+    redis.call('PUBLISH', ARGV[1], ARGV[2])
+end
+local fields = redis.call('HMGET', KEYS[1], 'id', 'params', 'ts', 'ip', 'exp')
+return {fields[1], fields[2], fields[3], fields[4], fields[5], count}
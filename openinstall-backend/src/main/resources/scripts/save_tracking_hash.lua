@@ -0,0 +1,38 @@
+-- 保存追踪数据（Hash 存储模式）并更新模糊匹配索引（一次往返，原子执行）
+-- 认领状态与数据位于同一个 Hash 中，重新保存即重置认领状态
+-- KEYS[1]: 数据键 tracking:{fingerprintId}（Hash）
+-- KEYS[2..]: 索引键 tracking:zindex:{阻塞键}（有序集合，分值为过期时间戳），每个阻塞键一个；
+--            集群键空间下不传索引键，索引由 update_index.lua 单独更新
+-- ARGV[1]: 过期时间（秒）
+-- ARGV[2]: 索引成员（fingerprintId）
+-- ARGV[3]: 过期时间戳（毫秒）
+-- ARGV[4]: 当前时间戳（毫秒）
+-- ARGV[5]: 单个索引最多保留的成员数量
+-- ARGV[6]: 近端缓存失效频道（为空表示未启用）
+-- ARGV[7]: 近端缓存失效消息
+-- ARGV[8..]: Hash 字段与值，成对出现
+redis.call('DEL', KEYS[1])
+redis.call('HSET', KEYS[1], unpack(ARGV, 8))
+redis.call('EXPIRE', KEYS[1], ARGV[1])
+
+for i = 2, #KEYS do
+    local index = KEYS[i]
+    redis.call('ZADD', index, ARGV[3], ARGV[2])
+    -- 写入时顺带清理已过期的成员
+    redis.call('ZREMRANGEBYSCORE', index, '-inf', '(' .. ARGV[4])
+    -- 超出上限时淘汰最早过期的成员
+    local overflow = redis.call('ZCARD', index) - tonumber(ARGV[5])
+    if overflow > 0 then
+        redis.call('ZREMRANGEBYRANK', index, 0, overflow - 1)
+    end
+    -- 索引随最晚过期的成员一起过期
+    local latest = redis.call('ZRANGE', index, -1, -1, 'WITHSCORES')
+    if latest[2] then
+        redis.call('PEXPIREAT', index, latest[2])
+    end
+end
+
+if ARGV[6] ~= '' then
+    redis.call('PUBLISH', ARGV[6], ARGV[7])
+end
+return 1
@@ -0,0 +1,22 @@
+-- 更新一个模糊匹配索引（集群键空间使用）
+-- 集群键空间下索引键与数据键不在同一个槽位，保存脚本只写数据，每个索引由该脚本在索引所在节点上单独更新
+-- KEYS[1]: 索引键 tracking:zindex:{阻塞键}（有序集合，分值为过期时间戳）
+-- ARGV[1]: 索引成员（fingerprintId）
+-- ARGV[2]: 过期时间戳（毫秒）
+-- ARGV[3]: 当前时间戳（毫秒）
+-- ARGV[4]: 单个索引最多保留的成员数量
+local index = KEYS[1]
+redis.call('ZADD', index, ARGV[2], ARGV[1])
+-- 写入时顺带清理已过期的成员
+redis.call('ZREMRANGEBYSCORE', index, '-inf', '(' .. ARGV[3])
+-- 超出上限时淘汰最早过期的成员
+local overflow = redis.call('ZCARD', index) - tonumber(ARGV[4])
+if overflow > 0 then
+    redis.call('ZREMRANGEBYRANK', index, 0, overflow - 1)
+end
+-- 索引随最晚过期的成员一起过期
+local latest = redis.call('ZRANGE', index, -1, -1, 'WITHSCORES')
+if latest[2] then
+    redis.call('PEXPIREAT', index, latest[2])
+end
+return 1
@@ -0,0 +1,155 @@
+package com.openinstall.codec;
+
+import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.model.FingerprintFeatures;
+import com.openinstall.model.TrackingData;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 二进制编码往返，以及 JSON 与二进制数据在迁移期间共存
+ */
+class TrackingDataSerializerTest {
+
+    private static final int COMPRESSION_THRESHOLD = 512;
+
+    private final TrackingDataSerializer binary =
+            new TrackingDataSerializer(TrackingDataSerializer.Format.BINARY, COMPRESSION_THRESHOLD);
+    private final TrackingDataSerializer json =
+            new TrackingDataSerializer(TrackingDataSerializer.Format.JSON, COMPRESSION_THRESHOLD);
+
+    @Test
+    void binaryRoundTripKeepsAllFields() {
+        TrackingData data = trackingData(Map.of("code", "C3", "channel", "wechat"));
+
+        byte[] bytes = binary.serialize(data);
+
+        assertThat(BinaryTrackingDataCodec.isBinary(bytes)).isTrue();
+        assertThat(bytes[2] & 1).as("小于压缩阈值时不压缩").isZero();
+        assertThat(binary.deserialize(bytes)).isEqualTo(data);
+    }
+
+    @Test
+    void binaryRoundTripWithCompression() {
+        Map<String, String> params = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            params.put("param" + i, "value-" + i + "-abcdefghijklmnopqrstuvwxyz");
+        }
+        TrackingData data = trackingData(params);
+
+        byte[] bytes = binary.serialize(data);
+
+        assertThat(bytes[2] & 1).as("超过压缩阈值时使用 LZ4").isEqualTo(1);
+        assertThat(binary.deserialize(bytes)).isEqualTo(data);
+    }
+
+    @Test
+    void binaryRoundTripKeepsNullFields() {
+        TrackingData data = new TrackingData();
+        data.setFingerprintId("fp-1");
+        data.setFingerprint(new DeviceFingerprint());
+
+        assertThat(binary.deserialize(binary.serialize(data))).isEqualTo(data);
+    }
+
+    @Test
+    void binaryRoundTripForHashLayoutFields() {
+        DeviceFingerprint fingerprint = fingerprint();
+        Map<String, String> params = Map.of("code", "C3");
+
+        assertThat(binary.deserialize(binary.serialize(fingerprint))).isEqualTo(fingerprint);
+        assertThat(binary.deserialize(binary.serialize(params))).isEqualTo(params);
+
+        FingerprintFeatures features = features();
+        assertThat(BinaryTrackingDataCodec.decodeFeatures(BinaryTrackingDataCodec.encodeFeatures(features)))
+                .isEqualTo(features);
+    }
+
+    @Test
+    void binaryIsSmallerThanJson() {
+        TrackingData data = trackingData(Map.of("code", "C3", "channel", "wechat"));
+
+        assertThat(binary.serialize(data).length).isLessThan(json.serialize(data).length);
+    }
+
+    @Test
+    void binaryReaderReadsJsonWrittenBeforeMigration() {
+        TrackingData data = trackingData(Map.of("code", "C3"));
+
+        byte[] bytes = json.serialize(data);
+
+        assertThat(BinaryTrackingDataCodec.isBinary(bytes)).isFalse();
+        assertThat(binary.deserialize(bytes)).isEqualTo(data);
+    }
+
+    @Test
+    void jsonReaderReadsBinaryWrittenAfterMigration() {
+        TrackingData data = trackingData(Map.of("code", "C3"));
+
+        assertThat(json.deserialize(binary.serialize(data))).isEqualTo(data);
+    }
+
+    @Test
+    void nonTrackingValuesStayJsonInBinaryMode() {
+        byte[] bytes = binary.serialize("plain");
+
+        assertThat(BinaryTrackingDataCodec.isBinary(bytes)).isFalse();
+        assertThat(binary.deserialize(bytes)).isEqualTo("plain");
+    }
+
+    private static TrackingData trackingData(Map<String, String> params) {
+        TrackingData data = new TrackingData();
+        data.setFingerprintId("ce76e9742aae7c898ae55ffbeac3ca16");
+        data.setFingerprint(fingerprint());
+        data.setFeatures(features());
+        data.setParams(params);
+        data.setTimestamp(1717200000000L);
+        data.setClientIp("203.0.113.7");
+        data.setExpiresAt(1717286400000L);
+        data.setMatched(true);
+        data.setMatchCount(2);
+        return data;
+    }
+
+    private static DeviceFingerprint fingerprint() {
+        // webgl 中的整数：两种格式都与 Jackson 一致，int 范围内读出 Integer，超出时读出 Long
+        Map<String, Object> webgl = new LinkedHashMap<>();
+        webgl.put("vendor", "Google Inc. (Apple)");
+        webgl.put("maxTextureSize", 16384);
+        webgl.put("maxBufferSize", 16384L * 1024 * 1024);
+        webgl.put("antialias", true);
+        webgl.put("lineWidthRange", List.of(1.0, 7.5));
+        webgl.put("extensions", Map.of("count", "12"));
+
+        DeviceFingerprint fingerprint = new DeviceFingerprint();
+        fingerprint.setUserAgent("Mozilla/5.0 (iPhone; CPU iPhone OS 17_5 like Mac OS X) AppleWebKit/605.1.15");
+        fingerprint.setLanguage("zh-CN");
+        fingerprint.setPlatform("iPhone");
+        fingerprint.setScreenWidth(390);
+        fingerprint.setScreenHeight(844);
+        fingerprint.setScreenColorDepth(24);
+        fingerprint.setPixelRatio(3.0);
+        fingerprint.setTimezone("Asia/Shanghai");
+        fingerprint.setTimezoneOffset(-480);
+        fingerprint.setCanvasFingerprint("data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAA");
+        fingerprint.setWebglFingerprint(webgl);
+        fingerprint.setCookieEnabled(true);
+        fingerprint.setDoNotTrack("1");
+        fingerprint.setOsVersion("17.5");
+        fingerprint.setDeviceModel("iPhone15,2");
+        fingerprint.setDeviceBrand("Apple");
+        fingerprint.setDeviceName("张三的 iPhone");
+        fingerprint.setScreenScale(3.0);
+        fingerprint.setScreenDensity(460.0);
+        return fingerprint;
+    }
+
+    private static FingerprintFeatures features() {
+        return new FingerprintFeatures(123456789, -42, 390, 844, 987654, (1L << 32) | 0x7abcdefL);
+    }
+}
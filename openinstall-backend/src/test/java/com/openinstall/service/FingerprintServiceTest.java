@@ -0,0 +1,193 @@
+package com.openinstall.service;
+
+import com.openinstall.config.TrackingProperties;
+import com.openinstall.model.DeviceFingerprint;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 指纹ID：MD5 ID 与优化前的实现逐个相同，MurmurHash3 符合参考实现
+ */
+class FingerprintServiceTest {
+
+    private static final int FINGERPRINTS = 20_000;
+
+    private static final String[] USER_AGENTS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/%d.0.0.0 Safari/537.36",
+            "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:%d.0) Gecko/20100101 Firefox/%d.0",
+            "Mozilla/5.0 (Windows NT 6.3; Trident/7.0; rv:%d.0) like Gecko",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_%d) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.5 Safari/605.1.15",
+            "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/%d.0.0.0 Safari/537.36",
+            "Mozilla/5.0 (Linux; Android %d; Pixel 8) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/125.0.0.0 Mobile Safari/537.36",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS %d_5 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Mobile/15E148",
+            "Mozilla/5.0 (iPad; CPU OS %d_1 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Mobile/15E148",
+            "Android/%d Pixel 6",
+            "iOS/%d iPhone15,2",
+            "MicroMessenger/8.0.%d 微信内置浏览器 NetType/WIFI",
+            "curl/8.%d.0",
+    };
+
+    private static final String[] PLATFORMS = {"Win32", "MacIntel", "Linux x86_64", "android", "ios", "iPhone",
+            "Linux armv8l", "WINDOWS", "", null};
+
+    private static final String[] TIMEZONES = {"Asia/Shanghai", "America/New_York", "CST", "PST", "EST", "UTC",
+            "GMT", "cst", "JST", "", null};
+
+    private static AnnotationConfigApplicationContext context;
+    private static FingerprintService fingerprintService;
+
+    @BeforeAll
+    static void setUp() {
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(TrackingProperties.class, TrackingProperties::new);
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.register(UserAgentNormalizer.class, FingerprintService.class);
+        context.refresh();
+        fingerprintService = context.getBean(FingerprintService.class);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void md5IdsMatchLegacyImplementation() {
+        LegacyFingerprintService legacy = new LegacyFingerprintService();
+        Random random = new Random(20240601L);
+
+        for (int i = 0; i < FINGERPRINTS; i++) {
+            DeviceFingerprint fingerprint = randomFingerprint(random);
+            assertThat(fingerprintService.generateFingerprintId(fingerprint, TrackingProperties.IdHash.MD5))
+                    .as("fingerprint %s", fingerprint)
+                    .isEqualTo(legacy.generateFingerprintId(fingerprint));
+        }
+    }
+
+    @Test
+    void idsAreStableWhenBuffersAreShared() {
+        Random random = new Random(7L);
+        List<DeviceFingerprint> fingerprints = new ArrayList<>();
+        for (int i = 0; i < FINGERPRINTS; i++) {
+            fingerprints.add(randomFingerprint(random));
+        }
+        for (TrackingProperties.IdHash idHash : TrackingProperties.IdHash.values()) {
+            List<String> sequential = fingerprints.stream()
+                    .map(fingerprint -> fingerprintService.generateFingerprintId(fingerprint, idHash))
+                    .toList();
+            List<String> parallel = fingerprints.parallelStream()
+                    .map(fingerprint -> fingerprintService.generateFingerprintId(fingerprint, idHash))
+                    .toList();
+            assertThat(parallel).isEqualTo(sequential);
+        }
+    }
+
+    @Test
+    void murmur3IdsArePrefixedAndDistinct() {
+        Random random = new Random(11L);
+        Set<String> md5Ids = new HashSet<>();
+        Set<String> murmur3Ids = new HashSet<>();
+        for (int i = 0; i < FINGERPRINTS; i++) {
+            DeviceFingerprint fingerprint = randomFingerprint(random);
+            String id = fingerprintService.generateFingerprintId(fingerprint, TrackingProperties.IdHash.MURMUR3);
+            assertThat(id).matches("m3-[0-9a-f]{32}");
+            md5Ids.add(fingerprintService.generateFingerprintId(fingerprint, TrackingProperties.IdHash.MD5));
+            murmur3Ids.add(id);
+        }
+        // 相同的标准化结果得到相同的ID，不同的结果不冲突
+        assertThat(murmur3Ids).hasSameSizeAs(md5Ids);
+    }
+
+    @Test
+    void murmurHash3MatchesReferenceVectors() {
+        byte[] out = new byte[16];
+
+        byte[] fox = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+        MurmurHash3.hash128(fox, 0, fox.length, 0, out);
+        assertThat(HexFormat.of().formatHex(out)).isEqualTo("6c1b07bc7bbc4be347939ac4a93c437a");
+
+        MurmurHash3.hash128(new byte[0], 0, 0, 0, out);
+        assertThat(out).containsOnly(0);
+
+        // SMHasher 的 VerificationTest：长度 0..255 的输入以 256 - 长度为种子，拼接全部结果再哈希
+        byte[] key = new byte[256];
+        byte[] hashes = new byte[256 * 16];
+        for (int i = 0; i < 256; i++) {
+            key[i] = (byte) i;
+            MurmurHash3.hash128(key, 0, i, 256 - i, out);
+            System.arraycopy(out, 0, hashes, i * 16, 16);
+        }
+        MurmurHash3.hash128(hashes, 0, hashes.length, 0, out);
+        assertThat(ByteBuffer.wrap(out).order(ByteOrder.LITTLE_ENDIAN).getInt(0)).isEqualTo(0x6384BA69);
+    }
+
+    @Test
+    void murmurHash3HonoursOffset() {
+        byte[] data = "xxThe quick brown fox jumps over the lazy dogyy".getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[16];
+
+        MurmurHash3.hash128(data, 2, data.length - 4, 0, out);
+
+        assertThat(HexFormat.of().formatHex(out)).isEqualTo("6c1b07bc7bbc4be347939ac4a93c437a");
+    }
+
+    /**
+     * 随机设备指纹：覆盖常见 UA、空值、多字节字符（含代理对与孤立代理项）、各种时区格式与偏移量
+     */
+    static DeviceFingerprint randomFingerprint(Random random) {
+        DeviceFingerprint fingerprint = new DeviceFingerprint();
+        fingerprint.setUserAgent(randomUserAgent(random));
+        fingerprint.setPlatform(PLATFORMS[random.nextInt(PLATFORMS.length)]);
+        fingerprint.setScreenWidth(random.nextInt(10) == 0 ? null : random.nextInt(4000) - 100);
+        fingerprint.setScreenHeight(random.nextInt(10) == 0 ? null : random.nextInt(4000));
+        fingerprint.setTimezone(TIMEZONES[random.nextInt(TIMEZONES.length)]);
+        fingerprint.setTimezoneOffset(random.nextInt(4) == 0 ? null : (random.nextInt(27) - 12) * 60 + random.nextInt(2) * 30);
+        if (random.nextBoolean()) {
+            fingerprint.setCanvasFingerprint(Long.toHexString(random.nextLong()));
+        }
+        return fingerprint;
+    }
+
+    static String randomUserAgent(Random random) {
+        return switch (random.nextInt(8)) {
+            case 0 -> null;
+            case 1 -> "";
+            case 2 -> randomText(random, 1 + random.nextInt(80));
+            default -> {
+                String template = USER_AGENTS[random.nextInt(USER_AGENTS.length)];
+                String userAgent = String.format(template, 5 + random.nextInt(120), random.nextInt(130));
+                yield random.nextInt(4) == 0 ? userAgent.toUpperCase() : userAgent;
+            }
+        };
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(6)) {
+                case 0 -> sb.append((char) (0x80 + random.nextInt(0x780)));
+                case 1 -> sb.append((char) (0x4E00 + random.nextInt(0x5000)));
+                case 2 -> sb.appendCodePoint(0x1F600 + random.nextInt(0x50));
+                case 3 -> sb.append((char) (0xD800 + random.nextInt(0x800)));
+                default -> sb.append((char) (0x20 + random.nextInt(0x5F)));
+            }
+        }
+        return sb.toString();
+    }
+}
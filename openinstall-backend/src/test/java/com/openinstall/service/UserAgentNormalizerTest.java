@@ -0,0 +1,108 @@
+package com.openinstall.service;
+
+import com.openinstall.config.TrackingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 关键词自动机 + 缓存的 UA 标准化与优化前逐个 contains 判断的结果相同
+ */
+class UserAgentNormalizerTest {
+
+    private static final List<String> EDGE_CASES = List.of(
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64)",
+            "Mozilla/5.0 (Windows 10; ARM)",
+            "Mozilla/5.0 (Windows NT 6.3; Trident/7.0)",
+            "Mozilla/5.0 (Windows 8.1)",
+            "Mozilla/5.0 (Windows NT 6.1; WOW64)",
+            "Mozilla/5.0 (Windows 7)",
+            "Mozilla/5.0 (Windows NT 5.1)",
+            "Mozilla/5.0 (Windows Phone 10.0; Android 6.0.1)",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7)",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 14_5)",
+            "Mozilla/5.0 (Macintosh; PPC)",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 17_5 like Mac OS X)",
+            "Mozilla/5.0 (iPad; CPU OS 16_1 like Mac OS X)",
+            "Mozilla/5.0 (iPod touch; CPU iPhone OS 12_0)",
+            "Mozilla/5.0 (Linux; Android 14; Pixel 8)",
+            "Mozilla/5.0 (Linux; U; Android 4.4.2)",
+            "Mozilla/5.0 (X11; Linux x86_64)",
+            "Mozilla/5.0 (X11; CrOS x86_64 14541.0.0)",
+            "Dalvik/2.1.0 (Linux; U; Android 13; SM-G991B)",
+            "Android/13 Pixel 6",
+            "Android/13",
+            "iOS/17 iPhone15,2",
+            "iOS/",
+            "android/13 lower-case prefix",
+            "IPHONE",
+            "WINDOWS NT 10.0",
+            "windowsnt 10.0",
+            "curl/8.4.0",
+            "a".repeat(49),
+            "a".repeat(50),
+            "a".repeat(51),
+            "b".repeat(600),
+            "x".repeat(49) + "😀tail",
+            "微信内置浏览器 MicroMessenger/8.0.47 NetType/WIFI Language/zh_CN",
+            "İSTANBUL WINDOWS",
+            " ",
+            "");
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 10000})
+    void matchesLegacyNormalization(int cacheSize) {
+        UserAgentNormalizer normalizer = normalizer(cacheSize, false);
+        LegacyFingerprintService legacy = new LegacyFingerprintService();
+
+        List<String> userAgents = new ArrayList<>(EDGE_CASES);
+        userAgents.add(null);
+        Random random = new Random(20240601L);
+        for (int i = 0; i < 20_000; i++) {
+            userAgents.add(FingerprintServiceTest.randomUserAgent(random));
+        }
+
+        // 两遍：开启缓存时第二遍全部命中缓存
+        for (int pass = 0; pass < 2; pass++) {
+            for (String userAgent : userAgents) {
+                assertThat(normalizer.normalize(userAgent))
+                        .as("userAgent %s", userAgent)
+                        .isEqualTo(legacy.normalizeUserAgent(userAgent));
+            }
+        }
+    }
+
+    @Test
+    void extractsMobileVersionWhenEnabled() {
+        UserAgentNormalizer normalizer = normalizer(10000, true);
+
+        assertThat(normalizer.normalize("Mozilla/5.0 (Linux; Android 14; Pixel 8) Chrome/125.0")).isEqualTo("Android/14");
+        assertThat(normalizer.normalize("Mozilla/5.0 (iPhone; CPU iPhone OS 17_5 like Mac OS X)")).isEqualTo("iOS/17");
+        assertThat(normalizer.normalize("Mozilla/5.0 (iPad; CPU OS 16_1 like Mac OS X)")).isEqualTo("iOS/16");
+        assertThat(normalizer.normalize("Android/13 Pixel 6")).isEqualTo("Android/13");
+        // 桌面 UA 不受影响
+        assertThat(normalizer.normalize("Mozilla/5.0 (Windows NT 10.0; Win64; x64)")).isEqualTo("Windows 10");
+    }
+
+    private static UserAgentNormalizer normalizer(int cacheSize, boolean extractMobileVersion) {
+        TrackingProperties properties = new TrackingProperties();
+        properties.getFingerprint().setUserAgentCacheSize(cacheSize);
+        properties.getFingerprint().setExtractMobileVersion(extractMobileVersion);
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(TrackingProperties.class, () -> properties);
+            context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+            context.register(UserAgentNormalizer.class);
+            context.refresh();
+            return context.getBean(UserAgentNormalizer.class);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.openinstall.store;
+
+import com.openinstall.config.TrackingProperties;
+import com.openinstall.model.TrackingData;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 进程内存储引擎：并发认领不重复、时间轮回收过期数据与索引
+ */
+class InMemoryTrackingStoreTest {
+
+    private static final int RECORDS = 100_000;
+    private static final int THREADS = 8;
+
+    private AnnotationConfigApplicationContext context;
+    private InMemoryTrackingStore store;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        TrackingProperties properties = new TrackingProperties();
+        properties.getStorage().setWheelTick(Duration.ofMillis(20));
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test",
+                Map.of("tracking.storage.engine", "memory")));
+        context.registerBean(TrackingProperties.class, () -> properties);
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.register(InMemoryTrackingStore.class);
+        context.refresh();
+        store = context.getBean(InMemoryTrackingStore.class);
+        meterRegistry = context.getBean(MeterRegistry.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void concurrentClaimsSucceedExactlyOncePerRecord() throws Exception {
+        long expiresAt = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        List<String> ids = new ArrayList<>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            ids.add("fp-" + i);
+        }
+        runConcurrently(thread -> {
+            for (int i = thread; i < RECORDS; i += THREADS) {
+                store.save(data(ids.get(i), expiresAt), List.of("index-" + (i % 1000)));
+            }
+        });
+        assertThat(records()).isEqualTo(RECORDS);
+
+        // 每个线程按不同顺序认领全部数据，每条数据同时被多个线程争抢
+        AtomicIntegerArray claims = new AtomicIntegerArray(RECORDS);
+        runConcurrently(thread -> {
+            List<Integer> order = new ArrayList<>(RECORDS);
+            for (int i = 0; i < RECORDS; i++) {
+                order.add(i);
+            }
+            Collections.shuffle(order, new Random(thread));
+            for (int i : order) {
+                TrackingData claimed = store.claim(ids.get(i));
+                if (claimed != null) {
+                    assertThat(claimed.getFingerprintId()).isEqualTo(ids.get(i));
+                    assertThat(claimed.getMatched()).isTrue();
+                    assertThat(claimed.getMatchCount()).isEqualTo(1);
+                    claims.incrementAndGet(i);
+                }
+            }
+        });
+
+        for (int i = 0; i < RECORDS; i++) {
+            assertThat(claims.get(i)).as("claims of %s", ids.get(i)).isEqualTo(1);
+        }
+        assertThat(store.claimBatch(ids.subList(0, 1000))).containsOnlyNulls();
+    }
+
+    @Test
+    void resaveResetsClaim() {
+        long expiresAt = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        store.save(data("fp-1", expiresAt), List.of("index-a"));
+
+        assertThat(store.claim("fp-1")).isNotNull();
+        assertThat(store.claim("fp-1")).isNull();
+
+        store.save(data("fp-1", expiresAt), List.of("index-a"));
+        assertThat(store.claim("fp-1")).isNotNull();
+    }
+
+    @Test
+    void expiredRecordsAndIndexesAreReclaimed() throws Exception {
+        long expiresAt = System.currentTimeMillis() + 300;
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add("fp-" + i);
+            store.save(data("fp-" + i, expiresAt), List.of("index-" + (i % 100), "subnet-" + (i % 7)));
+        }
+        assertThat(store.findCandidates(List.of("index-0"), 1000).counts()[0]).isEqualTo(100);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((records() > 0 || indexes() > 0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertThat(records()).isZero();
+        assertThat(indexes()).isZero();
+        assertThat(store.get(ids)).containsOnlyNulls();
+        assertThat(store.claim("fp-0")).isNull();
+        assertThat(store.findCandidates(List.of("index-0"), 1000).counts()[0]).isZero();
+    }
+
+    @Test
+    void indexKeepsLatestExpiringMembersUpToLimit() {
+        int maxIndexSize = context.getBean(TrackingProperties.class).getFuzzy().getMaxIndexSize();
+        long base = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        for (int i = 0; i < maxIndexSize + 50; i++) {
+            store.save(data("fp-" + i, base + i), List.of("index-a"));
+        }
+
+        TrackingStore.CandidateLookup lookup = store.findCandidates(List.of("index-a", "missing"), 3);
+
+        assertThat(lookup.counts()).containsExactly(maxIndexSize, 0);
+        assertThat(lookup.members().get(0)).containsExactly(
+                "fp-" + (maxIndexSize + 49), "fp-" + (maxIndexSize + 48), "fp-" + (maxIndexSize + 47));
+        assertThat(lookup.members().get(1)).isEmpty();
+    }
+
+    private void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private double records() {
+        return meterRegistry.get("tracking.store.memory.records").gauge().value();
+    }
+
+    private double indexes() {
+        return meterRegistry.get("tracking.store.memory.indexes").gauge().value();
+    }
+
+    private static TrackingData data(String fingerprintId, long expiresAt) {
+        TrackingData data = new TrackingData();
+        data.setFingerprintId(fingerprintId);
+        data.setParams(Map.of("code", "C3"));
+        data.setTimestamp(System.currentTimeMillis());
+        data.setClientIp("203.0.113.7");
+        data.setExpiresAt(expiresAt);
+        return data;
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+}
@@ -0,0 +1,88 @@
+package com.openinstall.store;
+
+import com.openinstall.config.TrackingProperties;
+import com.openinstall.model.DeviceFingerprint;
+import com.openinstall.model.TrackingData;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 近端缓存：存入与取出的数据和缓存中的快照互不影响
+ */
+class TrackingNearCacheTest {
+
+    private AnnotationConfigApplicationContext context;
+    private TrackingNearCache nearCache;
+
+    @BeforeEach
+    void setUp() {
+        TrackingProperties properties = new TrackingProperties();
+        properties.getNearCache().setEnabled(true);
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(TrackingProperties.class, () -> properties);
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.register(TrackingNearCache.class);
+        context.refresh();
+        nearCache = context.getBean(TrackingNearCache.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void callerChangesDoNotReachCachedSnapshot() {
+        TrackingData saved = trackingData("fp-1");
+        nearCache.put(saved);
+
+        // 存入后修改调用方持有的对象
+        saved.setMatched(true);
+        saved.getParams().put("channel", "changed");
+        saved.getFingerprint().setPlatform("android");
+        saved.getFingerprint().getWebglFingerprint().put("vendor", "changed");
+
+        TrackingData cached = nearCache.get("fp-1");
+        assertThat(cached.getMatched()).isFalse();
+        assertThat(cached.getParams()).containsEntry("channel", "ads");
+        assertThat(cached.getFingerprint().getPlatform()).isEqualTo("ios");
+        assertThat(cached.getFingerprint().getWebglFingerprint()).containsEntry("vendor", "Apple");
+
+        // 修改取出的对象
+        cached.setMatched(true);
+        cached.setMatchCount(1);
+        cached.getParams().clear();
+
+        TrackingData again = nearCache.get("fp-1");
+        assertThat(again).isNotSameAs(cached);
+        assertThat(again.getMatched()).isFalse();
+        assertThat(again.getMatchCount()).isZero();
+        assertThat(again.getParams()).containsEntry("channel", "ads");
+    }
+
+    private static TrackingData trackingData(String fingerprintId) {
+        DeviceFingerprint fingerprint = new DeviceFingerprint();
+        fingerprint.setPlatform("ios");
+        fingerprint.setScreenWidth(390);
+        fingerprint.setScreenHeight(844);
+        Map<String, Object> webgl = new HashMap<>();
+        webgl.put("vendor", "Apple");
+        fingerprint.setWebglFingerprint(webgl);
+
+        TrackingData data = new TrackingData();
+        data.setFingerprintId(fingerprintId);
+        data.setFingerprint(fingerprint);
+        data.setParams(new HashMap<>(Map.of("channel", "ads")));
+        data.setExpiresAt(System.currentTimeMillis() + 60_000);
+        return data;
+    }
+}